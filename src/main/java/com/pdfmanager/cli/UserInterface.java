@@ -1,7 +1,6 @@
 package com.pdfmanager.cli;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdfmanager.db.Condition;
 import com.pdfmanager.db.DatabaseManager;
 import com.pdfmanager.files.Book;
 import com.pdfmanager.files.ClassNote;
@@ -9,16 +8,22 @@ import com.pdfmanager.files.Collection;
 import com.pdfmanager.files.DocumentType;
 import com.pdfmanager.files.Document;
 import com.pdfmanager.files.Slide;
+import com.pdfmanager.search.SearchHit;
 import com.pdfmanager.utils.BibTexGenerator;
+import com.pdfmanager.utils.BibTexImporter;
+import com.pdfmanager.utils.BulkImporter;
 import com.pdfmanager.utils.CollectionPackager;
+import com.pdfmanager.utils.CopyQueue;
 import com.pdfmanager.utils.FileManager;
-import io.restassured.path.json.JsonPath;
+import com.pdfmanager.utils.LibrarySync;
+import com.pdfmanager.utils.LibraryVerifier;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 
@@ -26,6 +31,9 @@ public class UserInterface {
     private String isFirstAccess;
     private String libraryPath;
     private final FileManager fileManager;
+    private final CopyQueue copyQueue;
+    // Queues the copies left pending by the last session, or null if there were none
+    private Thread resumeThread;
     private final DatabaseManager db;
     private final File configPath;
 
@@ -36,16 +44,23 @@ public class UserInterface {
     public static final String YELLOW = "\u001B[33m";
     public static final String BLUE = "\u001B[34m";
 
+    // Number of "did you mean" suggestions shown for a mistyped or incomplete title, author or collection
+    private static final int SUGGESTIONS = 5;
+    // Number of failed entries listed after a BibTeX import or a verification; the rest are only counted
+    private static final int MAX_LISTED_ERRORS = 20;
+
     public UserInterface(DatabaseManager db) {
         this.isFirstAccess = "true";
-        this.fileManager = new FileManager();
         this.db = db;
         configPath = db.getConfigPath();
         try {
             this.libraryPath = db.readField(configPath, "libraryPath");
+            // 'placementStrategy' in config.json: auto, copy, transfer, reflink, hard_link or move
+            this.fileManager = new FileManager(FileManager.PlacementStrategy.of(db.readField(configPath, "placementStrategy")));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        this.copyQueue = new CopyQueue(fileManager);
     }
 
     /**
@@ -79,6 +94,7 @@ public class UserInterface {
                 throw new RuntimeException(e);
             }
         }
+        resumePendingCopies();
 
         Scanner scanner = new Scanner(System.in);
         int input1 = -1;
@@ -95,6 +111,7 @@ public class UserInterface {
                     BLUE + "[4] " + RESET + "Change library\n" +
                     BLUE + "[5] " + RESET + "Edit entry\n" +
                     BLUE + "[6] " + RESET + "Manage Collections\n" + // Opção Adicionada
+                    BLUE + "[7] " + RESET + "Library tools\n" +
                     RED + "\n[0] " + RESET + "Quit program"
             );
             try {
@@ -127,12 +144,38 @@ public class UserInterface {
                 case 6:
                     handleCollectionsMenu(); // Método Adicionado
                     break;
+                case 7:
+                    handleToolsMenu();
+                    break;
                 default:
                     System.err.println("Invalid option: '" + input1 + "'");
                     break;
             }
         }
         System.out.println("Exiting program.");
+        if (resumeThread != null) {
+            try {
+                // Copies not queued yet would be lost when the queue is closed
+                resumeThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int pending = copyQueue.pending();
+        if (pending > 0) {
+            System.out.println(YELLOW + "Waiting for " + pending + " background copies to finish..." + RESET);
+        }
+        copyQueue.close();
+        int indexing = db.getPendingTextIndexing();
+        if (indexing > 0) {
+            System.out.println(YELLOW + "Waiting for " + indexing + " documents to be added to the full-text index..." + RESET);
+        }
+        db.awaitTextIndexing();
+        try {
+            db.compact();
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to compact database journals.");
+        }
         System.exit(0);
     }
 
@@ -152,7 +195,7 @@ public class UserInterface {
                     "[2] List collections\n" +
                     "[3] Add entries to a collection\n" +
                     "[4] Remove entries from a collection\n" +
-                    "[5] Generate BibTeX file from a Book collection\n" +
+                    "[5] Generate BibTeX file from collections\n" +
                     "[6] Package a collection into a .zip file\n" +
                     RED + "[0] Return to main menu" + RESET
             );
@@ -193,6 +236,375 @@ public class UserInterface {
         }
     }
 
+    /**
+     * Shows the submenu with the tools that work on the whole library at once.
+     */
+    private void handleToolsMenu() {
+        Scanner scanner = new Scanner(System.in);
+        int input = -1;
+        while (input != 0) {
+            System.out.println(BLUE + "\n--- Library Tools ---\n" + RESET +
+                    "[1] Import entries from a JSON file\n" +
+                    "[2] Import a directory of PDF files\n" +
+                    "[3] Search the text of the PDFs\n" +
+                    "[4] Rebuild the full-text index\n" +
+                    "[5] Filter documents by field\n" +
+                    "[6] Show background copies\n" +
+                    "[7] Export the whole library to BibTeX\n" +
+                    "[8] Import a BibTeX file\n" +
+                    "[9] Keep the catalog in sync with the library folders\n" +
+                    "[10] Verify the integrity of the library\n" +
+                    RED + "[0] Return to main menu" + RESET
+            );
+            try {
+                input = scanner.nextInt();
+                scanner.nextLine(); // Clean stdin buffer
+            } catch (InputMismatchException e) {
+                System.err.println("Invalid input. Please enter a number.");
+                scanner.nextLine();
+                input = -1;
+                continue;
+            }
+
+            switch (input) {
+                case 1:
+                    importFromJson();
+                    break;
+                case 2:
+                    importDirectory();
+                    break;
+                case 3:
+                    searchText();
+                    break;
+                case 4:
+                    rebuildTextIndex();
+                    break;
+                case 5:
+                    filterDocuments();
+                    break;
+                case 6:
+                    showCopies();
+                    break;
+                case 7:
+                    exportLibraryBibTex();
+                    break;
+                case 8:
+                    importBibTex();
+                    break;
+                case 9:
+                    syncLibrary();
+                    break;
+                case 10:
+                    verifyLibrary();
+                    break;
+                case 0:
+                    break;
+                default:
+                    System.err.println("Invalid option.");
+            }
+        }
+    }
+
+    /**
+     * Imports every entry of a JSON file into the database and copies the files to the library.
+     * The JSON file must contain an array of objects with the same fields asked by the add file option,
+     * plus a <b>'type'</b> field (<i>Book</i>, <i>Slide</i> or <i>ClassNote</i>).
+     */
+    private void importFromJson() {
+        String input = prompt("Type the path of the JSON file to import: ");
+        File source = new File(input);
+        if (!source.isFile()) {
+            System.err.println("File '" + input + "' not found.");
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Document> imported;
+        try {
+            imported = db.importObjects(source);
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to import '" + input + "': " + e.getMessage());
+            return;
+        }
+        for (Document document : imported) {
+            File dbPath;
+            if (document instanceof Book) dbPath = db.getBooksPath();
+            else if (document instanceof ClassNote) dbPath = db.getClassNotesPath();
+            else dbPath = db.getSlidesPath();
+            if (document.getPath() == null || document.getAuthors() == null || document.getAuthors().isEmpty()) {
+                System.err.println("WARNING: '" + document.getTitle() + "' has no path or authors, file not copied.");
+                continue;
+            }
+            try {
+                addToLibrary(document.getTitle(), dbPath);
+            } catch (IOException e) {
+                System.err.println("ERROR: Unable to copy '" + document.getTitle() + "' to library.");
+            }
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(GREEN + imported.size() + " entries imported in " + elapsed + " ms." + RESET);
+    }
+
+    /**
+     * Imports every PDF of a directory tree at once. The metadata of each file comes from a sidecar
+     * JSON file or from its file name (see {@link BulkImporter}).
+     */
+    private void importDirectory() {
+        String input = prompt("Type the path of the directory to import: ");
+        if (!fileManager.evaluatePath(input)) {
+            System.err.println("\nPath '" + input + "' is not a valid path.\n");
+            return;
+        }
+        String option = prompt("Default type for files without a sidecar?\n" +
+                BLUE + "[1] " + RESET + "Book\n" +
+                BLUE + "[2] " + RESET + "Class note\n" +
+                BLUE + "[3] " + RESET + "Slide\n");
+        String type;
+        if (option.equals("1")) type = "Book";
+        else if (option.equals("2")) type = "ClassNote";
+        else if (option.equals("3")) type = "Slide";
+        else {
+            System.err.println("Invalid option: '" + option + "'");
+            return;
+        }
+
+        try {
+            BulkImporter.Result result = new BulkImporter(db, fileManager).importDirectory(Paths.get(input), type);
+            for (String failure : result.getFailures()) {
+                System.err.println("ERROR: Failed to import " + failure);
+            }
+            System.out.printf(GREEN + "%d files imported in %.1f s (%.1f files/s, %.1f MB/s)%n" + RESET,
+                    result.getFiles(), result.getElapsedNanos() / 1e9,
+                    result.getFilesPerSecond(), result.getMegabytesPerSecond());
+            if (result.getDuplicates() > 0) {
+                System.out.printf(YELLOW + "%d files had content already in the library and were stored once (%.1f MB saved)%n" + RESET,
+                        result.getDuplicates(), result.getBytesSaved() / (1024.0 * 1024.0));
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to import directory: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Watches the library until Enter is pressed, adding, removing and moving documents as their PDFs
+     * are added to, removed from or moved between the author directories (see {@link LibrarySync}).
+     */
+    private void syncLibrary() {
+        String option = prompt("Type of the documents added for new files?\n" +
+                BLUE + "[1] " + RESET + "Book\n" +
+                BLUE + "[2] " + RESET + "Class note\n" +
+                BLUE + "[3] " + RESET + "Slide\n");
+        String type;
+        if (option.equals("1")) type = "Book";
+        else if (option.equals("2")) type = "ClassNote";
+        else if (option.equals("3")) type = "Slide";
+        else {
+            System.err.println("Invalid option: '" + option + "'");
+            return;
+        }
+
+        LibrarySync sync;
+        try {
+            sync = new LibrarySync(db, type, line -> System.out.println(GREEN + line + RESET));
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to watch the library: " + e.getMessage());
+            return;
+        }
+        prompt(BLUE + "Watching the library for changes. Press Enter to stop." + RESET);
+        try {
+            sync.close();
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to stop watching the library: " + e.getMessage());
+        }
+        System.out.printf("%d added, %d removed, %d moved.%n", sync.getAdded(), sync.getRemoved(), sync.getMoved());
+        if (sync.getOverflows() > 0) {
+            System.out.println(YELLOW + "Changes came faster than they could be reported " + sync.getOverflows()
+                    + " times; the changed folders were scanned again." + RESET);
+        }
+    }
+
+    /**
+     * Checks that the file of every document is in the library and intact, and lists the files of the
+     * library that belong to no document (see {@link LibraryVerifier}). The full report can be saved as JSON.
+     */
+    private void verifyLibrary() {
+        String option = prompt("Which check?\n" +
+                BLUE + "[1] " + RESET + "Quick (existence, size, PDF header and trailer)\n" +
+                BLUE + "[2] " + RESET + "Full (also reads every file and compares its hash)\n");
+        if (!option.equals("1") && !option.equals("2")) {
+            System.err.println("Invalid option: '" + option + "'");
+            return;
+        }
+        String output = prompt("Path of the JSON report (leave empty to only show the summary): ");
+
+        // Only the documents of the copies still running are skipped; a pending document without one is checked
+        Set<String> copying = new HashSet<>();
+        for (CopyQueue.CopyJob job : copyQueue.jobs()) {
+            if (!job.isFinished()) copying.add(job.getTitle());
+        }
+        LibraryVerifier.Report report;
+        try {
+            report = new LibraryVerifier(db).verify(option.equals("2"), copying);
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to verify the library: " + e.getMessage());
+            return;
+        }
+        List<LibraryVerifier.Problem> problems = new ArrayList<>(report.getMissing());
+        problems.addAll(report.getCorrupt());
+        for (int i = 0; i < Math.min(problems.size(), MAX_LISTED_ERRORS); i++) {
+            LibraryVerifier.Problem problem = problems.get(i);
+            System.err.println("ERROR: '" + problem.getTitle() + "' (" + problem.getType() + "): " + problem.getReason());
+        }
+        for (int i = 0; i < Math.min(report.getOrphaned().size(), MAX_LISTED_ERRORS); i++) {
+            System.out.println(YELLOW + "Orphaned: " + report.getOrphaned().get(i) + RESET);
+        }
+        String color = problems.isEmpty() && report.getOrphaned().isEmpty() ? GREEN : YELLOW;
+        System.out.printf(color + "%d documents: %d intact, %d missing, %d corrupt, %d orphaned files%s" + RESET + "%n",
+                report.getDocuments(), report.getVerified(), report.getMissing().size(), report.getCorrupt().size(),
+                report.getOrphaned().size(), report.getPending() > 0 ? " (" + report.getPending() + " still being copied)" : "");
+        if (report.isHashesChecked()) {
+            System.out.printf("%.1f MB read in %.1f s (%.1f MB/s), %d documents without a stored hash%n",
+                    report.getBytesRead() / (1024.0 * 1024.0), report.getElapsedMillis() / 1000.0,
+                    report.getMegabytesPerSecond(), report.getUnhashed());
+        }
+
+        if (output.isBlank()) return;
+        try {
+            LibraryVerifier.writeReport(report, new File(output));
+            System.out.println(GREEN + "Report saved to " + output + RESET);
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to save the report: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Searches the text of the PDFs and lists the best matches.
+     */
+    private void searchText() {
+        if (!db.isFullTextSearchEnabled()) {
+            System.err.println("ERROR: Full-text search is disabled ('fullTextSearch' in config.json).");
+            return;
+        }
+        String query = prompt("Type the words to search for (use double quotes for exact phrases): ");
+        String option = prompt("Search in which type?\n" +
+                BLUE + "[1] " + RESET + "Book\n" +
+                BLUE + "[2] " + RESET + "Class note\n" +
+                BLUE + "[3] " + RESET + "Slide\n" +
+                BLUE + "[0] " + RESET + "All\n");
+        DocumentType type;
+        if (option.equals("1")) type = DocumentType.BOOK;
+        else if (option.equals("2")) type = DocumentType.CLASS_NOTE;
+        else if (option.equals("3")) type = DocumentType.SLIDE;
+        else if (option.equals("0")) type = null;
+        else {
+            System.err.println("Invalid option: '" + option + "'");
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            List<SearchHit> hits = db.searchText(query, type, 20);
+            long elapsed = System.nanoTime() - start;
+            int indexing = db.getPendingTextIndexing();
+            if (indexing > 0) {
+                System.out.println(YELLOW + indexing + " documents are still being indexed and may be missing from the results." + RESET);
+            }
+            if (db.needsTextIndexRebuild()) {
+                System.out.println(YELLOW + "Some changes could not be added to the full-text index; rebuild it to search every document." + RESET);
+            }
+            if (hits.isEmpty()) {
+                System.out.println(YELLOW + "No documents found." + RESET);
+                return;
+            }
+            for (int i = 0; i < hits.size(); i++) {
+                SearchHit hit = hits.get(i);
+                System.out.printf(BLUE + "[%d] " + RESET + "%s (%s, score %.2f)%n", i + 1, hit.getTitle(), hit.getType(), hit.getScore());
+            }
+            System.out.printf(GREEN + "%d results in %.1f ms%n" + RESET, hits.size(), elapsed / 1e6);
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to search: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Extracts the text of every PDF in the library again.
+     */
+    private void rebuildTextIndex() {
+        try {
+            long start = System.nanoTime();
+            int indexed = db.rebuildTextIndex();
+            if (indexed < 0) {
+                System.err.println("ERROR: Full-text search is disabled ('fullTextSearch' in config.json).");
+                return;
+            }
+            System.out.printf(GREEN + "%d documents indexed in %.1f s%n" + RESET, indexed, (System.nanoTime() - start) / 1e9);
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to rebuild the full-text index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lists the documents of a type that match conditions on their indexed fields.
+     */
+    private void filterDocuments() {
+        String option = prompt("Which file type you wish to filter?\n" +
+                BLUE + "[1] " + RESET + "Book\n" +
+                BLUE + "[2] " + RESET + "Class note\n" +
+                BLUE + "[3] " + RESET + "Slide\n");
+        DocumentType type;
+        if (option.equals("1")) type = DocumentType.BOOK;
+        else if (option.equals("2")) type = DocumentType.CLASS_NOTE;
+        else if (option.equals("3")) type = DocumentType.SLIDE;
+        else {
+            System.err.println("Invalid option: '" + option + "'");
+            return;
+        }
+
+        String input = prompt("Type the conditions separated by ';' (fields: " + db.getIndexedFields(type) + ").\n" +
+                "Use field=value, or field=from..to for a range (e.g. publishYear=2000..2010; publisher=Springer): ");
+        List<Condition> conditions = new ArrayList<>();
+        for (String part : input.split(";")) {
+            if (part.isBlank()) continue;
+            int equals = part.indexOf('=');
+            if (equals < 0) {
+                System.err.println("ERROR: Invalid condition '" + part.trim() + "'.");
+                return;
+            }
+            String field = part.substring(0, equals).trim();
+            String value = part.substring(equals + 1).trim();
+            int dots = value.indexOf("..");
+            try {
+                if (dots >= 0) {
+                    String from = value.substring(0, dots).trim();
+                    String to = value.substring(dots + 2).trim();
+                    conditions.add(Condition.between(field, from.isEmpty() ? null : Integer.valueOf(from),
+                            to.isEmpty() ? null : Integer.valueOf(to)));
+                } else {
+                    conditions.add(Condition.equalTo(field, value));
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("ERROR: Invalid range '" + value + "'. Ranges must be numbers.");
+                return;
+            }
+        }
+
+        try {
+            List<? extends Document> documents = db.queryDocuments(type, conditions);
+            if (documents.isEmpty()) {
+                System.out.println(YELLOW + "No documents found." + RESET);
+                return;
+            }
+            for (Document document : documents) {
+                System.out.println(BLUE + "- " + RESET + document.getTitle() + " " + document.getAuthors());
+            }
+            System.out.println(GREEN + documents.size() + " documents found." + RESET);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to read the database: " + e.getMessage());
+        }
+    }
+
     /**
      * Lógica para criar uma nova coleção.
      */
@@ -213,6 +625,15 @@ public class UserInterface {
 
             // Lógica para encontrar documentos elegíveis
             List<Document> eligibleDocs = findEligibleDocuments(author, type);
+            if (eligibleDocs.isEmpty()) {
+                // The name may have been mistyped or typed only in part
+                String suggested = chooseSuggestion(scanner,
+                        merge(db.completeAuthors(author, SUGGESTIONS), db.suggestAuthors(author, SUGGESTIONS)));
+                if (suggested != null) {
+                    author = suggested;
+                    eligibleDocs = findEligibleDocuments(author, type);
+                }
+            }
             if (eligibleDocs.isEmpty()) {
                 System.out.println("No eligible documents found for this author and type.");
                 return;
@@ -283,7 +704,7 @@ public class UserInterface {
         try {
             System.out.print("Enter the name of the collection to add to: ");
             String collectionName = scanner.nextLine();
-            Collection collection = db.getCollectionByName(collectionName);
+            Collection collection = findCollection(scanner, collectionName);
 
             if (collection == null) {
                 System.err.println("Collection not found.");
@@ -297,7 +718,8 @@ public class UserInterface {
 
             List<Document> eligibleDocs = findEligibleDocuments(collection.getAuthor(), collection.getType());
             // Remove docs already in the collection
-            eligibleDocs.removeIf(doc -> collection.getEntryTitles().contains(doc.getTitle()));
+            Set<String> members = new HashSet<>(collection.getEntryTitles());
+            eligibleDocs.removeIf(doc -> members.contains(doc.getTitle()));
 
             if (eligibleDocs.isEmpty()) {
                 System.out.println("No new documents available to add.");
@@ -324,8 +746,11 @@ public class UserInterface {
                 return;
             }
 
-            collection.getEntryTitles().addAll(titlesToAdd);
-            db.saveCollection(collection);
+            // The collection is shared with the database cache, so a changed copy is saved instead
+            List<String> titles = new ArrayList<>(collection.getEntryTitles());
+            titles.addAll(titlesToAdd);
+            db.saveCollection(new Collection(collection.getName(), collection.getAuthor(), collection.getType(),
+                    collection.getMaxSize(), titles));
             System.out.println(GREEN + "Entries added successfully." + RESET);
 
         } catch (Exception e) {
@@ -342,7 +767,7 @@ public class UserInterface {
         String collectionName = scanner.nextLine();
 
         try {
-            Collection collection = db.getCollectionByName(collectionName);
+            Collection collection = findCollection(scanner, collectionName);
             if (collection == null) {
                 System.err.println("Collection not found.");
                 return;
@@ -351,14 +776,17 @@ public class UserInterface {
             System.out.print("Enter the exact title to remove: ");
             String titleToRemove = scanner.nextLine();
 
-            boolean removed = collection.getEntryTitles().remove(titleToRemove);
+            // The collection is shared with the database cache, so a changed copy is saved instead
+            List<String> titles = new ArrayList<>(collection.getEntryTitles());
+            boolean removed = titles.remove(titleToRemove);
 
             if (removed) {
-                if (collection.getEntryTitles().isEmpty()) {
+                if (titles.isEmpty()) {
                     db.deleteCollection(collection.getName());
                     System.out.println(YELLOW + "Entry removed. Collection is now empty and has been deleted." + RESET);
                 } else {
-                    db.saveCollection(collection);
+                    db.saveCollection(new Collection(collection.getName(), collection.getAuthor(), collection.getType(),
+                            collection.getMaxSize(), titles));
                     System.out.println(GREEN + "Entry removed successfully." + RESET);
                 }
             } else {
@@ -370,38 +798,38 @@ public class UserInterface {
     }
 
     /**
-     * Gera um arquivo BibTeX a partir de uma coleção de livros.
+     * Gera um arquivo BibTeX a partir de uma ou mais coleções, de qualquer tipo.
      */
     private void generateCollectionBibTex() {
         Scanner scanner = new Scanner(System.in);
-        System.out.print("Enter the name of the Book collection: ");
-        String collectionName = scanner.nextLine();
+        System.out.print("Enter the names of the collections, separated by commas: ");
+        String[] names = scanner.nextLine().split(",");
 
         try {
-            Collection collection = db.getCollectionByName(collectionName);
-            if (collection == null || collection.getType() != DocumentType.BOOK) {
-                System.err.println("Book collection not found.");
+            List<Collection> selected = new ArrayList<>();
+            for (String name : names) {
+                if (name.isBlank()) continue;
+                Collection collection = findCollection(scanner, name.trim());
+                if (collection == null) {
+                    System.err.println("Collection '" + name.trim() + "' not found.");
+                    continue;
+                }
+                selected.add(collection);
+            }
+            if (selected.isEmpty()) {
+                System.err.println("No collection to export.");
                 return;
             }
             System.out.print("Enter the full output path (e.g., C:/Users/Me/Desktop/references.bib): ");
             Path outputPath = Paths.get(scanner.nextLine());
 
-            // CORREÇÃO: Lê o arquivo de livros usando a classe correta (Book)
-            ObjectMapper mapper = new ObjectMapper();
-            List<Book> allBooks = mapper.readValue(db.getBooksPath(), new TypeReference<List<Book>>() {});
-
-            // Filtra para obter apenas os livros que estão na coleção
-            List<Book> collectionBooks = allBooks.stream()
-                    .filter(book -> collection.getEntryTitles().contains(book.getTitle()))
-                    .collect(Collectors.toList());
-
-            if (collectionBooks.isEmpty()) {
-                System.err.println("No valid book entries found in the database for this collection.");
+            BibTexGenerator.Result result = new BibTexGenerator(db).exportCollections(selected, outputPath);
+            if (result.getEntries() == 0) {
+                System.err.println("No valid document entries found in the database for these collections.");
                 return;
             }
-
-            BibTexGenerator.generate(collection, collectionBooks, outputPath);
-            System.out.println(GREEN + "BibTeX file generated successfully at " + outputPath + RESET);
+            System.out.println(GREEN + "BibTeX file with " + result.getEntries() + " entries generated successfully at "
+                    + outputPath + RESET);
 
         } catch (IOException e) {
             System.err.println("Error generating BibTeX file: " + e.getMessage());
@@ -409,6 +837,55 @@ public class UserInterface {
         }
     }
 
+    /**
+     * Exports every document of the library to a single BibTeX file.
+     */
+    private void exportLibraryBibTex() {
+        String input = prompt("Enter the full output path (e.g., C:/Users/Me/Desktop/library.bib): ");
+        try {
+            BibTexGenerator.Result result = new BibTexGenerator(db).exportLibrary(Paths.get(input));
+            System.out.printf(GREEN + "%d entries exported to %s in %d ms." + RESET + "%n",
+                    result.getEntries(), input, result.getElapsedNanos() / 1_000_000);
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to export the library: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Imports the entries of a BibTeX file, copying the PDFs found for them to the library
+     * (see {@link BibTexImporter}).
+     */
+    private void importBibTex() {
+        String input = prompt("Type the path of the BibTeX file to import: ");
+        if (!new File(input).isFile()) {
+            System.err.println("File '" + input + "' not found.");
+            return;
+        }
+        String directory = prompt("Directory where to look for the PDFs (leave empty to use only the 'file' field): ");
+        if (!directory.isBlank() && !fileManager.evaluatePath(directory)) {
+            System.err.println("\nPath '" + directory + "' is not a valid path.\n");
+            return;
+        }
+
+        try {
+            BibTexImporter.Result result = new BibTexImporter(db, fileManager)
+                    .importFile(Paths.get(input), directory.isBlank() ? null : Paths.get(directory));
+            List<String> errors = result.getErrors();
+            for (int i = 0; i < Math.min(errors.size(), MAX_LISTED_ERRORS); i++) {
+                System.err.println("ERROR: " + errors.get(i));
+            }
+            if (errors.size() > MAX_LISTED_ERRORS) {
+                System.err.println("ERROR: ... and " + (errors.size() - MAX_LISTED_ERRORS) + " more entries could not be imported.");
+            }
+            System.out.printf(GREEN + "%d of %d entries imported (%d with a PDF) in %.1f s" + RESET + "%n",
+                    result.getImported(), result.getEntries(), result.getWithFile(), result.getElapsedNanos() / 1e9);
+            System.out.printf("Parsed at %.0f entries/s (%.1f MB/s)%n",
+                    result.getEntriesPerSecond(), result.getMegabytesPerSecond());
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to import '" + input + "': " + e.getMessage());
+        }
+    }
+
     /**
      * Empacota os arquivos de uma coleção em um arquivo .zip. (VERSÃO CORRIGIDA)
      */
@@ -418,7 +895,7 @@ public class UserInterface {
         String collectionName = scanner.nextLine();
 
         try {
-            Collection collection = db.getCollectionByName(collectionName);
+            Collection collection = findCollection(scanner, collectionName);
             if (collection == null) {
                 System.err.println("Collection not found.");
                 return;
@@ -426,39 +903,18 @@ public class UserInterface {
             System.out.print("Enter the full output path for the zip file (e.g., C:/Users/Me/Desktop/package.zip): ");
             Path outputPath = Paths.get(scanner.nextLine());
 
-            ObjectMapper mapper = new ObjectMapper();
-            List<Document> documentsToPack = new ArrayList<>();
-            List<String> titles = collection.getEntryTitles();
-
-            // CORREÇÃO: Determina o tipo de documento e o lê do arquivo JSON correto
-            // usando a classe específica (Book, Slide, etc.)
-            switch (collection.getType()) {
-                case BOOK:
-                    List<Book> allBooks = mapper.readValue(db.getBooksPath(), new TypeReference<List<Book>>() {});
-                    allBooks.stream()
-                            .filter(doc -> titles.contains(doc.getTitle()))
-                            .forEach(documentsToPack::add);
-                    break;
-                case SLIDE:
-                    List<Slide> allSlides = mapper.readValue(db.getSlidesPath(), new TypeReference<List<Slide>>() {});
-                    allSlides.stream()
-                            .filter(doc -> titles.contains(doc.getTitle()))
-                            .forEach(documentsToPack::add);
-                    break;
-                case CLASS_NOTE:
-                    List<ClassNote> allNotes = mapper.readValue(db.getClassNotesPath(), new TypeReference<List<ClassNote>>() {});
-                    allNotes.stream()
-                            .filter(doc -> titles.contains(doc.getTitle()))
-                            .forEach(documentsToPack::add);
-                    break;
-            }
+            List<Document> documentsToPack = getDocumentsFromCollection(collection, Document.class);
 
             if (documentsToPack.isEmpty()) {
                 System.err.println("No valid document entries found in the database for this collection.");
                 return;
             }
 
-            CollectionPackager.pack(documentsToPack, outputPath);
+            CollectionPackager.Result result = CollectionPackager.pack(documentsToPack, outputPath);
+            System.out.printf(GREEN + "%d files packaged (%d stored without compression, %d reused from the previous archive), "
+                            + "%.1f MB read -> %.1f MB archive in %.2f s (%.1f MB/s)." + RESET + "%n",
+                    result.getFiles(), result.getStored(), result.getReused(), result.getBytesRead() / 1e6,
+                    result.getArchiveSize() / 1e6, result.getElapsedNanos() / 1e9, result.getThroughput());
 
         } catch (IOException e) {
             System.err.println("Error packaging collection: " + e.getMessage());
@@ -477,6 +933,78 @@ public class UserInterface {
         return scanner.nextLine();
     }
 
+    /**
+     * Checks that a typed title exists and, if it does not, offers the titles that start with it or
+     * are the most similar to it instead.
+     * @param scanner The scanner reading the user input.
+     * @param dbPath The database path of the document type.
+     * @param title The title typed by the user.
+     * @return The title to be used, or <i>null</i> if no document was chosen.
+     * @throws IOException Might throw an exception if unable to read the database.
+     */
+    private String resolveTitle(Scanner scanner, File dbPath, String title) throws IOException {
+        if (db.getDocument(dbPath, title) != null) return title;
+        DocumentType type;
+        if (dbPath.equals(db.getBooksPath())) type = DocumentType.BOOK;
+        else if (dbPath.equals(db.getClassNotesPath())) type = DocumentType.CLASS_NOTE;
+        else type = DocumentType.SLIDE;
+        // Titles that start with what was typed come first, then the most similar ones
+        String suggested = chooseSuggestion(scanner,
+                merge(db.completeTitles(type, title, SUGGESTIONS), db.suggestTitles(type, title, SUGGESTIONS)));
+        if (suggested == null) {
+            System.err.println("ERROR: '" + title + "' not found in the database.");
+        }
+        return suggested;
+    }
+
+    /**
+     * Finds a collection by name and, if there is none, offers the names that start with the typed one.
+     * @param scanner The scanner reading the user input.
+     * @param name The name typed by the user.
+     * @return The collection, or <i>null</i> if no collection was chosen.
+     * @throws IOException Might throw an exception if unable to read the database.
+     */
+    private Collection findCollection(Scanner scanner, String name) throws IOException {
+        Collection collection = db.getCollectionByName(name);
+        if (collection != null) return collection;
+        String suggested = chooseSuggestion(scanner, db.completeCollectionNames(name, SUGGESTIONS));
+        return suggested == null ? null : db.getCollectionByName(suggested);
+    }
+
+    /**
+     * Merges two lists of suggestions, without repetitions and up to the number shown.
+     * @param first The suggestions shown first.
+     * @param second The suggestions shown after them.
+     * @return The merged suggestions.
+     */
+    private List<String> merge(List<String> first, List<String> second) {
+        Set<String> merged = new LinkedHashSet<>(first);
+        merged.addAll(second);
+        return merged.stream().limit(SUGGESTIONS).collect(Collectors.toList());
+    }
+
+    /**
+     * Shows a numbered list of suggestions and lets the user pick one.
+     * @param scanner The scanner reading the user input.
+     * @param suggestions The suggestions, best first.
+     * @return The chosen suggestion, or <i>null</i> if there were none or the user declined them.
+     */
+    private String chooseSuggestion(Scanner scanner, List<String> suggestions) {
+        if (suggestions.isEmpty()) return null;
+        System.out.println(YELLOW + "Did you mean:" + RESET);
+        for (int i = 0; i < suggestions.size(); i++) {
+            System.out.println(BLUE + "[" + (i + 1) + "] " + RESET + suggestions.get(i));
+        }
+        System.out.println(BLUE + "[0] " + RESET + "None of these");
+        try {
+            int choice = Integer.parseInt(scanner.nextLine().trim());
+            if (choice >= 1 && choice <= suggestions.size()) return suggestions.get(choice - 1);
+        } catch (NumberFormatException e) {
+            System.err.println("ERROR: Invalid input value. Value should be a integer.");
+        }
+        return null;
+    }
+
     /**
      * Helper method to find documents eligible for adding to a collection.
      * @param author The author's name.
@@ -485,30 +1013,7 @@ public class UserInterface {
      * @throws IOException
      */
     private List<Document> findEligibleDocuments(String author, DocumentType type) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        List<Document> eligibleDocs = new ArrayList<>();
-
-        switch (type) {
-            case BOOK:
-                List<Book> books = mapper.readValue(db.getBooksPath(), new TypeReference<>() {});
-                books.stream()
-                        .filter(doc -> doc.getAuthors().contains(author))
-                        .forEach(eligibleDocs::add);
-                break;
-            case SLIDE:
-                List<Slide> slides = mapper.readValue(db.getSlidesPath(), new TypeReference<>() {});
-                slides.stream()
-                        .filter(doc -> doc.getAuthors().contains(author))
-                        .forEach(eligibleDocs::add);
-                break;
-            case CLASS_NOTE:
-                List<ClassNote> notes = mapper.readValue(db.getClassNotesPath(), new TypeReference<>() {});
-                notes.stream()
-                        .filter(doc -> doc.getAuthors().contains(author))
-                        .forEach(eligibleDocs::add);
-                break;
-        }
-        return eligibleDocs;
+        return db.findByAuthor(author, type);
     }
 
     /**
@@ -520,30 +1025,11 @@ public class UserInterface {
      */
     @SuppressWarnings("unchecked")
     private <T extends Document> List<T> getDocumentsFromCollection(Collection collection, Class<T> docClass) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        File dbPath;
-        TypeReference<List<T>> typeRef;
-
-        switch (collection.getType()) {
-            case BOOK:
-                dbPath = db.getBooksPath();
-                typeRef = new TypeReference<>() {};
-                break;
-            case SLIDE:
-                dbPath = db.getSlidesPath();
-                typeRef = new TypeReference<>() {};
-                break;
-            case CLASS_NOTE:
-                dbPath = db.getClassNotesPath();
-                typeRef = new TypeReference<>() {};
-                break;
-            default:
-                return new ArrayList<>();
-        }
-
-        List<T> allDocs = mapper.readValue(dbPath, typeRef);
-        return allDocs.stream()
-                .filter(doc -> collection.getEntryTitles().contains(doc.getTitle()))
+        List<Document> documents = db.getCollectionDocuments(collection.getName());
+        if (documents == null) return new ArrayList<>();
+        return documents.stream()
+                .filter(docClass::isInstance)
+                .map(doc -> (T) doc)
                 .collect(Collectors.toList());
     }
 
@@ -589,6 +1075,8 @@ public class UserInterface {
 
         // Tries to remove the entry based on the gathered information.
         try {
+            fileName = resolveTitle(scanner, path, fileName);
+            if (fileName == null) return;
             // The first author is rescued from the removed entry so that the physical file can be
             // located and deleted from the library (the file is inside a directory name by author[0]).
             String author = db.removeEntry(path, fileName, "authors[0]");
@@ -750,7 +1238,9 @@ public class UserInterface {
             buffer.put("institutionName", input2);
         }
 
-        // Tries to write the json object in the database, if successful, copies file to library.
+        // Tries to write the json object in the database, if successful, copies file to library in the background.
+        // The entry stays pending until the copy lands
+        buffer.put("pending", true);
         if (db.writeObject(buffer)) {
             String title = buffer.get("title").toString();
             String type = buffer.get("type").toString();
@@ -759,7 +1249,7 @@ public class UserInterface {
             else if (type.equals("ClassNote")) path = db.getClassNotesPath();
             else path = db.getSlidesPath();
             try {
-                addToLibrary(title, path);
+                queueCopyToLibrary(title, path);
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -811,6 +1301,8 @@ public class UserInterface {
         else path = db.getSlidesPath();
 
         try {
+            fileName = resolveTitle(scanner, path, fileName);
+            if (fileName == null) return;
             db.editFieldByTitle(path, fileName);
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -824,12 +1316,143 @@ public class UserInterface {
      * @throws IOException Might throw an exception if unable to manipulate files.
      */
     private void addToLibrary(String fileName, File dbPath) throws IOException {
-        String path = JsonPath.from(dbPath).get("find { it.title == '" + fileName +  "'}.path");
-        String author = JsonPath.from(dbPath).get("find { it.title == '" + fileName +  "'}.authors[0]");
+        Document document = db.getDocument(dbPath, fileName);
+        String path = document.getPath();
+        String author = document.getAuthors().get(0);
         fileManager.createDirectory(db.getLibraryPath(), author);
         String subDirectory = db.getLibraryPath() + File.separator + author;
-        fileManager.copyFileToLibrary(path + File.separator + fileName,
-                subDirectory +  File.separator + fileName);
+        FileManager.Placement placement = fileManager.copyFileToLibrary(path + File.separator + fileName,
+                subDirectory +  File.separator + fileName, db::findLibraryCopy);
+        if (placement == null) return;
+        db.recordPlacement(dbPath, fileName, placement.getHash(), placement.getSize());
+        if (placement.getBytesSaved() > 0) {
+            System.out.printf(YELLOW + "The library already has this content, so it was stored only once (%d bytes saved).%n" + RESET,
+                    placement.getBytesSaved());
+        }
+    }
+
+    /**
+     * Queues the copy of a file to the library, so the menu is available again right away. The entry
+     * is marked as placed once the copy lands; if the queue is full or every attempt fails, it stays
+     * pending and the copy is tried again the next time the program starts.
+     * @param fileName The name of the file to be copied (with extension).
+     * @param dbPath The database path.
+     * @throws IOException Might throw an exception if unable to manipulate files.
+     */
+    private void queueCopyToLibrary(String fileName, File dbPath) throws IOException {
+        Document document = db.getDocument(dbPath, fileName);
+        String author = document.getAuthors().get(0);
+        fileManager.createDirectory(db.getLibraryPath(), author);
+        String subDirectory = db.getLibraryPath() + File.separator + author;
+        CopyQueue.CopyJob job = copyQueue.submit(fileName, document.getPath() + File.separator + fileName,
+                subDirectory + File.separator + fileName, db::findLibraryCopy, copyDone(fileName, dbPath));
+        if (job.getState() == CopyQueue.CopyJob.State.FAILED) {
+            System.err.println("ERROR: " + job.getError() + ". '" + fileName
+                    + "' stays pending and will be copied the next time the program starts.");
+        } else if (!job.isFinished()) {
+            System.out.println(YELLOW + "Copying to library in the background as job #" + job.getId()
+                    + " (see Library tools > Show background copies)." + RESET);
+        }
+    }
+
+    /**
+     * Records the copy of a file once its background job ends.
+     * @param fileName The name of the file (with extension).
+     * @param dbPath The database path.
+     * @return The callback of the job.
+     */
+    private Consumer<CopyQueue.CopyJob> copyDone(String fileName, File dbPath) {
+        return done -> {
+            if (done.getState() == CopyQueue.CopyJob.State.FAILED) {
+                System.err.println("ERROR: Unable to copy '" + fileName + "' to library after "
+                        + done.getAttempts() + " attempts: " + done.getError()
+                        + ". It stays pending and will be copied the next time the program starts.");
+                return;
+            }
+            try {
+                db.recordPlacement(dbPath, fileName, done.getPlacement().getHash(), done.getPlacement().getSize());
+            } catch (IOException e) {
+                System.err.println("ERROR: Failed to record the copy of '" + fileName + "': " + e.getMessage());
+                return;
+            }
+            System.out.printf(GREEN + "[copy #%d] '%s' is in the library (%.1f MB/s)." + RESET + "%n",
+                    done.getId(), fileName, done.getThroughput() / 1e6);
+        };
+    }
+
+    /**
+     * Copies to the library, in the background, the files of the documents left pending by an earlier
+     * session (the program was closed or killed mid-copy, the queue was full, or every attempt failed).
+     * Files that did land in the library are only recorded.
+     */
+    private void resumePendingCopies() {
+        Map<Document, File> pending = new LinkedHashMap<>();
+        try {
+            for (Book book : db.getBooks()) if (book.isPending()) pending.put(book, db.getBooksPath());
+            for (ClassNote classNote : db.getClassNotes()) if (classNote.isPending()) pending.put(classNote, db.getClassNotesPath());
+            for (Slide slide : db.getSlides()) if (slide.isPending()) pending.put(slide, db.getSlidesPath());
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to look for pending copies: " + e.getMessage());
+            return;
+        }
+        if (pending.isEmpty()) return;
+        System.out.println(YELLOW + "Resuming " + pending.size() + " copies to the library left pending by the last session"
+                + " (see Library tools > Show background copies)." + RESET);
+        // Waits for room in the copy queue on its own thread, so the menu is available right away
+        resumeThread = new Thread(() -> {
+            for (Map.Entry<Document, File> entry : pending.entrySet()) {
+                try {
+                    resumeCopy(entry.getKey(), entry.getValue());
+                } catch (IOException e) {
+                    System.err.println("ERROR: Failed to resume the copy of '" + entry.getKey().getTitle() + "': " + e.getMessage());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "library-copy-resume");
+        resumeThread.setDaemon(true);
+        resumeThread.start();
+    }
+
+    private void resumeCopy(Document document, File dbPath) throws IOException, InterruptedException {
+        String fileName = document.getTitle();
+        if (document.getAuthors() == null || document.getAuthors().isEmpty()) return;
+        String author = document.getAuthors().get(0);
+        File destination = new File(db.getLibraryPath() + File.separator + author, fileName);
+        File source = new File(document.getPath(), fileName);
+        if (destination.isFile()) {
+            // The copy landed, but the program ended before it was recorded
+            FileManager.Placement placement = FileManager.inspect(destination.toPath());
+            db.recordPlacement(dbPath, fileName, placement.getHash(), placement.getSize());
+        } else if (source.isFile()) {
+            fileManager.createDirectory(db.getLibraryPath(), author);
+            copyQueue.submitWhenFree(fileName, source.getPath(), destination.getPath(), db::findLibraryCopy,
+                    copyDone(fileName, dbPath));
+        } else {
+            System.err.println("WARNING: '" + fileName + "' was never copied to the library and '" + source + "' no longer exists.");
+        }
+    }
+
+    /**
+     * Lists the background copies of this session, with their progress.
+     */
+    private void showCopies() {
+        List<CopyQueue.CopyJob> jobs = copyQueue.jobs();
+        if (jobs.isEmpty()) {
+            System.out.println("No background copies in this session.");
+            return;
+        }
+        for (CopyQueue.CopyJob job : jobs) {
+            String color = job.getState() == CopyQueue.CopyJob.State.FAILED ? RED
+                    : job.getState() == CopyQueue.CopyJob.State.DONE ? GREEN : YELLOW;
+            System.out.printf(BLUE + "#%-4d" + RESET + " %s%-8s" + RESET + " %5.1f%%  %8.1f MB  %7.1f MB/s  %s%n",
+                    job.getId(), color, job.getState(), job.getProgress() * 100, job.getTotalBytes() / 1e6,
+                    job.getThroughput() / 1e6, job.getTitle());
+            if (job.getAttempts() > 1 || job.getError() != null) {
+                System.out.println("      attempts: " + job.getAttempts()
+                        + (job.getError() != null ? ", error: " + job.getError() : ""));
+            }
+        }
     }
 
     /**
@@ -881,25 +1504,21 @@ public class UserInterface {
      * Prints books from the database.
      */
     private void printBooks() {
-        ObjectMapper mapper = new ObjectMapper();
-        List<Book> bookList;
         try {
-            bookList = mapper.readValue(db.getBooksPath(), new  TypeReference<>() {});
+            db.forEachBook(book -> {
+                System.out.println(YELLOW + "#===============================================================#");
+                System.out.println(GREEN + "type: Book" + RESET);
+                System.out.println(BLUE + "title: " + book.getTitle() + RESET);
+                System.out.println(BLUE + "subTitle: " + book.getSubTitle() + RESET);
+                System.out.println(BLUE + "authors: " + book.getAuthors() + RESET);
+                System.out.println(BLUE + "fieldOfKnowledge: " + book.getFieldOfKnowledge() + RESET);
+                System.out.println(BLUE + "publishYear: " + book.getPublishYear() + RESET);
+                System.out.println(BLUE + "path: " + book.getPath() + RESET);
+                if (book.isPending()) System.out.println(YELLOW + "status: copy to library pending" + RESET);
+            });
         } catch (IOException e) {
             System.err.println("ERROR: Failed to read database.");
             System.err.flush();
-            return;
-        }
-
-        for (Book book : bookList) {
-            System.out.println(YELLOW + "#===============================================================#");
-            System.out.println(GREEN + "type: Book" + RESET);
-            System.out.println(BLUE + "title: " + book.getTitle() + RESET);
-            System.out.println(BLUE + "subTitle: " + book.getSubTitle() + RESET);
-            System.out.println(BLUE + "authors: " + book.getAuthors() + RESET);
-            System.out.println(BLUE + "fieldOfKnowledge: " + book.getFieldOfKnowledge() + RESET);
-            System.out.println(BLUE + "publishYear: " + book.getPublishYear() + RESET);
-            System.out.println(BLUE + "path: " + book.getPath() + RESET);
         }
     }
 
@@ -907,25 +1526,21 @@ public class UserInterface {
      * Prints class notes from the database.
      */
     private void printClassNotes() {
-        ObjectMapper mapper = new ObjectMapper();
-        List<ClassNote> classNoteList;
         try {
-            classNoteList = mapper.readValue(db.getClassNotesPath(), new  TypeReference<>() {});
+            db.forEachClassNote(classNote -> {
+                System.out.println(YELLOW + "#===============================================================#");
+                System.out.println(GREEN + "type: Class note" + RESET);
+                System.out.println(BLUE + "title: " + classNote.getTitle() + RESET);
+                System.out.println(BLUE + "subTitle: " + classNote.getSubTitle() + RESET);
+                System.out.println(BLUE + "authors: " + classNote.getAuthors() + RESET);
+                System.out.println(BLUE + "lectureName: " + classNote.getLectureName() + RESET);
+                System.out.println(BLUE + "institutionName: " + classNote.getInstitutionName() + RESET);
+                System.out.println(BLUE + "path: " + classNote.getPath() + RESET);
+                if (classNote.isPending()) System.out.println(YELLOW + "status: copy to library pending" + RESET);
+            });
         } catch (IOException e) {
             System.err.println("ERROR: Failed to read database.");
             System.err.flush();
-            return;
-        }
-
-        for (ClassNote classNote : classNoteList) {
-            System.out.println(YELLOW + "#===============================================================#");
-            System.out.println(GREEN + "type: Class note" + RESET);
-            System.out.println(BLUE + "title: " + classNote.getTitle() + RESET);
-            System.out.println(BLUE + "subTitle: " + classNote.getSubTitle() + RESET);
-            System.out.println(BLUE + "authors: " + classNote.getAuthors() + RESET);
-            System.out.println(BLUE + "lectureName: " + classNote.getLectureName() + RESET);
-            System.out.println(BLUE + "institutionName: " + classNote.getInstitutionName() + RESET);
-            System.out.println(BLUE + "path: " + classNote.getPath() + RESET);
         }
     }
 
@@ -933,24 +1548,20 @@ public class UserInterface {
      * Prints slides from the database.
      */
     private void printSlides() {
-        ObjectMapper mapper = new ObjectMapper();
-        List<Slide> slideList;
         try {
-            slideList = mapper.readValue(db.getSlidesPath(), new  TypeReference<>() {});
+            db.forEachSlide(slide -> {
+                System.out.println(YELLOW + "#===============================================================#");
+                System.out.println(GREEN + "type: Slide" + RESET);
+                System.out.println(BLUE + "title: " + slide.getTitle() + RESET);
+                System.out.println(BLUE + "authors: " + slide.getAuthors() + RESET);
+                System.out.println(BLUE + "lectureName: " + slide.getLectureName() + RESET);
+                System.out.println(BLUE + "institutionName: " + slide.getInstitutionName() + RESET);
+                System.out.println(BLUE + "path: " + slide.getPath() + RESET);
+                if (slide.isPending()) System.out.println(YELLOW + "status: copy to library pending" + RESET);
+            });
         } catch (IOException e) {
             System.err.println("ERROR: Failed to read database.");
             System.err.flush();
-            return;
-        }
-
-        for (Slide slide : slideList) {
-            System.out.println(YELLOW + "#===============================================================#");
-            System.out.println(GREEN + "type: Slide" + RESET);
-            System.out.println(BLUE + "title: " + slide.getTitle() + RESET);
-            System.out.println(BLUE + "authors: " + slide.getAuthors() + RESET);
-            System.out.println(BLUE + "lectureName: " + slide.getLectureName() + RESET);
-            System.out.println(BLUE + "institutionName: " + slide.getInstitutionName() + RESET);
-            System.out.println(BLUE + "path: " + slide.getPath() + RESET);
         }
     }
 
@@ -0,0 +1,107 @@
+package com.pdfmanager.db;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes database files so that a crash never leaves them half written.
+ * A whole-file write goes to a temporary file in the same directory, which is flushed to the disk
+ * and then renamed over the original file, so the file always holds either the old or the new content.
+ */
+public final class AtomicFileWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private AtomicFileWriter() { }
+
+    /**
+     * Replaces the content of a file atomically and durably.
+     * @param target The file to be written.
+     * @param content Writes the new content to the given stream. Closing the stream is not required.
+     * @throws IOException Might throw an exception if unable to write the file. The original file is
+     *                     left untouched in that case.
+     */
+    public static void write(File target, Content content) throws IOException {
+        Path path = target.toPath();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // Closing this stream only flushes it, so the channel is still open to be forced
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+            content.writeTo(out);
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(path.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Appends bytes to the end of a file and flushes them to the disk.
+     * @param target The file to be appended to. It is created if it does not exist.
+     * @param data The bytes to be appended.
+     * @throws IOException Might throw an exception if unable to write the file.
+     */
+    public static void append(File target, byte[] data) throws IOException {
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Empties a file and flushes the change to the disk.
+     * @param target The file to be emptied. It is created if it does not exist.
+     * @throws IOException Might throw an exception if unable to write the file.
+     */
+    public static void truncate(File target) throws IOException {
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Flushes a directory entry (e.g. a rename) to the disk. Not every platform allows opening a
+     * directory, in which case this does nothing.
+     */
+    private static void syncDirectory(Path directory) {
+        if (directory == null) return;
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on this platform
+        }
+    }
+
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
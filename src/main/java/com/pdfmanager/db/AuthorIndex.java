@@ -0,0 +1,78 @@
+package com.pdfmanager.db;
+
+import com.pdfmanager.files.Document;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from author name to the titles of the documents written by that author.
+ * One index is kept for each document catalog and updated as entries are added, edited or removed.
+ */
+public class AuthorIndex implements CatalogListener<Document> {
+    private final Map<String, Set<String>> titlesByAuthor = new HashMap<>();
+
+    /**
+     * Returns the titles of the documents of an author.
+     * @param author The exact name of the author.
+     * @return A read-only set of titles, in insertion order. Empty if the author is unknown.
+     */
+    public synchronized Set<String> titlesOf(String author) {
+        Set<String> titles = titlesByAuthor.get(author);
+        return titles == null ? Collections.emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(titles));
+    }
+
+    /**
+     * @return Every author with at least one document in the catalog.
+     */
+    public synchronized Set<String> authors() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(titlesByAuthor.keySet()));
+    }
+
+    @Override
+    public synchronized void entryPut(Document previous, Document entry) {
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(entry);
+    }
+
+    @Override
+    public synchronized void entryRemoved(Document entry) {
+        unindex(entry);
+    }
+
+    @Override
+    public synchronized void reloaded(Collection<? extends Document> entries) {
+        titlesByAuthor.clear();
+        for (Document entry : entries) {
+            index(entry);
+        }
+    }
+
+    private void index(Document document) {
+        List<String> authors = document.getAuthors();
+        if (authors == null) return;
+        for (String author : authors) {
+            titlesByAuthor.computeIfAbsent(author, a -> new LinkedHashSet<>()).add(document.getTitle());
+        }
+    }
+
+    private void unindex(Document document) {
+        List<String> authors = document.getAuthors();
+        if (authors == null) return;
+        for (String author : authors) {
+            Set<String> titles = titlesByAuthor.get(author);
+            if (titles == null) continue;
+            titles.remove(document.getTitle());
+            if (titles.isEmpty()) {
+                titlesByAuthor.remove(author);
+            }
+        }
+    }
+}
@@ -0,0 +1,745 @@
+package com.pdfmanager.db;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps the content of one database file resident in memory.
+ * The file is parsed only once and read again only when its modification time or size
+ * changes (e.g. when it is edited by hand while the program is running). Every mutation
+ * is written through to the disk before the mutating method returns.
+ * <p>
+ * Entries are identified by a key (the title of a document or the name of a collection), and
+ * there is at most one entry per key. Entries are held in a hash map by key, in insertion order,
+ * so looking up, replacing or removing an entry does not scan the file. When a journal is used,
+ * mutations are appended to it instead of rewriting the whole file, and the file is rewritten only
+ * when the journal grows too large.
+ * <p>
+ * Writes are crash-safe (see {@link AtomicFileWriter}) and use group commit: the mutation is applied
+ * in memory, then one of the waiting threads writes every mutation made so far in a single durable
+ * write, while the mutations made in the meantime wait for the next write. Under load, many
+ * mutations share one write and one flush to the disk.
+ * <p>
+ * If a write fails, the mutating method throws an {@link IOException} but the mutation is kept in
+ * memory: it stays visible to reads and is written again, with a rewrite of the whole file, by the
+ * next write of the catalog. It is only lost if the process ends before a write succeeds.
+ * <p>
+ * Optionally, every rewrite of the file is also saved as a compact binary snapshot (Smile format)
+ * next to it. The snapshot records the size and modification time of the JSON file it was taken from,
+ * and it is loaded instead of the JSON file only while both still match exactly, which is much faster
+ * to parse; any edit of the JSON file makes it stale. The JSON file is still written and remains the
+ * interchange format.
+ * <p>
+ * Concurrency: each catalog has its own read/write lock, so reads of a file run in parallel and
+ * only wait for mutations of the same file. Writes of a file are serialized across processes by an
+ * advisory lock on a <i>.lock</i> file next to it; if another process changed the file, it is
+ * reloaded under that lock and the mutations not yet written are applied again on top of it, so
+ * no update is lost.
+ * @param <T> The class stored in the file (<i>Book</i>, <i>Slide</i>, <i>ClassNote</i> or <i>Collection</i>).
+ */
+public class CachedCatalog<T> {
+    // Minimum number of journal records before the snapshot is rewritten
+    private static final int COMPACTION_THRESHOLD = 1000;
+    // File locks are held by the whole JVM, so catalogs of the same file in this process take turns here first
+    private static final Map<String, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final Class<T> type;
+    private final Function<T, String> keyOf;
+    private final ObjectMapper mapper;
+    private final CatalogJournal<T> journal;
+    // Mapper of the binary snapshot, or null if there is no binary snapshot
+    private final ObjectMapper binaryMapper;
+    private final File binaryFile;
+    private final File lockFile;
+    private final List<CatalogListener<? super T>> listeners = new ArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // The fields below are guarded by 'lock'
+    private Map<String, T> entries;
+    // Read-only list of the entries, rebuilt on the first read after a mutation
+    private volatile List<T> view;
+    private long lastModified = -1;
+    private long size = -1;
+    private long journalLastModified = -1;
+    private long journalSize = -1;
+    // Number of mutations applied in memory so far
+    private long mutations;
+    // Records of the mutations that were not written yet
+    private List<CatalogJournal.Record<T>> pending = new ArrayList<>();
+    // If true, the next write rewrites the whole file instead of appending to the journal
+    private boolean snapshotRequested;
+    // If true, the next write replaces the file even if another process changed it
+    private boolean overwriteRequested;
+    // True while this catalog is writing its own files, which must not be mistaken for outside edits
+    private boolean writing;
+
+    // The fields below are guarded by 'commitLock'
+    private final Object commitLock = new Object();
+    // Number of mutations already written to the disk
+    private long durable;
+    private boolean committing;
+
+    /**
+     * @param file The database file.
+     * @param type The class stored in the file.
+     * @param keyOf Returns the key of an entry.
+     * @param mapper The mapper used to read and write the file.
+     * @param journaled If <i>true</i>, mutations are appended to a journal next to the file.
+     * @param binaryMapper The mapper of the binary snapshot, or <i>null</i> to keep no binary snapshot.
+     */
+    public CachedCatalog(File file, Class<T> type, Function<T, String> keyOf, ObjectMapper mapper, boolean journaled,
+                         ObjectMapper binaryMapper) {
+        this.file = file;
+        this.type = type;
+        this.keyOf = keyOf;
+        this.mapper = mapper;
+        this.journal = journaled ? new CatalogJournal<>(siblingOf(file, ".journal"), type, mapper) : null;
+        this.binaryMapper = binaryMapper;
+        this.binaryFile = siblingOf(file, ".smile");
+        this.lockFile = siblingOf(file, ".lock");
+    }
+
+    /**
+     * Returns the entries of the file, reloading them only if the file changed on disk.
+     * @return A read-only view of the entries.
+     * @throws IOException Might throw an exception if unable to read the file.
+     */
+    public List<T> get() throws IOException {
+        lock.readLock().lock();
+        try {
+            if (!needsLoad()) return view();
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            load();
+            return view();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Hands every entry to a consumer, in order. If the entries are resident and up to date they
+     * are served from memory; otherwise the file is streamed entry by entry without being loaded,
+     * so the first entries are delivered immediately and memory use does not depend on the file size.
+     * @param action Receives each entry.
+     * @throws IOException Might throw an exception if unable to read the file.
+     */
+    public void forEach(Consumer<? super T> action) throws IOException {
+        // No lock is held while the consumer runs, so it may read or change the catalog itself
+        boolean resident;
+        lock.readLock().lock();
+        try {
+            // A journal has to be replayed over the whole snapshot, so journaled files are always loaded
+            resident = !needsLoad() || journal != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (resident) {
+            get().forEach(action);
+            return;
+        }
+        // Files are replaced by an atomic rename, so the stream always sees a complete file
+        try (CatalogReader<T> reader = openReader()) {
+            while (reader.hasNext()) {
+                action.accept(reader.next());
+            }
+        }
+    }
+
+    /**
+     * Returns the entry with a given key.
+     * @param key The key of the entry.
+     * @return The entry, or <i>null</i> if there is none.
+     * @throws IOException Might throw an exception if unable to read the file.
+     */
+    public T find(String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            if (!needsLoad()) return entries.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            load();
+            return entries.get(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the file if it is not loaded yet, or reloads it if it changed on disk, so the listeners
+     * reflect its current content.
+     * @throws IOException Might throw an exception if unable to read the file.
+     */
+    public void refresh() throws IOException {
+        lock.readLock().lock();
+        try {
+            if (!needsLoad()) return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            load();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the entries with the given keys, checking the file only once for all of them.
+     * @param keys The keys of the entries.
+     * @return The entries found, in the order of the keys. Keys without an entry are skipped.
+     * @throws IOException Might throw an exception if unable to read the file.
+     */
+    public List<T> findAll(Collection<String> keys) throws IOException {
+        lock.readLock().lock();
+        try {
+            if (!needsLoad()) return lookup(keys);
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            load();
+            return lookup(keys);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an entry, replacing the entry with the same key if there is one, and writes the change.
+     * @param entry The entry to be written.
+     * @throws IOException Might throw an exception if unable to write the file. The change is kept in
+     *                     memory in that case and written by the next write (see above).
+     */
+    public void put(T entry) throws IOException {
+        long mutation;
+        lock.writeLock().lock();
+        try {
+            load();
+            mutation = apply(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(mutation);
+    }
+
+    /**
+     * Replaces an entry by a changed copy, computed from the current entry while the catalog is locked,
+     * so a mutation made by another thread between reading the entry and writing the copy is never undone.
+     * The function must neither change the entry it receives, which may be in use by readers, nor its key.
+     * @param key The key of the entry.
+     * @param change Returns the changed copy of the entry, or <i>null</i> to leave the entry as it is.
+     * @return The changed entry, or <i>null</i> if there is no such entry or it was left as it is, in which
+     *         case nothing is written.
+     * @throws IOException Might throw an exception if unable to write the file. The change is kept in
+     *                     memory in that case and written by the next write (see above).
+     */
+    public T update(String key, UnaryOperator<T> change) throws IOException {
+        T changed;
+        long mutation;
+        lock.writeLock().lock();
+        try {
+            load();
+            T current = entries.get(key);
+            if (current == null) return null;
+            changed = change.apply(current);
+            if (changed == null) return null;
+            if (!key.equals(keyOf.apply(changed))) {
+                throw new IllegalArgumentException("An update cannot change the key of '" + key + "'.");
+            }
+            mutation = apply(changed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(mutation);
+        return changed;
+    }
+
+    /**
+     * Adds many entries at once, replacing the entries with the same keys, with a single write
+     * to the file (or a single append to the journal).
+     * @param newEntries The entries to be written.
+     * @throws IOException Might throw an exception if unable to write the file. The change is kept in
+     *                     memory in that case and written by the next write (see above).
+     */
+    public void putAll(List<T> newEntries) throws IOException {
+        if (newEntries.isEmpty()) return;
+        long mutation = 0;
+        lock.writeLock().lock();
+        try {
+            load();
+            for (T entry : newEntries) {
+                mutation = apply(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(mutation);
+    }
+
+    /**
+     * Removes the entry with a given key. Nothing is written if there is no such entry.
+     * @param key The key of the entry.
+     * @return The removed entry, or <i>null</i> if there was none.
+     * @throws IOException Might throw an exception if unable to write the file. The change is kept in
+     *                     memory in that case and written by the next write (see above).
+     */
+    public T remove(String key) throws IOException {
+        T removed;
+        long mutation;
+        lock.writeLock().lock();
+        try {
+            load();
+            removed = entries.remove(key);
+            if (removed == null) return null;
+            view = null;
+            for (CatalogListener<? super T> listener : listeners) {
+                listener.entryRemoved(removed);
+            }
+            mutation = record(new CatalogJournal.Record<>(CatalogJournal.REMOVE, key, null));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(mutation);
+        return removed;
+    }
+
+    /**
+     * Removes many entries at once, with a single write to the file (or a single append to the journal).
+     * Keys without an entry are ignored.
+     * @param keys The keys of the entries.
+     * @return The removed entries.
+     * @throws IOException Might throw an exception if unable to write the file. The change is kept in
+     *                     memory in that case and written by the next write (see above).
+     */
+    public List<T> removeAll(Collection<String> keys) throws IOException {
+        List<T> removed = new ArrayList<>();
+        long mutation = 0;
+        lock.writeLock().lock();
+        try {
+            load();
+            for (String key : keys) {
+                T entry = entries.remove(key);
+                if (entry == null) continue;
+                view = null;
+                for (CatalogListener<? super T> listener : listeners) {
+                    listener.entryRemoved(entry);
+                }
+                mutation = record(new CatalogJournal.Record<>(CatalogJournal.REMOVE, key, null));
+                removed.add(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!removed.isEmpty()) {
+            commit(mutation);
+        }
+        return removed;
+    }
+
+    /**
+     * Replaces the whole content of the file.
+     * @param newEntries The entries to be written.
+     * @throws IOException Might throw an exception if unable to write the file.
+     */
+    public void write(List<T> newEntries) throws IOException {
+        long mutation;
+        lock.writeLock().lock();
+        try {
+            entries = toMap(newEntries);
+            view = null;
+            pending.clear();
+            notifyReloaded();
+            snapshotRequested = true;
+            overwriteRequested = true;
+            mutation = ++mutations;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(mutation);
+    }
+
+    /**
+     * Writes the current entries to the file and empties the journal.
+     * Does nothing if there is no journal or if it is already empty.
+     * @throws IOException Might throw an exception if unable to write the file.
+     */
+    public void compact() throws IOException {
+        if (journal == null) return;
+        long mutation;
+        lock.writeLock().lock();
+        try {
+            load();
+            if (journal.size() == 0 && pending.isEmpty()) return;
+            snapshotRequested = true;
+            mutation = ++mutations;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit(mutation);
+    }
+
+    /**
+     * Registers a listener that is notified of every change to the entries. The listener is
+     * immediately notified of the current content, if it is already loaded.
+     * @param listener The listener to be registered.
+     */
+    public void addListener(CatalogListener<? super T> listener) {
+        lock.writeLock().lock();
+        try {
+            listeners.add(listener);
+            if (entries != null) {
+                listener.reloaded(entries.values());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forgets the in-memory content, so the next read goes to the disk.
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            entries = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public String keyOf(T entry) {
+        return keyOf.apply(entry);
+    }
+
+    /**
+     * Puts an entry in memory and notifies the listeners. Must be called while holding the lock.
+     * @return The number of the mutation.
+     */
+    private long apply(T entry) {
+        String key = keyOf.apply(entry);
+        T previous = entries.put(key, entry);
+        view = null;
+        for (CatalogListener<? super T> listener : listeners) {
+            listener.entryPut(previous, entry);
+        }
+        return record(new CatalogJournal.Record<>(CatalogJournal.PUT, key, entry));
+    }
+
+    private long record(CatalogJournal.Record<T> record) {
+        pending.add(record);
+        return ++mutations;
+    }
+
+    /**
+     * Waits until a mutation is written to the disk. If no other thread is writing, this thread
+     * writes every mutation made so far; otherwise it waits for that write to end and, if its mutation
+     * was not part of it, takes the next turn.
+     * @param mutation The number of the mutation.
+     * @throws IOException Might throw an exception if unable to write the file.
+     */
+    private void commit(long mutation) throws IOException {
+        synchronized (commitLock) {
+            while (durable < mutation && committing) {
+                try {
+                    commitLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while writing '" + file.getName() + "'.");
+                }
+            }
+            if (durable >= mutation) return;
+            committing = true;
+        }
+
+        long written = -1;
+        try {
+            written = writePending();
+        } finally {
+            synchronized (commitLock) {
+                if (written > durable) {
+                    durable = written;
+                }
+                committing = false;
+                commitLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes every mutation applied in memory so far. Only one thread of this process runs this at
+     * a time, and the advisory file lock keeps other processes from writing the same file meanwhile.
+     * @return The number of the last mutation written.
+     */
+    private long writePending() throws IOException {
+        ReentrantLock processLock = PROCESS_LOCKS.computeIfAbsent(lockFile.getAbsolutePath(), path -> new ReentrantLock());
+        processLock.lock();
+        try {
+            return writeLocked();
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    private long writeLocked() throws IOException {
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            long target;
+            boolean overwrite;
+            List<T> snapshot = null;
+            List<CatalogJournal.Record<T>> records;
+            lock.writeLock().lock();
+            try {
+                // Picks up what other processes wrote before the lock was acquired
+                overwrite = overwriteRequested;
+                if (overwrite) {
+                    overwriteRequested = false;
+                } else {
+                    load();
+                }
+                target = mutations;
+                if (journal == null || snapshotRequested
+                        || journal.size() + pending.size() >= Math.max(COMPACTION_THRESHOLD, entries.size() / 2)) {
+                    snapshot = new ArrayList<>(entries.values());
+                    snapshotRequested = false;
+                }
+                records = pending;
+                pending = new ArrayList<>();
+                writing = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            try {
+                if (snapshot != null) {
+                    List<T> content = snapshot;
+                    AtomicFileWriter.write(file, out -> mapper.writerWithDefaultPrettyPrinter().writeValue(out, content));
+                    if (binaryMapper != null) {
+                        // Written after the JSON file, so it can record the version of the JSON file it matches
+                        writeBinary(content, file.length(), file.lastModified());
+                    }
+                    if (journal != null) {
+                        journal.clear();
+                    }
+                } else if (!records.isEmpty()) {
+                    journal.append(records);
+                }
+            } catch (IOException e) {
+                lock.writeLock().lock();
+                try {
+                    // The mutations stay in memory and are applied again if the file is reloaded. A failed
+                    // append may have left a partial record, so the next write rewrites the whole file
+                    records.addAll(pending);
+                    pending = records;
+                    snapshotRequested = true;
+                    overwriteRequested |= overwrite;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    stamp();
+                    if (journal != null) {
+                        stampJournal();
+                    }
+                    writing = false;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            return target;
+        }
+    }
+
+    /**
+     * Returns the read-only list of entries, building it if needed. Must be called while holding the lock.
+     */
+    private List<T> view() {
+        List<T> current = view;
+        if (current == null) {
+            current = Collections.unmodifiableList(new ArrayList<>(entries.values()));
+            view = current;
+        }
+        return current;
+    }
+
+    private List<T> lookup(Collection<String> keys) {
+        List<T> found = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            T entry = entries.get(key);
+            if (entry != null) {
+                found.add(entry);
+            }
+        }
+        return found;
+    }
+
+    private boolean needsLoad() {
+        return entries == null || isStale();
+    }
+
+    /**
+     * Reloads the file if needed. Must be called while holding the write lock.
+     */
+    private void load() throws IOException {
+        if (needsLoad()) {
+            reload();
+        }
+    }
+
+    private boolean isStale() {
+        if (writing) return false;
+        if (file.lastModified() != lastModified || file.length() != size) return true;
+        return journal != null
+                && (journal.getFile().lastModified() != journalLastModified || journal.getFile().length() != journalSize);
+    }
+
+    private void reload() throws IOException {
+        long sourceSize = file.length();
+        long sourceModified = file.lastModified();
+        // Entries are streamed straight into the map, without an intermediate list
+        entries = new LinkedHashMap<>();
+        CatalogReader<T> binaryReader = openBinary(sourceSize, sourceModified);
+        try (CatalogReader<T> reader = binaryReader != null ? binaryReader : CatalogReader.open(file, type, mapper)) {
+            while (reader.hasNext()) {
+                T entry = reader.next();
+                entries.put(keyOf.apply(entry), entry);
+            }
+        }
+        if (binaryMapper != null && binaryReader == null && file.exists()) {
+            // Saves the binary snapshot right away, so the next start does not parse the JSON file
+            try {
+                writeBinary(new ArrayList<>(entries.values()), sourceSize, sourceModified);
+            } catch (IOException e) {
+                System.err.println("WARNING: Unable to write '" + binaryFile.getName() + "'.");
+            }
+        }
+        view = null;
+        // Stamped with the version that was read, not the current one: reads do not hold the file lock, and a
+        // file replaced while it was parsed must still be found stale, or the next write would drop its content
+        stamp(sourceSize, sourceModified);
+        if (journal != null) {
+            long journalSourceSize = journal.getFile().length();
+            long journalSourceModified = journal.getFile().lastModified();
+            journal.replay(this::replay);
+            stampJournal(journalSourceSize, journalSourceModified);
+        }
+        // Mutations of this process that were not written yet are applied again on top of the file
+        for (CatalogJournal.Record<T> record : pending) {
+            replay(record.getOp(), record.getKey(), record.getEntry());
+        }
+        notifyReloaded();
+    }
+
+    private void replay(String op, String key, T entry) {
+        if (op.equals(CatalogJournal.PUT)) {
+            entries.put(key, entry);
+        } else {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Opens the binary snapshot if it is up to date, or the JSON file otherwise.
+     */
+    private CatalogReader<T> openReader() throws IOException {
+        CatalogReader<T> reader = openBinary(file.length(), file.lastModified());
+        return reader != null ? reader : CatalogReader.open(file, type, mapper);
+    }
+
+    /**
+     * Opens the binary snapshot if it was taken from the given version of the JSON file.
+     * @return The reader, or <i>null</i> if there is no such snapshot.
+     */
+    private CatalogReader<T> openBinary(long sourceSize, long sourceModified) {
+        if (binaryMapper == null) return null;
+        return CatalogReader.openSnapshot(binaryFile, type, binaryMapper, sourceSize, sourceModified);
+    }
+
+    private void writeBinary(List<T> content, long sourceSize, long sourceModified) throws IOException {
+        AtomicFileWriter.write(binaryFile, out -> CatalogReader.writeSnapshot(out, content, binaryMapper, sourceSize, sourceModified));
+    }
+
+    private void notifyReloaded() {
+        for (CatalogListener<? super T> listener : listeners) {
+            listener.reloaded(entries.values());
+        }
+    }
+
+    private void stamp() {
+        stamp(file.length(), file.lastModified());
+    }
+
+    private void stamp(long sourceSize, long sourceModified) {
+        lastModified = sourceModified;
+        size = sourceSize;
+    }
+
+    private void stampJournal() {
+        stampJournal(journal.getFile().length(), journal.getFile().lastModified());
+    }
+
+    private void stampJournal(long sourceSize, long sourceModified) {
+        journalLastModified = sourceModified;
+        journalSize = sourceSize;
+    }
+
+    /**
+     * Indexes a list of entries by key. If two entries have the same key, the last one is kept.
+     */
+    private Map<String, T> toMap(List<T> list) {
+        Map<String, T> map = new LinkedHashMap<>(Math.max(16, list.size() * 4 / 3 + 1));
+        for (T entry : list) {
+            map.put(keyOf.apply(entry), entry);
+        }
+        return map;
+    }
+
+    /**
+     * Returns the file next to a database file with the same name and another extension.
+     */
+    private static File siblingOf(File file, String extension) {
+        String name = file.getName();
+        if (name.endsWith(".json")) {
+            name = name.substring(0, name.length() - ".json".length());
+        }
+        return new File(file.getParentFile(), name + extension);
+    }
+}
@@ -0,0 +1,114 @@
+package com.pdfmanager.db;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The secondary indexes declared for a catalog, and a small query planner over them.
+ * <p>
+ * A query is a list of conditions that must all hold. The planner estimates how many entries each
+ * condition matches, reads the keys of the most selective one from its index, and checks the other
+ * conditions on those entries only; a condition that matches nothing ends the query at once.
+ * @param <T> The class stored in the catalog.
+ */
+public class CatalogIndexes<T> {
+    private final CachedCatalog<T> catalog;
+    private final Map<String, SecondaryIndex<T>> indexes = new LinkedHashMap<>();
+
+    public CatalogIndexes(CachedCatalog<T> catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Declares a hash index, for equality conditions on a categorical field.
+     * @param field The name of the field, as used in the conditions.
+     * @param getter Returns the value of the field.
+     * @return This object, so declarations can be chained.
+     */
+    public CatalogIndexes<T> hashIndex(String field, Function<T, ?> getter) {
+        return add(field, new HashIndex<>(catalog::keyOf, getter));
+    }
+
+    /**
+     * Declares a sorted index, for range and equality conditions on a numeric field.
+     * @param field The name of the field, as used in the conditions.
+     * @param getter Returns the value of the field.
+     * @return This object, so declarations can be chained.
+     */
+    public CatalogIndexes<T> rangeIndex(String field, Function<T, Integer> getter) {
+        return add(field, new RangeIndex<>(catalog::keyOf, getter));
+    }
+
+    /**
+     * @return The names of the indexed fields.
+     */
+    public Set<String> fields() {
+        return indexes.keySet();
+    }
+
+    /**
+     * Returns the entries that match every condition.
+     * @param conditions Conditions on indexed fields. With no conditions, every entry matches.
+     * @return The matching entries, in the order of the most selective index.
+     * @throws IOException Might throw an exception if unable to read the catalog.
+     * @throws IllegalArgumentException If a condition is on a field that is not indexed.
+     */
+    public List<T> query(List<Condition> conditions) throws IOException {
+        if (conditions.isEmpty()) return new ArrayList<>(catalog.get());
+        // Loading the catalog (or noticing it changed on disk) brings the indexes up to date
+        catalog.refresh();
+
+        List<Plan<T>> plans = new ArrayList<>();
+        for (Condition condition : conditions) {
+            SecondaryIndex<T> index = indexes.get(condition.getField());
+            if (index == null) {
+                throw new IllegalArgumentException("Field '" + condition.getField() + "' is not indexed.");
+            }
+            int estimate = index.estimate(condition);
+            if (estimate == 0) return new ArrayList<>();
+            plans.add(new Plan<>(condition, index, estimate));
+        }
+        plans.sort(Comparator.comparingInt(plan -> plan.estimate));
+
+        List<T> result = new ArrayList<>();
+        Plan<T> first = plans.get(0);
+        for (T entry : catalog.findAll(first.index.keys(first.condition))) {
+            // Every condition is checked on the entry itself, as it may have changed since the keys were read
+            if (matchesAll(entry, plans)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    private boolean matchesAll(T entry, List<Plan<T>> plans) {
+        for (Plan<T> plan : plans) {
+            if (!plan.index.test(entry, plan.condition)) return false;
+        }
+        return true;
+    }
+
+    private CatalogIndexes<T> add(String field, SecondaryIndex<T> index) {
+        indexes.put(field, index);
+        catalog.addListener(index);
+        return this;
+    }
+
+    private static class Plan<T> {
+        private final Condition condition;
+        private final SecondaryIndex<T> index;
+        private final int estimate;
+
+        private Plan(Condition condition, SecondaryIndex<T> index, int estimate) {
+            this.condition = condition;
+            this.index = index;
+            this.estimate = estimate;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.pdfmanager.db;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Append-only log of the mutations made to a database file.
+ * Each line of the log is a small JSON record (<i>put</i> or <i>remove</i>) that is replayed on top
+ * of the JSON snapshot when the file is loaded. Records are keyed, so replaying a record that is
+ * already part of the snapshot has no effect.
+ * @param <T> The class stored in the database file.
+ */
+public class CatalogJournal<T> {
+    public static final String PUT = "put";
+    public static final String REMOVE = "remove";
+
+    private final File file;
+    private final Class<T> type;
+    private final ObjectMapper mapper;
+    // Only changed by the thread that is writing the log, but read by others
+    private volatile int records;
+
+    public CatalogJournal(File file, Class<T> type, ObjectMapper mapper) {
+        this.file = file;
+        this.type = type;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Appends records to the end of the log, in a single write that is flushed to the disk.
+     * @param newRecords The records to be appended, in order.
+     * @throws IOException Might throw an exception if unable to write the log.
+     */
+    public void append(List<Record<T>> newRecords) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (Record<T> record : newRecords) {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("op", record.op);
+            node.put("key", record.key);
+            if (record.entry != null) {
+                node.set("entry", mapper.valueToTree(record.entry));
+            }
+            lines.append(mapper.writeValueAsString(node)).append(System.lineSeparator());
+        }
+        AtomicFileWriter.append(file, lines.toString().getBytes(StandardCharsets.UTF_8));
+        records += newRecords.size();
+    }
+
+    /**
+     * Reads every record of the log and hands it to a consumer, in the order they were written.
+     * A truncated last line (e.g. left by a crash in the middle of an append) is ignored.
+     * @param consumer Receives the operation, key and entry of each record.
+     * @throws IOException Might throw an exception if unable to read the log.
+     */
+    public void replay(RecordConsumer<T> consumer) throws IOException {
+        records = 0;
+        if (!file.exists()) return;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                JsonNode record;
+                try {
+                    record = mapper.readTree(line);
+                } catch (IOException e) {
+                    System.err.println("WARNING: Ignoring damaged record in '" + file.getName() + "'.");
+                    break;
+                }
+                JsonNode entry = record.get("entry");
+                consumer.accept(record.get("op").asText(), record.get("key").asText(),
+                        entry == null ? null : mapper.treeToValue(entry, type));
+                records++;
+            }
+        }
+    }
+
+    /**
+     * Empties the log, durably. Must only be called after its records were written to the snapshot.
+     * @throws IOException Might throw an exception if unable to write the log.
+     */
+    public void clear() throws IOException {
+        AtomicFileWriter.truncate(file);
+        records = 0;
+    }
+
+    /**
+     * @return The number of records in the log since it was last replayed or cleared.
+     */
+    public int size() {
+        return records;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * A single mutation: a <i>put</i> carries the new entry, a <i>remove</i> only the key.
+     */
+    public static class Record<T> {
+        private final String op;
+        private final String key;
+        private final T entry;
+
+        public Record(String op, String key, T entry) {
+            this.op = op;
+            this.key = key;
+            this.entry = entry;
+        }
+
+        public String getOp() {
+            return op;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public T getEntry() {
+            return entry;
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordConsumer<T> {
+        void accept(String op, String key, T entry) throws IOException;
+    }
+}
@@ -0,0 +1,30 @@
+package com.pdfmanager.db;
+
+import java.util.Collection;
+
+/**
+ * Receives the changes made to a {@link CachedCatalog}, so that indexes over its entries can be
+ * kept up to date without reading the whole file again.
+ * @param <T> The class stored in the catalog.
+ */
+public interface CatalogListener<T> {
+
+    /**
+     * Called after an entry is added or replaced.
+     * @param previous The entry that was replaced, or <i>null</i> if the entry is new.
+     * @param entry The new entry.
+     */
+    void entryPut(T previous, T entry);
+
+    /**
+     * Called after an entry is removed.
+     * @param entry The removed entry.
+     */
+    void entryRemoved(T entry);
+
+    /**
+     * Called after the whole content of the catalog is (re)loaded or replaced.
+     * @param entries Every entry of the catalog.
+     */
+    void reloaded(Collection<? extends T> entries);
+}
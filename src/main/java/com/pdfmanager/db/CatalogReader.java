@@ -0,0 +1,157 @@
+package com.pdfmanager.db;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the entries of a database file one at a time, without binding the whole JSON array.
+ * Only the entry being read is kept in memory, so the first entries are available before the
+ * end of the file is parsed.
+ * @param <T> The class stored in the file.
+ */
+public class CatalogReader<T> implements Iterator<T>, Closeable {
+    private static final String SOURCE_SIZE = "sourceSize";
+    private static final String SOURCE_MODIFIED = "sourceModified";
+    private static final String ENTRIES = "entries";
+
+    private final JsonParser parser;
+    private final MappingIterator<T> iterator;
+
+    private CatalogReader(JsonParser parser, MappingIterator<T> iterator) {
+        this.parser = parser;
+        this.iterator = iterator;
+    }
+
+    /**
+     * Opens a database file for reading. An empty or missing file yields no entries.
+     * @param file The database file, containing a JSON array.
+     * @param type The class of the entries.
+     * @param mapper The mapper used to bind each entry.
+     * @return The reader, which must be closed.
+     * @throws IOException Might throw an exception if the file is not a JSON array.
+     */
+    public static <T> CatalogReader<T> open(File file, Class<T> type, ObjectMapper mapper) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return new CatalogReader<>(null, null);
+        }
+        JsonParser parser = mapper.getFactory().createParser(file);
+        JsonToken first = parser.nextToken();
+        if (first == null) {
+            parser.close();
+            return new CatalogReader<>(null, null);
+        }
+        if (first != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IOException("'" + file.getName() + "' does not contain a JSON array.");
+        }
+        return entries(parser, type, mapper);
+    }
+
+    /**
+     * Opens a snapshot written by {@link #writeSnapshot}, but only if it was taken from the given
+     * version of its source file.
+     * @param file The snapshot.
+     * @param type The class of the entries.
+     * @param mapper The mapper of the snapshot.
+     * @param sourceSize The current size of the source file.
+     * @param sourceModified The current modification time of the source file.
+     * @return The reader, which must be closed, or <i>null</i> if the snapshot is missing, damaged or
+     *         was taken from another version of the source file.
+     */
+    public static <T> CatalogReader<T> openSnapshot(File file, Class<T> type, ObjectMapper mapper,
+                                                    long sourceSize, long sourceModified) {
+        if (!file.exists()) return null;
+        JsonParser parser = null;
+        try {
+            parser = mapper.getFactory().createParser(file);
+            // The header holds the size and modification time of the source file, in this order
+            if (parser.nextToken() != JsonToken.START_OBJECT
+                    || !SOURCE_SIZE.equals(parser.nextFieldName()) || parser.nextToken() != JsonToken.VALUE_NUMBER_INT
+                    || parser.getLongValue() != sourceSize
+                    || !SOURCE_MODIFIED.equals(parser.nextFieldName()) || parser.nextToken() != JsonToken.VALUE_NUMBER_INT
+                    || parser.getLongValue() != sourceModified
+                    || !ENTRIES.equals(parser.nextFieldName()) || parser.nextToken() != JsonToken.START_ARRAY) {
+                parser.close();
+                return null;
+            }
+            return entries(parser, type, mapper);
+        } catch (IOException e) {
+            if (parser != null) {
+                try {
+                    parser.close();
+                } catch (IOException ignored) {
+                    // Already failing
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Writes the entries of a source file as a snapshot, with a header identifying the version of
+     * the source file they were read from.
+     * @param out The stream of the snapshot.
+     * @param entries The entries.
+     * @param mapper The mapper of the snapshot.
+     * @param sourceSize The size of the source file.
+     * @param sourceModified The modification time of the source file.
+     * @throws IOException Might throw an exception if unable to write the stream.
+     */
+    public static void writeSnapshot(OutputStream out, List<?> entries, ObjectMapper mapper,
+                                     long sourceSize, long sourceModified) throws IOException {
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeNumberField(SOURCE_SIZE, sourceSize);
+            generator.writeNumberField(SOURCE_MODIFIED, sourceModified);
+            generator.writeFieldName(ENTRIES);
+            mapper.writeValue(generator, entries);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Creates a reader over the elements of the array the parser is at.
+     */
+    private static <T> CatalogReader<T> entries(JsonParser parser, Class<T> type, ObjectMapper mapper) throws IOException {
+        // Moves to the first element, so the iterator binds elements instead of the whole array
+        if (parser.nextToken() == JsonToken.END_ARRAY) {
+            parser.close();
+            return new CatalogReader<>(null, null);
+        }
+        return new CatalogReader<>(parser, mapper.readerFor(type).readValues(parser));
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator != null && iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return iterator.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (iterator != null) {
+            iterator.close();
+        }
+        if (parser != null) {
+            parser.close();
+        }
+    }
+}
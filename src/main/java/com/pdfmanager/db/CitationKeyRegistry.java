@@ -0,0 +1,187 @@
+package com.pdfmanager.db;
+
+import com.pdfmanager.files.Book;
+import com.pdfmanager.files.Document;
+import com.pdfmanager.files.DocumentType;
+
+import java.text.Normalizer;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Registry of the BibTeX citation keys of every document in the library, so no two documents share a key.
+ * <p>
+ * A key is made of the surname of the first author and the publication year (<i>Assis1899</i>), or the
+ * first word of the title when there is no year (<i>AssisCalculo</i>). Keys already taken get a suffix
+ * (<i>Assis1899a</i>, <i>Assis1899b</i>...). The next suffix of each base is remembered, so a collision
+ * is resolved in constant time however many documents share the base. Keys are stored in the documents
+ * themselves, so a document keeps its key across exports.
+ * <p>
+ * Kept up to date, through {@link #documentListener}, as a listener of each document catalog.
+ * Keys are compared ignoring case, as most BibTeX tools do.
+ */
+public class CitationKeyRegistry {
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern NOT_ALPHANUMERIC = Pattern.compile("[^A-Za-z0-9]");
+
+    // Lowercase key -> owner (type and title) of the document that holds it
+    private final Map<String, String> owners = new HashMap<>();
+    // Key of each document, by type and title, to release it when the document changes
+    private final Map<DocumentType, Map<String, String>> keysByTitle = new EnumMap<>(DocumentType.class);
+    // Lowercase base -> index of the next suffix to try
+    private final Map<String, Integer> nextSuffix = new HashMap<>();
+
+    /**
+     * Returns the citation key of a document. A document without a key of its own (or with a key held by
+     * another document) gets a new one, which is reserved until the document is stored with it.
+     * @param type The type of the document.
+     * @param document The document.
+     * @return The key.
+     */
+    public synchronized String keyOf(DocumentType type, Document document) {
+        String owner = ownerOf(type, document.getTitle());
+        String key = document.getCitationKey();
+        if (key != null && !key.isBlank() && owner.equals(owners.get(key.toLowerCase(Locale.ROOT)))) {
+            return key;
+        }
+        String reserved = keysByTitle.computeIfAbsent(type, t -> new HashMap<>()).get(document.getTitle());
+        if (reserved != null) return reserved;
+
+        String base = baseOf(document);
+        String lowerBase = base.toLowerCase(Locale.ROOT);
+        key = base;
+        if (owners.containsKey(lowerBase)) {
+            // Suffixes only move forward, so each one is tried at most once per base
+            int suffix = nextSuffix.getOrDefault(lowerBase, 0);
+            do {
+                key = base + suffix(suffix++);
+            } while (owners.containsKey(key.toLowerCase(Locale.ROOT)));
+            nextSuffix.put(lowerBase, suffix);
+        }
+        register(type, document.getTitle(), key);
+        return key;
+    }
+
+    /**
+     * Creates the listener that keeps the keys of one document catalog.
+     * @param type The type of the documents of the catalog the listener is added to.
+     * @return The listener.
+     */
+    public CatalogListener<Document> documentListener(DocumentType type) {
+        return new CatalogListener<>() {
+            @Override
+            public void entryPut(Document previous, Document entry) {
+                synchronized (CitationKeyRegistry.this) {
+                    if (previous != null) {
+                        release(type, previous.getTitle());
+                    }
+                    index(type, entry);
+                }
+            }
+
+            @Override
+            public void entryRemoved(Document entry) {
+                synchronized (CitationKeyRegistry.this) {
+                    release(type, entry.getTitle());
+                }
+            }
+
+            @Override
+            public void reloaded(java.util.Collection<? extends Document> entries) {
+                synchronized (CitationKeyRegistry.this) {
+                    Map<String, String> keys = keysByTitle.remove(type);
+                    if (keys != null) {
+                        for (String key : keys.values()) {
+                            owners.remove(key.toLowerCase(Locale.ROOT));
+                        }
+                    }
+                    for (Document entry : entries) {
+                        index(type, entry);
+                    }
+                }
+            }
+        };
+    }
+
+    private void index(DocumentType type, Document document) {
+        String key = document.getCitationKey();
+        if (key == null || key.isBlank()) return;
+        // A key already held by another document (e.g. from imported data) stays with the first one;
+        // the other document gets a new key on its next export
+        String owner = owners.get(key.toLowerCase(Locale.ROOT));
+        if (owner != null && !owner.equals(ownerOf(type, document.getTitle()))) return;
+        register(type, document.getTitle(), key);
+    }
+
+    private void register(DocumentType type, String title, String key) {
+        release(type, title);
+        owners.put(key.toLowerCase(Locale.ROOT), ownerOf(type, title));
+        keysByTitle.computeIfAbsent(type, t -> new HashMap<>()).put(title, key);
+    }
+
+    private void release(DocumentType type, String title) {
+        Map<String, String> keys = keysByTitle.get(type);
+        String key = keys == null ? null : keys.remove(title);
+        if (key != null) {
+            owners.remove(key.toLowerCase(Locale.ROOT), ownerOf(type, title));
+        }
+    }
+
+    private static String ownerOf(DocumentType type, String title) {
+        return type.name() + ':' + title;
+    }
+
+    /**
+     * The key of a document before collisions: surname of the first author, then year or first word of the title.
+     */
+    static String baseOf(Document document) {
+        String surname = "Anon";
+        List<String> authors = document.getAuthors();
+        if (authors != null && !authors.isEmpty() && authors.get(0) != null) {
+            String author = authors.get(0).trim();
+            int comma = author.indexOf(',');
+            // "Assis, Machado de" or "Machado de Assis"
+            String name = comma > 0 ? author.substring(0, comma) : author.substring(author.lastIndexOf(' ') + 1);
+            String clean = ascii(name);
+            if (!clean.isEmpty()) surname = capitalize(clean);
+        }
+        if (document instanceof Book && ((Book) document).getPublishYear() > 0) {
+            return surname + ((Book) document).getPublishYear();
+        }
+        if (document.getTitle() != null) {
+            for (String word : document.getTitle().split("\\s+")) {
+                String clean = ascii(word);
+                // Skips short words such as articles
+                if (clean.length() >= 3) return surname + capitalize(clean);
+            }
+        }
+        return surname;
+    }
+
+    private static String ascii(String text) {
+        String stripped = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return NOT_ALPHANUMERIC.matcher(stripped).replaceAll("");
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /**
+     * Suffixes in the order BibTeX users expect: a, b, ..., z, aa, ab, ...
+     */
+    private static String suffix(int index) {
+        StringBuilder suffix = new StringBuilder();
+        index++;
+        while (index > 0) {
+            index--;
+            suffix.append((char) ('a' + index % 26));
+            index /= 26;
+        }
+        return suffix.reverse().toString();
+    }
+}
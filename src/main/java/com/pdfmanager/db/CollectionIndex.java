@@ -0,0 +1,173 @@
+package com.pdfmanager.db;
+
+import com.pdfmanager.files.Collection;
+import com.pdfmanager.files.Document;
+import com.pdfmanager.files.DocumentType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Membership index of the collections: for each document type, maps a document title to the keys of
+ * the collections that list it. It also caches the resolved documents of each collection
+ * (a materialized view), which is dropped only when the collection or one of its members changes.
+ * <p>
+ * Kept up to date as a listener of the collection catalog and, through {@link #documentListener},
+ * of each document catalog.
+ */
+public class CollectionIndex implements CatalogListener<Collection> {
+    private final Function<String, String> keyOf;
+    private final Map<DocumentType, Map<String, Set<String>>> members = new EnumMap<>(DocumentType.class);
+    // What was indexed for each collection key. Callers may edit a stored collection in place before
+    // saving it, so the previous entry of a put cannot be trusted to tell which titles to unindex
+    private final Map<String, Collection> indexed = new HashMap<>();
+    private final Map<String, List<Document>> views = new HashMap<>();
+    // Incremented whenever a view is dropped, so a view resolved meanwhile is not cached
+    private long version;
+
+    /**
+     * @param keyOf Returns the key under which a collection name is stored.
+     */
+    public CollectionIndex(Function<String, String> keyOf) {
+        this.keyOf = keyOf;
+    }
+
+    /**
+     * Returns the keys of the collections that list a document.
+     * @param type The type of the document.
+     * @param title The title of the document.
+     * @return A read-only set of collection keys. Empty if the document is in no collection.
+     */
+    public synchronized Set<String> collectionsOf(DocumentType type, String title) {
+        Map<String, Set<String>> byTitle = members.get(type);
+        Set<String> keys = byTitle == null ? null : byTitle.get(title);
+        return keys == null ? Collections.emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(keys));
+    }
+
+    /**
+     * @param key The key of a collection.
+     * @return The cached documents of the collection, or <i>null</i> if they are not cached.
+     */
+    public synchronized List<Document> cachedView(String key) {
+        return views.get(key);
+    }
+
+    /**
+     * @return The current version, to be passed back to {@link #cacheView} after resolving a view.
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Caches the documents of a collection, unless something changed since they were resolved.
+     * @param key The key of the collection.
+     * @param resolvedAt The {@link #version()} read before resolving the documents.
+     * @param documents The documents of the collection.
+     */
+    public synchronized void cacheView(String key, long resolvedAt, List<Document> documents) {
+        if (resolvedAt == version) {
+            views.put(key, Collections.unmodifiableList(documents));
+        }
+    }
+
+    /**
+     * Creates the listener that drops the views of the collections listing a changed document.
+     * @param type The type of the documents of the catalog the listener is added to.
+     * @return The listener.
+     */
+    public CatalogListener<Document> documentListener(DocumentType type) {
+        return new CatalogListener<>() {
+            @Override
+            public void entryPut(Document previous, Document entry) {
+                documentChanged(type, entry.getTitle());
+            }
+
+            @Override
+            public void entryRemoved(Document entry) {
+                documentChanged(type, entry.getTitle());
+            }
+
+            @Override
+            public void reloaded(java.util.Collection<? extends Document> entries) {
+                synchronized (CollectionIndex.this) {
+                    // Only the views of this type depend on the reloaded catalog
+                    Map<String, Set<String>> byTitle = members.get(type);
+                    if (byTitle == null) return;
+                    for (Set<String> keys : byTitle.values()) {
+                        keys.forEach(views::remove);
+                    }
+                    version++;
+                }
+            }
+        };
+    }
+
+    @Override
+    public synchronized void entryPut(Collection previous, Collection entry) {
+        String key = keyOf.apply(entry.getName());
+        unindex(key);
+        index(key, entry);
+        views.remove(key);
+        version++;
+    }
+
+    @Override
+    public synchronized void entryRemoved(Collection entry) {
+        String key = keyOf.apply(entry.getName());
+        unindex(key);
+        views.remove(key);
+        version++;
+    }
+
+    @Override
+    public synchronized void reloaded(java.util.Collection<? extends Collection> entries) {
+        members.clear();
+        indexed.clear();
+        views.clear();
+        version++;
+        for (Collection entry : entries) {
+            index(keyOf.apply(entry.getName()), entry);
+        }
+    }
+
+    private synchronized void documentChanged(DocumentType type, String title) {
+        Map<String, Set<String>> byTitle = members.get(type);
+        Set<String> keys = byTitle == null ? null : byTitle.get(title);
+        if (keys == null) return;
+        keys.forEach(views::remove);
+        version++;
+    }
+
+    private void index(String key, Collection collection) {
+        if (collection.getType() == null || collection.getEntryTitles() == null) return;
+        Collection copy = new Collection(collection.getName(), collection.getAuthor(), collection.getType(),
+                collection.getMaxSize(), List.copyOf(collection.getEntryTitles()));
+        indexed.put(key, copy);
+        Map<String, Set<String>> byTitle = members.computeIfAbsent(copy.getType(), t -> new HashMap<>());
+        for (String title : copy.getEntryTitles()) {
+            byTitle.computeIfAbsent(title, t -> new LinkedHashSet<>()).add(key);
+        }
+    }
+
+    private void unindex(String key) {
+        Collection collection = indexed.remove(key);
+        if (collection == null) return;
+        Map<String, Set<String>> byTitle = members.get(collection.getType());
+        if (byTitle == null) return;
+        for (String title : collection.getEntryTitles()) {
+            Set<String> keys = byTitle.get(title);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                byTitle.remove(title);
+            }
+        }
+    }
+}
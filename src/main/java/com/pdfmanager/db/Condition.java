@@ -0,0 +1,67 @@
+package com.pdfmanager.db;
+
+/**
+ * A filter on one indexed field of a document, used by {@link CatalogIndexes#query}.
+ * Text values are compared ignoring case; ranges include both ends.
+ */
+public class Condition {
+    public enum Operator { EQUAL, RANGE }
+
+    private final String field;
+    private final Operator operator;
+    private final Object value;
+    private final Integer from;
+    private final Integer to;
+
+    private Condition(String field, Operator operator, Object value, Integer from, Integer to) {
+        this.field = field;
+        this.operator = operator;
+        this.value = value;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @param field The name of the field (e.g. <i>publisher</i>).
+     * @param value The value the field must have.
+     */
+    public static Condition equalTo(String field, Object value) {
+        return new Condition(field, Operator.EQUAL, value, null, null);
+    }
+
+    /**
+     * @param field The name of a numeric field (e.g. <i>publishYear</i>).
+     * @param from The lowest accepted value, or <i>null</i> for no lower bound.
+     * @param to The highest accepted value, or <i>null</i> for no upper bound.
+     */
+    public static Condition between(String field, Integer from, Integer to) {
+        return new Condition(field, Operator.RANGE, null, from, to);
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public Integer getFrom() {
+        return from;
+    }
+
+    public Integer getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        return operator == Operator.EQUAL
+                ? field + " = " + value
+                : field + " in [" + (from == null ? "" : from) + ".." + (to == null ? "" : to) + "]";
+    }
+}
@@ -1,23 +1,40 @@
 package com.pdfmanager.db;
 
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
 import com.pdfmanager.files.Book;
 import com.pdfmanager.files.ClassNote;
 import com.pdfmanager.files.Collection; // Importação adicionada
+import com.pdfmanager.files.Document;
+import com.pdfmanager.files.DocumentType;
 import com.pdfmanager.files.Slide;
-import io.restassured.path.json.JsonPath;
+import com.pdfmanager.search.FullTextSearch;
+import com.pdfmanager.search.SearchHit;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import static com.pdfmanager.cli.UserInterface.*;
 
+/**
+ * Entry point for every read and write of the library database.
+ * <p>
+ * Safe to share between threads: each database file is guarded by its own read/write lock inside
+ * its {@link CachedCatalog}, so reads run in parallel and a write only blocks access to the file it
+ * changes. Writes are also serialized with other processes through an advisory lock file.
+ */
 public class DatabaseManager {
+    // Number of entries read from an import file before they are written to the database
+    private static final int IMPORT_BATCH_SIZE = 10000;
 
     private final File configPath;
     private final File booksPath;
@@ -25,6 +42,32 @@ public class DatabaseManager {
     private final File classNotesPath;
     private final File collectionsPath; // Campo adicionado
 
+    // Resident copies of the database files, shared by every read and write below
+    private final ObjectMapper mapper;
+    private final CachedCatalog<Book> books;
+    private final CachedCatalog<Slide> slides;
+    private final CachedCatalog<ClassNote> classNotes;
+    private final CachedCatalog<Collection> collections;
+    private final Map<DocumentType, AuthorIndex> authorIndexes = new EnumMap<>(DocumentType.class);
+    private final Map<DocumentType, FuzzyIndex> fuzzyIndexes = new EnumMap<>(DocumentType.class);
+    // Titles of the documents by the SHA-256 of their content
+    private final Map<DocumentType, HashIndex<Document>> contentIndexes = new EnumMap<>(DocumentType.class);
+    private final CollectionIndex collectionIndex = new CollectionIndex(DatabaseManager::collectionKey);
+    // Completion of what the user started typing
+    private final Map<DocumentType, PrefixIndex<Document>> titleCompletions = new EnumMap<>(DocumentType.class);
+    private final Map<DocumentType, PrefixIndex<Document>> authorCompletions = new EnumMap<>(DocumentType.class);
+    private final CitationKeyRegistry citationKeys = new CitationKeyRegistry();
+    private final PrefixIndex<Collection> collectionCompletions =
+            new PrefixIndex<>(collection -> Collections.singletonList(collection.getName()));
+    // Secondary indexes of the fields used to filter each type of document
+    private final Map<DocumentType, CatalogIndexes<? extends Document>> fieldIndexes = new EnumMap<>(DocumentType.class);
+    // Index of the text of the PDFs, or null if full-text search is disabled
+    private final FullTextSearch fullText;
+    // Cached value of 'libraryPath' in config.json, read again after it is written
+    private volatile String libraryPath;
+    // Guards the read-modify-write of single fields (e.g. config.json)
+    private final Object fieldLock = new Object();
+
     public DatabaseManager() {
         this.configPath = new File(Objects.requireNonNull(getClass().getResource("/config.json")).getPath());
         this.booksPath = new File(Objects.requireNonNull(getClass().getResource("/books.json")).getPath());
@@ -32,6 +75,67 @@ public class DatabaseManager {
         this.classNotesPath = new File(Objects.requireNonNull(getClass().getResource("/classnotes.json")).getPath());
         // Ação necessária: Crie um arquivo 'collections.json' vazio em sua pasta 'resources'
         this.collectionsPath = new File(Objects.requireNonNull(getClass().getResource("/collections.json")).getPath()); // Campo adicionado
+
+        this.mapper = new ObjectMapper()
+                .configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
+
+        // When 'journalMode' is enabled in config.json, mutations are appended to a '.journal' file
+        // next to each database file instead of rewriting the whole file on every change.
+        boolean journaled = readFlag("journalMode");
+        // When 'binarySnapshot' is enabled, a '.smile' file is kept next to each database file and
+        // loaded instead of the JSON file while it matches the size and modification time of that file.
+        ObjectMapper binaryMapper = null;
+        if (readFlag("binarySnapshot")) {
+            SmileFactory smile = SmileFactory.builder()
+                    .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                    .build();
+            binaryMapper = new ObjectMapper(smile)
+                    .configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
+        }
+        this.books = new CachedCatalog<>(booksPath, Book.class, Document::getTitle, mapper, journaled, binaryMapper);
+        this.slides = new CachedCatalog<>(slidesPath, Slide.class, Document::getTitle, mapper, journaled, binaryMapper);
+        this.classNotes = new CachedCatalog<>(classNotesPath, ClassNote.class, Document::getTitle, mapper, journaled,
+                binaryMapper);
+        this.collections = new CachedCatalog<>(collectionsPath, Collection.class,
+                c -> collectionKey(c.getName()), mapper, journaled, binaryMapper);
+
+        for (DocumentType type : DocumentType.values()) {
+            AuthorIndex index = new AuthorIndex();
+            documentCatalogOf(type).addListener(index);
+            documentCatalogOf(type).addListener(collectionIndex.documentListener(type));
+            authorIndexes.put(type, index);
+            FuzzyIndex fuzzy = new FuzzyIndex();
+            documentCatalogOf(type).addListener(fuzzy);
+            fuzzyIndexes.put(type, fuzzy);
+            HashIndex<Document> content = new HashIndex<>(Document::getTitle, Document::getContentHash);
+            documentCatalogOf(type).addListener(content);
+            contentIndexes.put(type, content);
+            PrefixIndex<Document> titles = new PrefixIndex<>(document -> Collections.singletonList(document.getTitle()));
+            PrefixIndex<Document> authors = new PrefixIndex<>(Document::getAuthors);
+            documentCatalogOf(type).addListener(titles);
+            documentCatalogOf(type).addListener(authors);
+            titleCompletions.put(type, titles);
+            authorCompletions.put(type, authors);
+            documentCatalogOf(type).addListener(citationKeys.documentListener(type));
+        }
+        collections.addListener(collectionIndex);
+        collections.addListener(collectionCompletions);
+
+        fieldIndexes.put(DocumentType.BOOK, new CatalogIndexes<>(books)
+                .rangeIndex("publishYear", Book::getPublishYear)
+                .hashIndex("fieldOfKnowledge", Book::getFieldOfKnowledge)
+                .hashIndex("publisher", Book::getPublisher));
+        fieldIndexes.put(DocumentType.SLIDE, new CatalogIndexes<>(slides)
+                .hashIndex("institutionName", Slide::getInstitutionName)
+                .hashIndex("lectureName", Slide::getLectureName));
+        fieldIndexes.put(DocumentType.CLASS_NOTE, new CatalogIndexes<>(classNotes)
+                .hashIndex("institutionName", ClassNote::getInstitutionName)
+                .hashIndex("lectureName", ClassNote::getLectureName));
+
+        // When 'fullTextSearch' is enabled, the text of each PDF is indexed in the background once it is added to the database
+        this.fullText = readFlag("fullTextSearch")
+                ? new FullTextSearch(new File(booksPath.getParentFile(), "fulltext.index"), this::pdfOf)
+                : null;
     }
 
     /**
@@ -42,7 +146,7 @@ public class DatabaseManager {
      * @throws IOException Might result in a IOException. Treatment required.
      */
     public String readField(File dbPath, String field) throws IOException {
-        ObjectNode object = new ObjectMapper().readValue(dbPath, ObjectNode.class);
+        ObjectNode object = mapper.readValue(dbPath, ObjectNode.class);
         JsonNode node = object.get(field);
         return (node == null ? null : node.textValue());
     }
@@ -54,8 +158,331 @@ public class DatabaseManager {
      * @throws IOException Throws an exception if file does not exist
      */
     public List<Object> readFileAsList(File dbPath) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        return new ArrayList<>(Arrays.asList(mapper.readValue(dbPath, Object[].class)));
+        return new ArrayList<>(catalogOf(dbPath).get());
+    }
+
+    /**
+     * Returns the documents stored in a database file.
+     * @param dbPath The path to the file (books, slides or class notes).
+     * @return A read-only list with the documents of the file.
+     * @throws IOException Might throw an exception if unable to read the file.
+     */
+    public List<? extends Document> getDocuments(File dbPath) throws IOException {
+        return documentCatalogOf(dbPath).get();
+    }
+
+    /**
+     * Finds a document by its title.
+     * @param dbPath The path to the file (books, slides or class notes).
+     * @param title The title of the document.
+     * @return The document, or <i>null</i> if there is no document with that title.
+     * @throws IOException Might throw an exception if unable to read the file.
+     */
+    public Document getDocument(File dbPath, String title) throws IOException {
+        return documentCatalogOf(dbPath).find(title);
+    }
+
+    /**
+     * Finds the document whose copy in the library is a given file: the document titled after the file
+     * whose first author is the directory of the file.
+     * @param file A file in the library, as <i>libraryPath/author/title</i>.
+     * @return The document, or <i>null</i> if the file is not the copy of any document.
+     * @throws IOException Might throw an exception if unable to read the database.
+     */
+    public Document findByLibraryFile(File file) throws IOException {
+        String author = file.getParentFile().getName();
+        for (DocumentType type : DocumentType.values()) {
+            Document document = documentCatalogOf(type).find(file.getName());
+            if (document != null && document.getAuthors() != null && !document.getAuthors().isEmpty()
+                    && author.equals(document.getAuthors().get(0))) {
+                return document;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a document of any type has a given title.
+     * @param title The title.
+     * @return <i>true</i> if a book, slide or class note has that title.
+     * @throws IOException Might throw an exception if unable to read the database.
+     */
+    public boolean containsTitle(String title) throws IOException {
+        for (DocumentType type : DocumentType.values()) {
+            if (documentCatalogOf(type).find(title) != null) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the copy in the library of a document with a given content.
+     * @param hash The SHA-256 of the content, in hexadecimal.
+     * @return The library file, or <i>null</i> if no document in the library has that content.
+     * @throws IOException Might throw an exception if unable to read the database.
+     */
+    public Path findLibraryCopy(String hash) throws IOException {
+        Condition sameContent = Condition.equalTo("contentHash", hash);
+        for (DocumentType type : DocumentType.values()) {
+            CachedCatalog<? extends Document> catalog = documentCatalogOf(type);
+            catalog.refresh();
+            for (Document document : catalog.findAll(contentIndexes.get(type).keys(sameContent))) {
+                File copy = hash.equalsIgnoreCase(document.getContentHash()) ? libraryCopyOf(document) : null;
+                if (copy != null) return copy.toPath();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records that the file of a document landed in the library: stores the SHA-256 and the size of its
+     * content, as computed when it was copied, and clears the <i>pending</i> flag set while the copy was queued.
+     * @param dbPath The path to the file (books, slides or class notes).
+     * @param title The title of the document.
+     * @param hash The SHA-256 of the content, in hexadecimal.
+     * @param size The size of the content in bytes.
+     * @throws IOException Might throw an exception if unable to write the database.
+     */
+    public void recordPlacement(File dbPath, String title, String hash, long size) throws IOException {
+        recordPlacement(documentCatalogOf(dbPath), title, hash, size);
+    }
+
+    private <T extends Document> void recordPlacement(CachedCatalog<T> catalog, String title, String hash, long size) throws IOException {
+        // Changed under the lock of the catalog, so an edit made at the same time is not undone
+        catalog.update(title, document -> {
+            if (!document.isPending() && hash.equals(document.getContentHash()) && size == document.getContentSize()) {
+                return null;
+            }
+            // The stored entry may be in use by other threads, so a copy is changed
+            T copy = mapper.convertValue(document, catalog.getType());
+            copy.setContentHash(hash);
+            copy.setContentSize(size);
+            copy.setPending(false);
+            return copy;
+        });
+    }
+
+    /**
+     * Hands every document of a type to a consumer together with its BibTeX citation key, unique in
+     * the whole library. Documents without a key get a new one, saved once they have all been handed over.
+     * @param type The type of the documents.
+     * @param action Receives each document and its key, in order.
+     * @throws IOException Might throw an exception if unable to read or write the database.
+     */
+    public void forEachCitation(DocumentType type, BiConsumer<? super Document, String> action) throws IOException {
+        refreshCitationKeys();
+        Map<String, String> assigned = new HashMap<>();
+        documentCatalogOf(type).forEach(document -> {
+            String key = citationKeys.keyOf(type, document);
+            if (!key.equals(document.getCitationKey())) {
+                assigned.put(document.getTitle(), key);
+            }
+            action.accept(document, key);
+        });
+        recordCitationKeys(documentCatalogOf(type), assigned);
+    }
+
+    /**
+     * Returns the BibTeX citation keys of some documents, unique in the whole library. Documents without
+     * a key get a new one, which is saved.
+     * @param type The type of the documents.
+     * @param documents The documents.
+     * @return The keys, in the order of the documents.
+     * @throws IOException Might throw an exception if unable to read or write the database.
+     */
+    public List<String> citationKeysOf(DocumentType type, List<? extends Document> documents) throws IOException {
+        refreshCitationKeys();
+        List<String> keys = new ArrayList<>(documents.size());
+        Map<String, String> assigned = new HashMap<>();
+        for (Document document : documents) {
+            String key = citationKeys.keyOf(type, document);
+            if (!key.equals(document.getCitationKey())) {
+                assigned.put(document.getTitle(), key);
+            }
+            keys.add(key);
+        }
+        recordCitationKeys(documentCatalogOf(type), assigned);
+        return keys;
+    }
+
+    /**
+     * Loads every document catalog, so the keys of all of them are registered before a new one is chosen.
+     */
+    private void refreshCitationKeys() throws IOException {
+        for (DocumentType type : DocumentType.values()) {
+            documentCatalogOf(type).refresh();
+        }
+    }
+
+    private <T extends Document> void recordCitationKeys(CachedCatalog<T> catalog, Map<String, String> keys) throws IOException {
+        List<T> changed = new ArrayList<>();
+        for (Map.Entry<String, String> key : keys.entrySet()) {
+            T document = catalog.find(key.getKey());
+            if (document == null || key.getValue().equals(document.getCitationKey())) continue;
+            // The stored entry may be in use by other threads, so a copy is changed
+            T copy = mapper.convertValue(document, catalog.getType());
+            copy.setCitationKey(key.getValue());
+            changed.add(copy);
+        }
+        catalog.putAll(changed);
+    }
+
+    /**
+     * Finds the documents of a given type written by an author, using the author index.
+     * @param author The exact name of the author.
+     * @param type The type of the documents.
+     * @return A new list with the documents of the author, in insertion order.
+     * @throws IOException Might throw an exception if unable to read the file.
+     */
+    public List<Document> findByAuthor(String author, DocumentType type) throws IOException {
+        CachedCatalog<? extends Document> catalog = documentCatalogOf(type);
+        // Makes sure the catalog (and therefore the index) reflects the file on disk
+        catalog.get();
+        List<Document> documents = new ArrayList<>();
+        for (String title : authorIndexes.get(type).titlesOf(author)) {
+            Document document = catalog.find(title);
+            if (document != null) {
+                documents.add(document);
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Suggests the titles most similar to a mistyped one.
+     * @param type The type of the documents.
+     * @param title The title typed by the user.
+     * @param limit The maximum number of suggestions.
+     * @return The existing titles most similar to the given one, best first.
+     * @throws IOException Might throw an exception if unable to read the database.
+     */
+    public List<String> suggestTitles(DocumentType type, String title, int limit) throws IOException {
+        documentCatalogOf(type).refresh();
+        List<String> titles = new ArrayList<>();
+        for (TrigramIndex.Match match : fuzzyIndexes.get(type).similarTitles(title, limit)) {
+            titles.add(match.getValue());
+        }
+        return titles;
+    }
+
+    /**
+     * Suggests the author names most similar to a mistyped one, among the documents of every type.
+     * @param author The name typed by the user.
+     * @param limit The maximum number of suggestions.
+     * @return The existing author names most similar to the given one, best first.
+     * @throws IOException Might throw an exception if unable to read the database.
+     */
+    public List<String> suggestAuthors(String author, int limit) throws IOException {
+        Map<String, Double> scores = new HashMap<>();
+        for (DocumentType type : DocumentType.values()) {
+            documentCatalogOf(type).refresh();
+            for (TrigramIndex.Match match : fuzzyIndexes.get(type).similarAuthors(author, limit)) {
+                scores.merge(match.getValue(), match.getScore(), Math::max);
+            }
+        }
+        List<String> authors = new ArrayList<>(scores.keySet());
+        authors.sort(Comparator.comparing((String name) -> -scores.get(name)).thenComparing(Comparator.naturalOrder()));
+        return authors.subList(0, Math.min(limit, authors.size()));
+    }
+
+    /**
+     * Completes a partially typed title.
+     * @param type The type of the documents.
+     * @param prefix The beginning of the title.
+     * @param limit The maximum number of completions.
+     * @return The titles that start with the prefix, in alphabetical order.
+     * @throws IOException Might throw an exception if unable to read the database.
+     */
+    public List<String> completeTitles(DocumentType type, String prefix, int limit) throws IOException {
+        documentCatalogOf(type).refresh();
+        return titleCompletions.get(type).complete(prefix, limit);
+    }
+
+    /**
+     * Completes a partially typed author name, among the documents of every type.
+     * @param prefix The beginning of the name.
+     * @param limit The maximum number of completions.
+     * @return The author names that start with the prefix, in alphabetical order.
+     * @throws IOException Might throw an exception if unable to read the database.
+     */
+    public List<String> completeAuthors(String prefix, int limit) throws IOException {
+        TreeSet<String> authors = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (DocumentType type : DocumentType.values()) {
+            documentCatalogOf(type).refresh();
+            authors.addAll(authorCompletions.get(type).complete(prefix, limit));
+        }
+        List<String> completions = new ArrayList<>(authors);
+        return completions.subList(0, Math.min(limit, completions.size()));
+    }
+
+    /**
+     * Completes a partially typed collection name.
+     * @param prefix The beginning of the name.
+     * @param limit The maximum number of completions.
+     * @return The collection names that start with the prefix, in alphabetical order.
+     * @throws IOException Might throw an exception if unable to read the database.
+     */
+    public List<String> completeCollectionNames(String prefix, int limit) throws IOException {
+        collections.refresh();
+        return collectionCompletions.complete(prefix, limit);
+    }
+
+    /**
+     * Returns the documents of a type that match every condition, using the secondary indexes.
+     * @param type The type of the documents.
+     * @param conditions Conditions on the fields returned by {@link #getIndexedFields(DocumentType)}.
+     * @return The matching documents.
+     * @throws IOException Might throw an exception if unable to read the database.
+     * @throws IllegalArgumentException If a condition is on a field that is not indexed.
+     */
+    public List<? extends Document> queryDocuments(DocumentType type, List<Condition> conditions) throws IOException {
+        return fieldIndexes.get(type).query(conditions);
+    }
+
+    /**
+     * @param type The type of the documents.
+     * @return The fields that can be used in {@link #queryDocuments(DocumentType, List)}.
+     */
+    public Set<String> getIndexedFields(DocumentType type) {
+        return fieldIndexes.get(type).fields();
+    }
+
+    /**
+     * Hands every book to a consumer without requiring the whole file to be loaded.
+     * @param action Receives each book, in order.
+     * @throws IOException Might throw an exception if unable to read the file.
+     */
+    public void forEachBook(Consumer<? super Book> action) throws IOException {
+        books.forEach(action);
+    }
+
+    /**
+     * Hands every slide to a consumer without requiring the whole file to be loaded.
+     * @param action Receives each slide, in order.
+     * @throws IOException Might throw an exception if unable to read the file.
+     */
+    public void forEachSlide(Consumer<? super Slide> action) throws IOException {
+        slides.forEach(action);
+    }
+
+    /**
+     * Hands every class note to a consumer without requiring the whole file to be loaded.
+     * @param action Receives each class note, in order.
+     * @throws IOException Might throw an exception if unable to read the file.
+     */
+    public void forEachClassNote(Consumer<? super ClassNote> action) throws IOException {
+        classNotes.forEach(action);
+    }
+
+    public List<Book> getBooks() throws IOException {
+        return books.get();
+    }
+
+    public List<Slide> getSlides() throws IOException {
+        return slides.get();
+    }
+
+    public List<ClassNote> getClassNotes() throws IOException {
+        return classNotes.get();
     }
 
     /**
@@ -66,40 +493,112 @@ public class DatabaseManager {
      * @throws IOException Might result in a IOException. Treatment required.
      */
     public void writeField(File dbPath, String field, String data) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        ObjectNode object = mapper.readValue(dbPath, ObjectNode.class);
-        object.put(field, data);
-        mapper.writeValue(dbPath, object);
+        // Read-modify-write of the whole file, so concurrent writers must not interleave
+        synchronized (fieldLock) {
+            ObjectNode object = mapper.readValue(dbPath, ObjectNode.class);
+            object.put(field, data);
+            AtomicFileWriter.write(dbPath, out -> mapper.writerWithDefaultPrettyPrinter().writeValue(out, object));
+            if (dbPath.equals(configPath)) {
+                libraryPath = null;
+            }
+        }
     }
 
     /**
      * Removes an entry from the database and returns a specific data from it.
+     * The entry is also removed from every collection that lists it.
      * @param dbPath The database path.
      * @param title The title of the file.
-     * @param info The field from which to get the return value.
+     * @param info The field from which to get the return value (e.g. <i>path</i> or <i>authors[0]</i>).
      * @return The data to be rescued from the database entry before deletion.
      * @throws IOException Might throw an exception if unable to manipulate database.
      */
     public String removeEntry(File dbPath, String title, String info) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        ArrayNode root = (ArrayNode) mapper.readTree(dbPath);
-        boolean removed = false;
-        String data = null;
-
-        for (int i = root.size() - 1; i >= 0; i--) {
-            JsonNode item = root.get(i);
-            if (item.get("title").asText().equals(title)) {
-                data = JsonPath.from(dbPath).get("find { it.title == '" + title +  "'}." + info);
-                root.remove(i);
-                removed = true;
-            }
-        }
-        if (!removed) {
+        Document entry = documentCatalogOf(dbPath).remove(title);
+        if (entry == null) {
             System.out.println(RED + "Entry '" + title + "' not found in database." + RESET);
             return null;
         }
-        mapper.writerWithDefaultPrettyPrinter().writeValue(dbPath, root);
-        return data;
+        removeFromCollections(documentTypeOf(dbPath), title);
+        if (fullText != null) {
+            fullText.remove(documentTypeOf(dbPath), title);
+        }
+        JsonNode node = mapper.valueToTree(entry).at(toPointer(info));
+        return (node.isMissingNode() || node.isNull()) ? null : node.asText();
+    }
+
+    /**
+     * Removes many documents of a type at once, with a single write to their file. The documents are
+     * also removed from the collections that list them.
+     * @param type The type of the documents.
+     * @param titles The titles of the documents. Titles not in the database are ignored.
+     * @return The removed documents.
+     * @throws IOException Might throw an exception if unable to write the database.
+     */
+    public List<Document> removeEntries(DocumentType type, List<String> titles) throws IOException {
+        List<Document> removed = new ArrayList<>(documentCatalogOf(type).removeAll(titles));
+        for (Document document : removed) {
+            removeFromCollections(type, document.getTitle());
+            if (fullText != null) {
+                fullText.remove(type, document.getTitle());
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Records that the library copies of many documents of a type were moved or renamed. The name of
+     * the new file becomes the title of its document and the directory becomes its first author; the
+     * rest of the metadata is kept, and a renamed document keeps its place in its collections.
+     * @param type The type of the documents.
+     * @param moves The current title of each document and the new location of its copy in the library.
+     * @return The moved documents, as stored.
+     * @throws IOException Might throw an exception if unable to write the database.
+     */
+    public List<Document> relocateEntries(DocumentType type, Map<String, File> moves) throws IOException {
+        return relocateEntries(documentCatalogOf(type), type, moves);
+    }
+
+    private <T extends Document> List<Document> relocateEntries(CachedCatalog<T> catalog, DocumentType type,
+                                                                Map<String, File> moves) throws IOException {
+        List<T> moved = new ArrayList<>();
+        List<T> renamed = new ArrayList<>();
+        Map<String, String> newTitles = new HashMap<>();
+        for (Map.Entry<String, File> move : moves.entrySet()) {
+            T document = catalog.find(move.getKey());
+            if (document == null) continue;
+            String title = move.getValue().getName();
+            String author = move.getValue().getParentFile().getName();
+            boolean rename = !title.equals(document.getTitle());
+            if (rename && (catalog.find(title) != null || newTitles.containsValue(title))) {
+                System.err.println("WARNING: '" + title + "' is already in the database, '" + document.getTitle() + "' was not renamed.");
+                continue;
+            }
+            // The stored entry may be in use by other threads, so a copy is changed
+            T copy = mapper.convertValue(document, catalog.getType());
+            List<String> authors = new ArrayList<>(document.getAuthors() == null ? List.of() : document.getAuthors());
+            authors.remove(author);
+            authors.add(0, author);
+            copy.setAuthors(authors);
+            copy.setTitle(title);
+            moved.add(copy);
+            if (rename) {
+                renamed.add(copy);
+                newTitles.put(document.getTitle(), title);
+            }
+        }
+
+        // The new entries are written first, so an interrupted move never loses a document
+        catalog.putAll(moved);
+        catalog.removeAll(new ArrayList<>(newTitles.keySet()));
+        for (Map.Entry<String, String> title : newTitles.entrySet()) {
+            renameInCollections(type, title.getKey(), title.getValue());
+            if (fullText != null) {
+                fullText.remove(type, title.getKey());
+            }
+        }
+        indexText(renamed);
+        return new ArrayList<>(moved);
     }
 
     /**
@@ -109,20 +608,20 @@ public class DatabaseManager {
      * @throws IOException Might throw an exception if unable to manipulate database.
      */
     public void editFieldByTitle(File dbPath, String targetTitle) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        Scanner scanner = new Scanner(System.in);
-
-        ArrayNode db = (ArrayNode) mapper.readTree(dbPath);
+        editFieldByTitle(documentCatalogOf(dbPath), targetTitle);
+    }
 
-        String jsonContent = mapper.writeValueAsString(db);
-        JsonPath jsonPath = new JsonPath(jsonContent);
+    @SuppressWarnings("unchecked")
+    private <T extends Document> void editFieldByTitle(CachedCatalog<T> catalog, String targetTitle) throws IOException {
+        Scanner scanner = new Scanner(System.in);
 
-        Map<String, Object> targetMap = jsonPath.getMap("find { it.title == '" + targetTitle + "' }");
+        T target = catalog.find(targetTitle);
 
-        if (targetMap == null) {
+        if (target == null) {
             System.out.println(RED + "ERROR: No object found with title: " + targetTitle + RESET);
             return;
         }
+        Map<String, Object> targetMap = mapper.convertValue(target, Map.class);
 
         System.out.print("Enter the field to edit (e.g., authors, path, subTitle):\n");
         String field = scanner.nextLine();
@@ -132,25 +631,31 @@ public class DatabaseManager {
             return;
         } else if (field.equals("title")) {
             System.out.println(YELLOW + "You cannot edit the title of the file, try another field.\n" + RESET);
-            editFieldByTitle(dbPath, targetTitle);
+            editFieldByTitle(catalog, targetTitle);
             return;
         }
 
         System.out.print("Enter the new value:\n");
         String newValue = scanner.nextLine();
+        Object value = field.equals("authors") ? Arrays.asList(newValue.split("\\s*,\\s*")) : newValue;
 
-        targetMap.put(field, newValue);
-
-        for (int i = 0; i < db.size(); i++) {
-            JsonNode node = db.get(i);
-            if (node.has("title") && node.get("title").asText().equals(targetTitle)) {
-                // Replace the node
-                db.set(i, mapper.convertValue(targetMap, JsonNode.class));
-                break;
-            }
+        // The field is set on the entry as it is now, not as it was before the prompts: a copy to the
+        // library that finished in the meantime has already stored its hash and cleared 'pending'
+        T updated;
+        try {
+            updated = catalog.update(targetTitle, current -> {
+                Map<String, Object> currentMap = mapper.convertValue(current, Map.class);
+                currentMap.put(field, value);
+                return mapper.convertValue(currentMap, catalog.getType());
+            });
+        } catch (IllegalArgumentException e) {
+            System.out.println(RED + "ERROR: Invalid value for field '" + field + "'" + RESET);
+            return;
+        }
+        if (updated == null) {
+            System.out.println(RED + "ERROR: No object found with title: " + targetTitle + RESET);
+            return;
         }
-
-        mapper.writerWithDefaultPrettyPrinter().writeValue(dbPath, db);
 
         System.out.println(GREEN + "Field updated successfully." + RESET);
     }
@@ -160,30 +665,127 @@ public class DatabaseManager {
      * specific files in the database.
      * @param buffer Is a Map of parameters the user typed in, it is used to initialize the desired class.
      * The Map needs to contain a field <b>'type'</b> with the name of the class to be instanced.
+     * @return <i>false</i> if the entry is invalid or its title is already in the database, which is then unchanged.
      */
     public boolean writeObject(Map<String, Object> buffer) {
-        if (!buffer.containsKey("type")) {
-            System.err.println("ERROR: Missing 'type' key in Map<String, Object> buffer");
+        Document document = toDocument(buffer);
+        if (document == null) {
             return false;
         }
+        try {
+            // Documents are keyed by title, so writing it again would replace the stored document
+            if (containsTitle(document.getTitle())) {
+                System.err.println("ERROR: '" + document.getTitle() + "' is already in the database.");
+                return false;
+            }
+            if (document instanceof Book) {
+                books.put((Book) document);
+            } else if (document instanceof Slide) {
+                slides.put((Slide) document);
+            } else {
+                classNotes.put((ClassNote) document);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        indexText(List.of(document));
+        return true;
+    }
 
-        if (buffer.get("type") == "Book") {
-            addBookToDB(buffer);
+    /**
+     * Writes many documents at once. Every entry is validated first and invalid entries are reported
+     * and skipped, as are entries whose title is already in the database or earlier in the list; the
+     * valid ones are grouped by type and each affected file is written only once.
+     * @param buffers A list of Maps in the same format accepted by {@link #writeObject(Map)}.
+     * @return The documents that were written, in the order they were given.
+     * @throws IOException Might throw an exception if unable to write the files.
+     */
+    public List<Document> writeObjects(List<Map<String, Object>> buffers) throws IOException {
+        List<Book> newBooks = new ArrayList<>();
+        List<Slide> newSlides = new ArrayList<>();
+        List<ClassNote> newClassNotes = new ArrayList<>();
+        List<Document> written = new ArrayList<>();
+        Set<String> titles = new HashSet<>();
 
-        } else if (buffer.get("type") == "Slide") {
-            addSlideToDB(buffer);
+        for (Map<String, Object> buffer : buffers) {
+            Document document = toDocument(buffer);
+            if (document == null) continue;
+            if (containsTitle(document.getTitle()) || !titles.add(document.getTitle())) {
+                System.err.println("ERROR: '" + document.getTitle() + "' is already in the database, it was not written.");
+                continue;
+            }
+            if (document instanceof Book) {
+                newBooks.add((Book) document);
+            } else if (document instanceof Slide) {
+                newSlides.add((Slide) document);
+            } else {
+                newClassNotes.add((ClassNote) document);
+            }
+            written.add(document);
+        }
 
-        } else if (buffer.get("type") == "ClassNote") {
-            addClassNoteToDB(buffer);
+        writeBooks(newBooks);
+        writeSlides(newSlides);
+        writeClassNotes(newClassNotes);
+        indexText(written);
+        return written;
+    }
 
-        } else {
-            System.err.println("ERROR: Invalid Document type.");
-            return false;
+    /**
+     * Imports the entries of a JSON file into the database. The file must contain an array of objects
+     * in the same format accepted by {@link #writeObject(Map)}. It is read as a stream and written in
+     * large batches, so each database file is written once per batch.
+     * @param source The JSON file to be imported.
+     * @return The documents that were written.
+     * @throws IOException Might throw an exception if unable to read the source or write the database.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Document> importObjects(File source) throws IOException {
+        List<Document> written = new ArrayList<>();
+        List<Map<String, Object>> batch = new ArrayList<>();
+        try (CatalogReader<Map> reader = CatalogReader.open(source, Map.class, mapper)) {
+            while (reader.hasNext()) {
+                batch.add(reader.next());
+                if (batch.size() == IMPORT_BATCH_SIZE) {
+                    written.addAll(writeObjects(batch));
+                    batch.clear();
+                }
+            }
         }
+        written.addAll(writeObjects(batch));
+        return written;
+    }
 
-        return true;
+    /**
+     * Writes many books at once, with a single write to the books file.
+     * A book with the same title as an existing one replaces it.
+     * @param newBooks The books to be written.
+     * @throws IOException Might throw an exception if unable to write the file.
+     */
+    public void writeBooks(List<Book> newBooks) throws IOException {
+        books.putAll(newBooks);
     }
-    
+
+    /**
+     * Writes many slides at once, with a single write to the slides file.
+     * A slide with the same title as an existing one replaces it.
+     * @param newSlides The slides to be written.
+     * @throws IOException Might throw an exception if unable to write the file.
+     */
+    public void writeSlides(List<Slide> newSlides) throws IOException {
+        slides.putAll(newSlides);
+    }
+
+    /**
+     * Writes many class notes at once, with a single write to the class notes file.
+     * A class note with the same title as an existing one replaces it.
+     * @param newClassNotes The class notes to be written.
+     * @throws IOException Might throw an exception if unable to write the file.
+     */
+    public void writeClassNotes(List<ClassNote> newClassNotes) throws IOException {
+        classNotes.putAll(newClassNotes);
+    }
+
     // =================================================================================
     // MÉTODOS ADICIONADOS PARA GERENCIAR COLEÇÕES
     // =================================================================================
@@ -191,31 +793,25 @@ public class DatabaseManager {
     /**
      * Salva ou atualiza uma coleção no banco de dados.
      * Se uma coleção com o mesmo nome já existir, ela será substituída.
+     * In journal mode only this collection is appended to the journal; otherwise the whole
+     * <i>collections.json</i> is rewritten, as for any other change to the collections.
      * @param collection O objeto Collection a ser salvo.
      * @throws IOException
      */
     public void saveCollection(Collection collection) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        List<Collection> collections = getAllCollections();
-
-        // Remove a coleção antiga com o mesmo nome para substituí-la (update)
-        collections.removeIf(c -> c.getName().equalsIgnoreCase(collection.getName()));
-        collections.add(collection);
-
-        mapper.writerWithDefaultPrettyPrinter().writeValue(collectionsPath, collections);
+        // A coleção antiga com o mesmo nome (ignorando maiúsculas) é substituída (update)
+        collections.put(collection);
     }
 
     /**
      * Retorna uma coleção específica pelo nome.
+     * The collection is the one kept in the cache, so it must not be changed: save a changed copy instead.
      * @param name Nome da coleção.
      * @return O objeto Collection, ou null se não for encontrado.
      * @throws IOException
      */
     public Collection getCollectionByName(String name) throws IOException {
-        return getAllCollections().stream()
-                .filter(c -> c.getName().equalsIgnoreCase(name))
-                .findFirst()
-                .orElse(null);
+        return collections.find(collectionKey(name));
     }
 
     /**
@@ -224,122 +820,172 @@ public class DatabaseManager {
      * @throws IOException
      */
     public List<Collection> getAllCollections() throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        if (!collectionsPath.exists() || collectionsPath.length() == 0) {
-            return new ArrayList<>();
-        }
-        return new ArrayList<>(Arrays.asList(mapper.readValue(collectionsPath, Collection[].class)));
+        return new ArrayList<>(collections.get());
     }
     
+    /**
+     * Retorna os documentos de uma coleção, na ordem em que foram adicionados.
+     * Each title is looked up by key in its catalog, and the result is cached until the collection
+     * or one of its documents changes. Titles no longer in the database are skipped.
+     * @param name Nome da coleção.
+     * @return A read-only list of documents, or <i>null</i> if the collection does not exist.
+     * @throws IOException Might throw an exception if unable to read the database.
+     */
+    public List<Document> getCollectionDocuments(String name) throws IOException {
+        String key = collectionKey(name);
+        List<Document> view = collectionIndex.cachedView(key);
+        if (view != null) return view;
+
+        long version = collectionIndex.version();
+        Collection collection = collections.find(key);
+        if (collection == null) return null;
+        List<Document> documents = new ArrayList<>();
+        if (collection.getType() != null && collection.getEntryTitles() != null) {
+            CachedCatalog<? extends Document> catalog = documentCatalogOf(collection.getType());
+            // A title listed twice is only resolved once
+            for (String title : new LinkedHashSet<>(collection.getEntryTitles())) {
+                Document document = catalog.find(title);
+                if (document != null) {
+                    documents.add(document);
+                }
+            }
+        }
+        collectionIndex.cacheView(key, version, documents);
+        return Collections.unmodifiableList(documents);
+    }
+
+    /**
+     * Retorna as coleções que contêm um documento, através do índice reverso (sem ler todas as coleções).
+     * @param type The type of the document.
+     * @param title The title of the document.
+     * @return The collections that list the document.
+     * @throws IOException Might throw an exception if unable to read the database.
+     */
+    public List<Collection> getCollectionsContaining(DocumentType type, String title) throws IOException {
+        // Loads the collections, so the index is built before it is queried
+        collections.get();
+        List<Collection> result = new ArrayList<>();
+        for (String key : collectionIndex.collectionsOf(type, title)) {
+            Collection collection = collections.find(key);
+            if (collection != null) {
+                result.add(collection);
+            }
+        }
+        return result;
+    }
+
     /**
      * Remove uma coleção do banco de dados pelo nome.
      * @param name Nome da coleção a ser removida.
      * @throws IOException
      */
     public void deleteCollection(String name) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        List<Collection> collections = getAllCollections();
-        
-        boolean removed = collections.removeIf(c -> c.getName().equalsIgnoreCase(name));
-        if (removed) {
-            mapper.writerWithDefaultPrettyPrinter().writeValue(collectionsPath, collections);
-        }
+        collections.remove(collectionKey(name));
     }
 
 
     /**
-     * Adds a book to the database.
-     * @param buffer A map with the information to be written in the database.
+     * Creates a <i>Book</i>, <i>Slide</i> or <i>ClassNote</i> from a Map of parameters.
+     * @param buffer The parameters. The Map needs to contain a field <b>'type'</b> with the name of the class
+     *               and a non-empty <b>'title'</b>.
+     * @return The document, or <i>null</i> if the parameters are invalid.
      */
-    @SuppressWarnings("unchecked")
-    private void addBookToDB(Map<String, Object> buffer) {
-        ObjectMapper mapper = new ObjectMapper();
-        List<Object> bookList;
-        try {
-            bookList = readFileAsList(booksPath);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    private Document toDocument(Map<String, Object> buffer) {
+        if (!buffer.containsKey("type")) {
+            System.err.println("ERROR: Missing 'type' key in Map<String, Object> buffer");
+            return null;
+        }
+        Object title = buffer.get("title");
+        if (!(title instanceof String) || ((String) title).isBlank()) {
+            System.err.println("ERROR: Missing 'title' key in Map<String, Object> buffer");
+            return null;
         }
+
+        Object type = buffer.get("type");
+        Document document;
+        if ("Book".equals(type)) {
+            document = toBook(buffer);
+        } else if ("Slide".equals(type)) {
+            document = toSlide(buffer);
+        } else if ("ClassNote".equals(type)) {
+            document = toClassNote(buffer);
+        } else {
+            System.err.println("ERROR: Invalid Document type.");
+            return null;
+        }
+        document.setContentHash((String) buffer.get("contentHash"));
+        if (buffer.get("contentSize") instanceof Number) {
+            document.setContentSize(((Number) buffer.get("contentSize")).longValue());
+        }
+        document.setPending(Boolean.TRUE.equals(buffer.get("pending")));
+        document.setCitationKey((String) buffer.get("citationKey"));
+        return document;
+    }
+
+    /**
+     * Creates a book from a Map of parameters.
+     * @param buffer A map with the information to be written in the database.
+     */
+    private Book toBook(Map<String, Object> buffer) {
         Book book = new Book();
         book.setTitle((String) buffer.get("title"));
         book.setPath((String) buffer.get("path"));
-        book.setAuthors((List<String>) buffer.get("authors"));
+        book.setAuthors(toAuthors(buffer.get("authors")));
         book.setSubTitle((String) buffer.get("subTitle"));
         book.setFieldOfKnowledge((String) buffer.get("fieldOfKnowledge"));
         book.setPublisher((String) buffer.get("publisher")); // Campo adicionado
+        Object publishYear = buffer.get("publishYear");
         try {
-            book.setPublishYear(Integer.parseInt((String) buffer.get("publishYear")));
+            if (publishYear instanceof Number) {
+                book.setPublishYear(((Number) publishYear).intValue());
+            } else {
+                book.setPublishYear(Integer.parseInt((String) publishYear));
+            }
         } catch (Exception e) {
             System.err.println("ERROR: Invalid input value. Value should be a integer.");
             System.err.flush();
         }
-
-        bookList.add(book);
-        try {
-            mapper.writerWithDefaultPrettyPrinter()
-                    .writeValue(booksPath, bookList);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return book;
     }
 
     /**
-     * Adds a slide to the database.
+     * Creates a slide from a Map of parameters.
      * @param buffer A map with the information to be written in the database.
      */
-    @SuppressWarnings("unchecked")
-    private void addSlideToDB(Map<String, Object> buffer) {
-        ObjectMapper mapper = new ObjectMapper();
-        List<Object> slideList;
-        try {
-            slideList = readFileAsList(slidesPath);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    private Slide toSlide(Map<String, Object> buffer) {
         Slide slide = new Slide();
         slide.setTitle((String) buffer.get("title"));
         slide.setPath((String) buffer.get("path"));
-        slide.setAuthors((List<String>) buffer.get("authors"));
+        slide.setAuthors(toAuthors(buffer.get("authors")));
         slide.setLectureName((String) buffer.get("lectureName"));
         slide.setInstitutionName((String) buffer.get("institutionName"));
-
-        slideList.add(slide);
-        try {
-            mapper.writerWithDefaultPrettyPrinter()
-                    .writeValue(slidesPath, slideList);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return slide;
     }
 
     /**
-     * Adds a class note to the database.
+     * Creates a class note from a Map of parameters.
      * @param buffer A map with the information to be written in the database.
      */
-    @SuppressWarnings("unchecked")
-    private void addClassNoteToDB(Map<String, Object> buffer) {
-        ObjectMapper mapper = new ObjectMapper();
-        List<Object> classNoteList;
-        try {
-            classNoteList = readFileAsList(classNotesPath);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    private ClassNote toClassNote(Map<String, Object> buffer) {
         ClassNote classNote = new ClassNote();
         classNote.setTitle((String) buffer.get("title"));
         classNote.setPath((String) buffer.get("path"));
-        classNote.setAuthors((List<String>) buffer.get("authors"));
+        classNote.setAuthors(toAuthors(buffer.get("authors")));
         classNote.setSubTitle((String) buffer.get("subTitle"));
         classNote.setLectureName((String) buffer.get("lectureName"));
         classNote.setInstitutionName((String) buffer.get("institutionName"));
+        return classNote;
+    }
 
-        classNoteList.add(classNote);
-        try {
-            mapper.writerWithDefaultPrettyPrinter()
-                    .writeValue(classNotesPath, classNoteList);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * Accepts the authors either as a list or as a single comma-separated string.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> toAuthors(Object authors) {
+        if (authors instanceof String) {
+            return Arrays.asList(((String) authors).split("\\s*,\\s*"));
         }
+        return (List<String>) authors;
     }
 
     public File getConfigPath() {
@@ -364,6 +1010,227 @@ public class DatabaseManager {
     }
 
     public String getLibraryPath() throws IOException {
-        return readField(configPath, "libraryPath");
+        String path = libraryPath;
+        if (path == null) {
+            path = readField(configPath, "libraryPath");
+            libraryPath = path;
+        }
+        return path;
+    }
+
+    /**
+     * Searches the text of the PDFs in the library.
+     * @param query The words to search for. Phrases between double quotes must appear as written.
+     * @param type Only documents of this type are returned, or every type if <i>null</i>.
+     * @param limit The maximum number of results.
+     * @return The best results, most relevant first. Empty if full-text search is disabled.
+     * @throws IOException Might throw an exception if unable to read the index.
+     */
+    public List<SearchHit> searchText(String query, DocumentType type, int limit) throws IOException {
+        if (fullText == null) return new ArrayList<>();
+        return fullText.search(query, type, limit);
+    }
+
+    /**
+     * Extracts the text of every document in the database again and rebuilds the full-text index.
+     * @return The number of documents indexed, or -1 if full-text search is disabled.
+     * @throws IOException Might throw an exception if unable to read the database or write the index.
+     */
+    public int rebuildTextIndex() throws IOException {
+        if (fullText == null) return -1;
+        List<Document> documents = new ArrayList<>();
+        documents.addAll(books.get());
+        documents.addAll(slides.get());
+        documents.addAll(classNotes.get());
+        return fullText.rebuild(documents);
+    }
+
+    public boolean isFullTextSearchEnabled() {
+        return fullText != null;
+    }
+
+    /**
+     * @return <i>true</i> if changes could not be written to the full-text index, which must then be rebuilt.
+     */
+    public boolean needsTextIndexRebuild() {
+        return fullText != null && fullText.needsRebuild();
+    }
+
+    /**
+     * @return The number of documents waiting to be added to or removed from the full-text index.
+     */
+    public int getPendingTextIndexing() {
+        return fullText == null ? 0 : fullText.pending();
+    }
+
+    /**
+     * Waits until every document written so far is in the full-text index (e.g. before the program quits).
+     */
+    public void awaitTextIndexing() {
+        if (fullText != null) {
+            fullText.awaitIndexed();
+        }
+    }
+
+    /**
+     * Writes every pending journal record to the database files (and the full-text index) and
+     * empties the journals. Does nothing for the files that are not journaled.
+     * @throws IOException Might throw an exception if unable to write the files.
+     */
+    public void compact() throws IOException {
+        books.compact();
+        slides.compact();
+        classNotes.compact();
+        collections.compact();
+        if (fullText != null) {
+            fullText.compact();
+        }
+    }
+
+    /**
+     * Reads a <i>true</i>/<i>false</i> option from config.json. Missing options are <i>false</i>.
+     * @param field The name of the option.
+     * @return The value of the option.
+     */
+    private boolean readFlag(String field) {
+        try {
+            return Objects.equals(readField(configPath, field), "true");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Converts a field reference such as <i>authors[0]</i> to a JSON pointer (<i>/authors/0</i>).
+     * @param info The field reference.
+     * @return The JSON pointer.
+     */
+    private static JsonPointer toPointer(String info) {
+        String path = info.replace("[", ".").replace("]", "");
+        StringBuilder pointer = new StringBuilder();
+        for (String segment : path.split("\\.")) {
+            if (segment.isEmpty()) continue;
+            pointer.append('/').append(segment.replace("~", "~0").replace("/", "~1"));
+        }
+        return JsonPointer.compile(pointer.toString());
+    }
+
+    /**
+     * Replaces the title of a renamed document in every collection that lists it.
+     * @param type The type of the document.
+     * @param title The previous title of the document.
+     * @param newTitle The new title of the document.
+     * @throws IOException Might throw an exception if unable to write the database.
+     */
+    private void renameInCollections(DocumentType type, String title, String newTitle) throws IOException {
+        for (Collection collection : getCollectionsContaining(type, title)) {
+            // The stored collection is shared with readers, so a changed copy is saved instead
+            List<String> titles = new ArrayList<>(collection.getEntryTitles());
+            titles.replaceAll(entry -> entry.equals(title) ? newTitle : entry);
+            collections.put(new Collection(collection.getName(), collection.getAuthor(), collection.getType(),
+                    collection.getMaxSize(), titles));
+        }
+    }
+
+    /**
+     * Removes a deleted document from every collection that lists it. Collections left empty are
+     * deleted, as when their last entry is removed by hand.
+     * @param type The type of the document.
+     * @param title The title of the document.
+     * @throws IOException Might throw an exception if unable to write the database.
+     */
+    private void removeFromCollections(DocumentType type, String title) throws IOException {
+        for (Collection collection : getCollectionsContaining(type, title)) {
+            // The stored collection is shared with readers, so a changed copy is saved instead
+            List<String> titles = new ArrayList<>(collection.getEntryTitles());
+            titles.removeIf(title::equals);
+            if (titles.isEmpty()) {
+                collections.remove(collectionKey(collection.getName()));
+            } else {
+                collections.put(new Collection(collection.getName(), collection.getAuthor(), collection.getType(),
+                        collection.getMaxSize(), titles));
+            }
+        }
+    }
+
+    /**
+     * Queues documents to be added to the full-text index in the background, so the write of the
+     * documents does not wait for their PDFs to be parsed. A failure is reported by the indexing thread.
+     * @param documents The documents just written to the database.
+     */
+    private void indexText(List<? extends Document> documents) {
+        if (fullText == null || documents.isEmpty()) return;
+        fullText.submit(documents);
+    }
+
+    /**
+     * Finds the PDF of a document: its copy in the library if it exists, or else the original file.
+     * @param document The document.
+     * @return The PDF file.
+     */
+    private File pdfOf(Document document) {
+        try {
+            File copy = libraryCopyOf(document);
+            if (copy != null) return copy;
+        } catch (IOException e) {
+            // Falls back to the original file
+        }
+        return document.getPath() == null ? null : new File(document.getPath(), document.getTitle());
+    }
+
+    /**
+     * @return The copy of the document in the library, or <i>null</i> if there is none.
+     */
+    private File libraryCopyOf(Document document) throws IOException {
+        String library = getLibraryPath();
+        if (library == null || library.isEmpty() || document.getAuthors() == null || document.getAuthors().isEmpty()) {
+            return null;
+        }
+        File copy = new File(library + File.separator + document.getAuthors().get(0), document.getTitle());
+        return copy.isFile() ? copy : null;
+    }
+
+    /**
+     * Collection names are compared ignoring case.
+     * @param name The name of a collection.
+     * @return The key under which the collection is stored.
+     */
+    private static String collectionKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Finds the resident catalog that holds a database file.
+     * @param dbPath The path to the file.
+     * @return The catalog of the file.
+     */
+    private CachedCatalog<?> catalogOf(File dbPath) {
+        if (dbPath.equals(collectionsPath)) return collections;
+        return documentCatalogOf(dbPath);
+    }
+
+    private CachedCatalog<? extends Document> documentCatalogOf(DocumentType type) {
+        switch (type) {
+            case BOOK:
+                return books;
+            case SLIDE:
+                return slides;
+            default:
+                return classNotes;
+        }
+    }
+
+    private DocumentType documentTypeOf(File dbPath) {
+        if (dbPath.equals(booksPath)) return DocumentType.BOOK;
+        if (dbPath.equals(slidesPath)) return DocumentType.SLIDE;
+        if (dbPath.equals(classNotesPath)) return DocumentType.CLASS_NOTE;
+        throw new IllegalArgumentException("Unknown database file: " + dbPath);
+    }
+
+    private CachedCatalog<? extends Document> documentCatalogOf(File dbPath) {
+        if (dbPath.equals(booksPath)) return books;
+        if (dbPath.equals(slidesPath)) return slides;
+        if (dbPath.equals(classNotesPath)) return classNotes;
+        throw new IllegalArgumentException("Unknown database file: " + dbPath);
     }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.pdfmanager.db;
+
+import com.pdfmanager.files.Document;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Trigram indexes of the titles and author names of a document catalog, for "did you mean"
+ * suggestions when a title or author is mistyped.
+ */
+public class FuzzyIndex implements CatalogListener<Document> {
+    private final TrigramIndex titles = new TrigramIndex();
+    private final TrigramIndex authors = new TrigramIndex();
+
+    /**
+     * @param query A possibly mistyped title.
+     * @param limit The maximum number of suggestions.
+     * @return The most similar titles, best first.
+     */
+    public List<TrigramIndex.Match> similarTitles(String query, int limit) {
+        return titles.search(query, limit);
+    }
+
+    /**
+     * @param query A possibly mistyped author name.
+     * @param limit The maximum number of suggestions.
+     * @return The most similar author names, best first.
+     */
+    public List<TrigramIndex.Match> similarAuthors(String query, int limit) {
+        return authors.search(query, limit);
+    }
+
+    @Override
+    public synchronized void entryPut(Document previous, Document entry) {
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(entry);
+    }
+
+    @Override
+    public synchronized void entryRemoved(Document entry) {
+        unindex(entry);
+    }
+
+    @Override
+    public synchronized void reloaded(Collection<? extends Document> entries) {
+        titles.clear();
+        authors.clear();
+        for (Document entry : entries) {
+            index(entry);
+        }
+    }
+
+    private void index(Document document) {
+        titles.add(document.getTitle());
+        if (document.getAuthors() == null) return;
+        for (String author : document.getAuthors()) {
+            authors.add(author);
+        }
+    }
+
+    private void unindex(Document document) {
+        titles.remove(document.getTitle());
+        if (document.getAuthors() == null) return;
+        for (String author : document.getAuthors()) {
+            authors.remove(author);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.pdfmanager.db;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Secondary index for categorical fields (e.g. <i>publisher</i>), answering equality conditions.
+ * Text values are compared ignoring case and surrounding spaces.
+ * @param <T> The class stored in the catalog.
+ */
+public class HashIndex<T> extends SecondaryIndex<T> {
+    private final Map<Object, Set<String>> keysByValue = new HashMap<>();
+
+    public HashIndex(Function<T, String> keyOf, Function<T, ?> field) {
+        super(keyOf, field);
+    }
+
+    @Override
+    public synchronized int estimate(Condition condition) {
+        Set<String> keys = keysByValue.get(normalize(condition.getValue()));
+        return keys == null ? 0 : keys.size();
+    }
+
+    @Override
+    public synchronized Set<String> keys(Condition condition) {
+        Set<String> keys = keysByValue.get(normalize(condition.getValue()));
+        return keys == null ? Collections.emptySet() : new LinkedHashSet<>(keys);
+    }
+
+    @Override
+    public boolean test(T entry, Condition condition) {
+        return Objects.equals(normalize(valueOf(entry)), normalize(condition.getValue()));
+    }
+
+    @Override
+    protected void add(Object value, String key) {
+        value = normalize(value);
+        if (value == null) return;
+        keysByValue.computeIfAbsent(value, v -> new LinkedHashSet<>()).add(key);
+    }
+
+    @Override
+    protected void remove(Object value, String key) {
+        value = normalize(value);
+        Set<String> keys = keysByValue.get(value);
+        if (keys == null) return;
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            keysByValue.remove(value);
+        }
+    }
+
+    @Override
+    protected void clear() {
+        keysByValue.clear();
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof String) {
+            String text = ((String) value).trim().toLowerCase(Locale.ROOT);
+            return text.isEmpty() ? null : text;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,97 @@
+package com.pdfmanager.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Sorted index of strings taken from the entries of a catalog (titles, author names, collection
+ * names...), used to complete what the user started typing.
+ * <p>
+ * The strings are kept in a tree ordered by their normalized form, so the completions of a prefix are
+ * the strings from the first one not smaller than the prefix onwards. Finding it takes logarithmic time
+ * and each completion is read in constant time, so the latency barely grows with the library.
+ * Comparisons ignore case, accents and repeated spaces.
+ * @param <T> The class stored in the catalog.
+ */
+public class PrefixIndex<T> implements CatalogListener<T> {
+    private final Function<T, List<String>> valuesOf;
+    // Normalized string -> the strings with that form, and how many entries hold each of them
+    private final TreeMap<String, Map<String, Integer>> strings = new TreeMap<>();
+
+    /**
+     * @param valuesOf Returns the strings of an entry to be completed. May return <i>null</i>.
+     */
+    public PrefixIndex(Function<T, List<String>> valuesOf) {
+        this.valuesOf = valuesOf;
+    }
+
+    /**
+     * Returns the strings that start with a prefix.
+     * @param prefix The text typed so far.
+     * @param limit The maximum number of completions.
+     * @return The completions in alphabetical order, so shorter ones come before their own continuations.
+     */
+    public synchronized List<String> complete(String prefix, int limit) {
+        List<String> completions = new ArrayList<>();
+        if (prefix == null || limit <= 0) return completions;
+        String normalized = TrigramIndex.normalize(prefix);
+        for (Map.Entry<String, Map<String, Integer>> entry : strings.tailMap(normalized, true).entrySet()) {
+            if (!entry.getKey().startsWith(normalized)) break;
+            for (String value : entry.getValue().keySet()) {
+                completions.add(value);
+                if (completions.size() == limit) return completions;
+            }
+        }
+        return completions;
+    }
+
+    @Override
+    public synchronized void entryPut(T previous, T entry) {
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(entry);
+    }
+
+    @Override
+    public synchronized void entryRemoved(T entry) {
+        unindex(entry);
+    }
+
+    @Override
+    public synchronized void reloaded(Collection<? extends T> entries) {
+        strings.clear();
+        for (T entry : entries) {
+            index(entry);
+        }
+    }
+
+    private void index(T entry) {
+        List<String> values = valuesOf.apply(entry);
+        if (values == null) return;
+        for (String value : values) {
+            if (value == null || value.isBlank()) continue;
+            strings.computeIfAbsent(TrigramIndex.normalize(value), n -> new TreeMap<>()).merge(value, 1, Integer::sum);
+        }
+    }
+
+    private void unindex(T entry) {
+        List<String> values = valuesOf.apply(entry);
+        if (values == null) return;
+        for (String value : values) {
+            if (value == null || value.isBlank()) continue;
+            String normalized = TrigramIndex.normalize(value);
+            Map<String, Integer> variants = strings.get(normalized);
+            if (variants == null) continue;
+            // Each entry holding the string added one to its count
+            variants.computeIfPresent(value, (v, count) -> count > 1 ? count - 1 : null);
+            if (variants.isEmpty()) {
+                strings.remove(normalized);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.pdfmanager.db;
+
+import java.util.LinkedHashSet;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Sorted secondary index for numeric fields (e.g. <i>publishYear</i>), answering range and
+ * equality conditions.
+ * @param <T> The class stored in the catalog.
+ */
+public class RangeIndex<T> extends SecondaryIndex<T> {
+    private final TreeMap<Integer, Set<String>> keysByValue = new TreeMap<>();
+
+    public RangeIndex(Function<T, String> keyOf, Function<T, Integer> field) {
+        super(keyOf, field);
+    }
+
+    @Override
+    public synchronized int estimate(Condition condition) {
+        int count = 0;
+        for (Set<String> keys : select(condition).values()) {
+            count += keys.size();
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized Set<String> keys(Condition condition) {
+        Set<String> result = new LinkedHashSet<>();
+        for (Set<String> keys : select(condition).values()) {
+            result.addAll(keys);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean test(T entry, Condition condition) {
+        Integer value = (Integer) valueOf(entry);
+        if (value == null) return false;
+        if (condition.getOperator() == Condition.Operator.EQUAL) {
+            return value.equals(toInteger(condition.getValue()));
+        }
+        return (condition.getFrom() == null || value >= condition.getFrom())
+                && (condition.getTo() == null || value <= condition.getTo());
+    }
+
+    @Override
+    protected void add(Object value, String key) {
+        if (value == null) return;
+        keysByValue.computeIfAbsent((Integer) value, v -> new LinkedHashSet<>()).add(key);
+    }
+
+    @Override
+    protected void remove(Object value, String key) {
+        if (value == null) return;
+        Set<String> keys = keysByValue.get(value);
+        if (keys == null) return;
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            keysByValue.remove(value);
+        }
+    }
+
+    @Override
+    protected void clear() {
+        keysByValue.clear();
+    }
+
+    private NavigableMap<Integer, Set<String>> select(Condition condition) {
+        if (condition.getOperator() == Condition.Operator.EQUAL) {
+            Integer value = toInteger(condition.getValue());
+            return keysByValue.subMap(value, true, value, true);
+        }
+        Integer from = condition.getFrom();
+        Integer to = condition.getTo();
+        if (from != null && to != null && from > to) return new TreeMap<>();
+        if (from == null && to == null) return keysByValue;
+        if (from == null) return keysByValue.headMap(to, true);
+        if (to == null) return keysByValue.tailMap(from, true);
+        return keysByValue.subMap(from, true, to, true);
+    }
+
+    private static Integer toInteger(Object value) {
+        if (value instanceof Integer) return (Integer) value;
+        try {
+            return Integer.valueOf(String.valueOf(value).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + value + "' is not a number.");
+        }
+    }
+}
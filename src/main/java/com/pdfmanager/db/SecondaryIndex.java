@@ -0,0 +1,72 @@
+package com.pdfmanager.db;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Index from the value of one field to the keys of the entries that have it.
+ * Kept up to date as a listener of the catalog it indexes.
+ * @param <T> The class stored in the catalog.
+ */
+public abstract class SecondaryIndex<T> implements CatalogListener<T> {
+    private final Function<T, String> keyOf;
+    private final Function<T, ?> field;
+
+    protected SecondaryIndex(Function<T, String> keyOf, Function<T, ?> field) {
+        this.keyOf = keyOf;
+        this.field = field;
+    }
+
+    /**
+     * @param condition A condition on the indexed field.
+     * @return An estimate of the number of entries matching the condition, used to pick the index
+     *         that narrows a query the most.
+     */
+    public abstract int estimate(Condition condition);
+
+    /**
+     * @param condition A condition on the indexed field.
+     * @return The keys of the entries matching the condition.
+     */
+    public abstract Set<String> keys(Condition condition);
+
+    /**
+     * Tests an entry against a condition on the indexed field, without using the index.
+     * @param entry The entry.
+     * @param condition A condition on the indexed field.
+     * @return <i>true</i> if the entry matches.
+     */
+    public abstract boolean test(T entry, Condition condition);
+
+    protected abstract void add(Object value, String key);
+
+    protected abstract void remove(Object value, String key);
+
+    protected abstract void clear();
+
+    protected Object valueOf(T entry) {
+        return field.apply(entry);
+    }
+
+    @Override
+    public synchronized void entryPut(T previous, T entry) {
+        if (previous != null) {
+            remove(valueOf(previous), keyOf.apply(previous));
+        }
+        add(valueOf(entry), keyOf.apply(entry));
+    }
+
+    @Override
+    public synchronized void entryRemoved(T entry) {
+        remove(valueOf(entry), keyOf.apply(entry));
+    }
+
+    @Override
+    public synchronized void reloaded(Collection<? extends T> entries) {
+        clear();
+        for (T entry : entries) {
+            add(valueOf(entry), keyOf.apply(entry));
+        }
+    }
+}
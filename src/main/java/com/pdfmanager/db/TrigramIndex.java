@@ -0,0 +1,261 @@
+package com.pdfmanager.db;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the trigrams (groups of 3 consecutive characters) of a set of strings, used to find the
+ * strings most similar to a mistyped one.
+ * <p>
+ * A typo only changes the few trigrams around it, so a string that shares at least half of its
+ * trigrams with the query is a candidate. By the pigeonhole principle, such a string appears in at
+ * least one of the posting lists of the rarest trigrams of the query, so only those short lists are
+ * read. The shared trigrams of each candidate are then counted by binary search in the other (sorted)
+ * lists, and the candidates are ranked by their Dice similarity with the query.
+ * Comparisons ignore case, accents and repeated spaces.
+ */
+public class TrigramIndex {
+    // Fraction of the trigrams of the query a candidate must share
+    private static final double MIN_SHARED = 0.5;
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    // Indexed by id; removed strings leave a null
+    private String[] values = new String[16];
+    private String[] normalized = new String[16];
+    private int[] references = new int[16];
+    // Number of distinct trigrams of each string
+    private int[] sizes = new int[16];
+    // Trigrams of the query found in the rarest lists, by id; reused between searches
+    private int[] counts = new int[16];
+    private int nextId;
+    private final Map<String, Integer> idsByValue = new HashMap<>();
+    private final Map<Long, PostingList> postings = new HashMap<>();
+
+    /**
+     * Adds a string. A string added more than once must be removed as many times.
+     * @param value The string.
+     */
+    public synchronized void add(String value) {
+        if (value == null || value.isBlank()) return;
+        Integer existing = idsByValue.get(value);
+        if (existing != null) {
+            references[existing]++;
+            return;
+        }
+        int id = nextId++;
+        if (id == values.length) {
+            values = Arrays.copyOf(values, id * 2);
+            normalized = Arrays.copyOf(normalized, id * 2);
+            references = Arrays.copyOf(references, id * 2);
+            sizes = Arrays.copyOf(sizes, id * 2);
+            counts = Arrays.copyOf(counts, id * 2);
+        }
+        values[id] = value;
+        normalized[id] = normalize(value);
+        references[id] = 1;
+        idsByValue.put(value, id);
+        long[] trigrams = trigrams(normalized[id]);
+        sizes[id] = trigrams.length;
+        for (long trigram : trigrams) {
+            postings.computeIfAbsent(trigram, t -> new PostingList()).add(id);
+        }
+    }
+
+    /**
+     * Removes one occurrence of a string.
+     * @param value The string.
+     */
+    public synchronized void remove(String value) {
+        if (value == null) return;
+        Integer id = idsByValue.get(value);
+        if (id == null || --references[id] > 0) return;
+        idsByValue.remove(value);
+        String text = normalized[id];
+        values[id] = null;
+        normalized[id] = null;
+        for (long trigram : trigrams(text)) {
+            PostingList list = postings.get(trigram);
+            if (list == null) continue;
+            // The id stays in the list until it is purged
+            list.dead++;
+            if (list.size == list.dead) {
+                postings.remove(trigram);
+            } else if (list.dead > list.size / 2) {
+                list.purge(values);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        values = new String[16];
+        normalized = new String[16];
+        references = new int[16];
+        sizes = new int[16];
+        counts = new int[16];
+        nextId = 0;
+        idsByValue.clear();
+        postings.clear();
+    }
+
+    /**
+     * @param value The string.
+     * @return <i>true</i> if the exact string is in the index.
+     */
+    public synchronized boolean contains(String value) {
+        return idsByValue.containsKey(value);
+    }
+
+    /**
+     * Returns the strings most similar to a query.
+     * @param query The (possibly mistyped) string.
+     * @param limit The maximum number of results.
+     * @return The best matches, most similar first.
+     */
+    public synchronized List<Match> search(String query, int limit) {
+        List<Match> matches = new ArrayList<>();
+        String text = normalize(query);
+        long[] queryTrigrams = trigrams(text);
+        if (queryTrigrams.length == 0 || limit <= 0) return matches;
+
+        // Posting lists of the query trigrams, rarest first
+        List<PostingList> lists = new ArrayList<>();
+        for (long trigram : queryTrigrams) {
+            PostingList list = postings.get(trigram);
+            if (list != null) lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        int required = Math.max(1, (int) Math.ceil(queryTrigrams.length * MIN_SHARED));
+        // Trigrams missing from the index cannot be shared, so the candidates are in the rarest of the others
+        int scanned = lists.size() - required + 1;
+        if (scanned <= 0) return matches;
+
+        PostingList candidates = new PostingList();
+        for (int i = 0; i < scanned; i++) {
+            PostingList list = lists.get(i);
+            for (int j = 0; j < list.size; j++) {
+                int id = list.ids[j];
+                if (counts[id]++ == 0) {
+                    candidates.add(id);
+                }
+            }
+        }
+
+        Comparator<Match> order = Comparator.comparingDouble(Match::getScore)
+                .thenComparing(Match::getValue, Comparator.reverseOrder());
+        PriorityQueue<Match> best = new PriorityQueue<>(order);
+        for (int c = 0; c < candidates.size; c++) {
+            int id = candidates.ids[c];
+            int shared = counts[id];
+            counts[id] = 0;
+            // Upper bound of the similarity, if the candidate had every other trigram of the query
+            int possible = shared + lists.size() - scanned;
+            // Removed strings stay in the lists until they are purged
+            if (possible < required || values[id] == null) continue;
+            if (best.size() == limit && 2.0 * possible / (queryTrigrams.length + sizes[id]) < best.peek().getScore()) continue;
+            for (int i = scanned; i < lists.size() && shared + lists.size() - i >= required; i++) {
+                if (lists.get(i).contains(id)) shared++;
+            }
+            if (shared < required) continue;
+            double score = 2.0 * shared / (queryTrigrams.length + sizes[id]);
+            best.add(new Match(values[id], score));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        matches.addAll(best);
+        matches.sort(order.reversed());
+        return matches;
+    }
+
+    static String normalize(String value) {
+        String text = ACCENTS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+        return SPACES.matcher(text.trim().toLowerCase(Locale.ROOT)).replaceAll(" ");
+    }
+
+    /**
+     * The distinct trigrams of a normalized string, padded so the first letters also form trigrams,
+     * each packed into a long (16 bits per character).
+     */
+    private static long[] trigrams(String text) {
+        if (text.isEmpty()) return new long[0];
+        String padded = "  " + text + " ";
+        long[] trigrams = new long[padded.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            long packed = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+            // Long.hashCode folds the halves together, which makes most packed trigrams collide. Multiplying
+            // by an odd constant is reversible, so trigrams stay distinct, and spreads them over all the bits
+            trigrams[i] = packed * 0x9E3779B97F4A7C15L;
+        }
+        // Sorted without repetitions
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (distinct == 0 || trigrams[i] != trigrams[distinct - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    /**
+     * An indexed string and its similarity with the query, from 0 to 1.
+     */
+    public static class Match {
+        private final String value;
+        private final double score;
+
+        public Match(String value, double score) {
+            this.value = value;
+            this.score = score;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * The ids of the strings that contain a trigram, in ascending order.
+     */
+    private static class PostingList {
+        private int[] ids = new int[4];
+        private int size;
+        // Ids of removed strings still in the list
+        private int dead;
+
+        private void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        private boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void purge(String[] values) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (values[ids[i]] != null) {
+                    ids[kept++] = ids[i];
+                }
+            }
+            size = kept;
+            dead = 0;
+        }
+    }
+}
@@ -6,6 +6,14 @@ public class Document {
     protected String title;
     protected List<String> authors;
     protected String path;
+    // SHA-256 of the content of the file, in hexadecimal
+    protected String contentHash;
+    // Size of the file in bytes when it was placed in the library, 0 if unknown
+    protected long contentSize;
+    // True while the file is still being copied to the library in the background
+    protected boolean pending;
+    // BibTeX citation key, assigned on the first export and kept afterwards
+    protected String citationKey;
 
     public Document() { }
 
@@ -39,6 +47,38 @@ public class Document {
         this.path = path;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public long getContentSize() {
+        return contentSize;
+    }
+
+    public void setContentSize(long contentSize) {
+        this.contentSize = contentSize;
+    }
+
+    public boolean isPending() {
+        return pending;
+    }
+
+    public void setPending(boolean pending) {
+        this.pending = pending;
+    }
+
+    public String getCitationKey() {
+        return citationKey;
+    }
+
+    public void setCitationKey(String citationKey) {
+        this.citationKey = citationKey;
+    }
+
     @Override
     public String toString() {
         return "Document{" +
@@ -0,0 +1,332 @@
+package com.pdfmanager.search;
+
+import com.pdfmanager.files.Book;
+import com.pdfmanager.files.Document;
+import com.pdfmanager.files.DocumentType;
+import com.pdfmanager.files.Slide;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Full-text search over the contents of the PDFs of the library.
+ * <p>
+ * The text of each document is extracted after it is added to the database and kept in an
+ * {@link InvertedIndex}. Extraction is CPU bound, so batches of documents are extracted in parallel
+ * on one thread per core and then added to the index at once.
+ * <p>
+ * Documents added or removed through {@link #submit} and {@link #remove} are indexed in the background,
+ * so writing the database never waits for a PDF to be parsed. Changes wait in a queue with one slot per
+ * document, in the order they were made: a document changed again before it is indexed keeps its slot,
+ * so the queue never holds more than the documents of the library, and a removal is never overtaken by
+ * an earlier addition of the same document. Searches see a document once it is indexed.
+ * <p>
+ * A batch that cannot be written to the index is queued again and retried a few times. If it still
+ * fails, its changes are dropped and the index is marked as incomplete, with a <i>.stale</i> file next
+ * to it, until the next {@link #rebuild}.
+ */
+public class FullTextSearch {
+    // Number of documents extracted before they are added to the index, to bound the memory used
+    private static final int BATCH_SIZE = 256;
+    // Attempts to write a batch before its changes are dropped, and the pause after the first failure
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final InvertedIndex index;
+    // Exists while changes are missing from the index, so that it is known to need a rebuild
+    private final File staleFile;
+    private final Function<Document, File> locator;
+    private final TextExtractor extractor = new TextExtractor();
+
+    // Changes not yet indexed, by document key: the document to index, or null to remove it. Guarded by itself
+    private final Map<String, Document> queue = new LinkedHashMap<>();
+    // Changes taken from the queue and being indexed. Guarded by 'queue'
+    private int inProgress;
+    private Thread worker;
+
+    /**
+     * @param indexFile The file where the index is kept.
+     * @param locator Returns the PDF file of a document.
+     */
+    public FullTextSearch(File indexFile, Function<Document, File> locator) {
+        this.index = new InvertedIndex(indexFile);
+        String name = indexFile.getName();
+        int dot = name.lastIndexOf('.');
+        this.staleFile = new File(indexFile.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".stale");
+        this.locator = locator;
+    }
+
+    /**
+     * Queues documents to be indexed in the background, replacing older versions. Returns at once.
+     * @param documents The documents to be indexed.
+     */
+    public void submit(List<? extends Document> documents) {
+        if (documents.isEmpty()) return;
+        synchronized (queue) {
+            for (Document document : documents) {
+                queue.put(keyOf(typeOf(document), document.getTitle()), document);
+            }
+            start();
+            queue.notifyAll();
+        }
+    }
+
+    /**
+     * Queues the removal of a document from the index, after the changes queued before it. Returns at once.
+     * @param type The type of the document.
+     * @param title The title of the document.
+     */
+    public void remove(DocumentType type, String title) {
+        synchronized (queue) {
+            queue.put(keyOf(type, title), null);
+            start();
+            queue.notifyAll();
+        }
+    }
+
+    /**
+     * @return The number of documents waiting to be indexed or removed.
+     */
+    public int pending() {
+        synchronized (queue) {
+            return queue.size() + inProgress;
+        }
+    }
+
+    /**
+     * Waits until every queued change is in the index.
+     */
+    public void awaitIndexed() {
+        synchronized (queue) {
+            try {
+                while (!queue.isEmpty() || inProgress > 0) {
+                    queue.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Extracts the text of documents and adds them to the index, replacing older versions, on the calling thread.
+     * Documents whose PDF is missing are skipped, and unreadable PDFs are reported and skipped.
+     * @param documents The documents to be indexed.
+     * @return The number of documents indexed.
+     * @throws IOException Might throw an exception if unable to write the index.
+     */
+    public int index(List<? extends Document> documents) throws IOException {
+        int indexed = 0;
+        for (int start = 0; start < documents.size(); start += BATCH_SIZE) {
+            List<InvertedIndex.Entry> entries = analyze(documents.subList(start, Math.min(documents.size(), start + BATCH_SIZE)));
+            index.addAll(entries);
+            indexed += entries.size();
+        }
+        return indexed;
+    }
+
+    /**
+     * Rebuilds the whole index from the given documents.
+     * @param documents Every document of the library.
+     * @return The number of documents indexed.
+     * @throws IOException Might throw an exception if unable to write the index.
+     */
+    public int rebuild(List<? extends Document> documents) throws IOException {
+        synchronized (queue) {
+            // Every document is indexed again below
+            queue.clear();
+        }
+        index.replaceAll(new ArrayList<>());
+        int indexed = index(documents);
+        index.compact();
+        if (staleFile.exists() && !staleFile.delete()) {
+            System.err.println("WARNING: Unable to delete '" + staleFile.getName() + "'.");
+        }
+        return indexed;
+    }
+
+    /**
+     * @return <i>true</i> if changes were dropped after failing to be written, so the index must be rebuilt.
+     */
+    public boolean needsRebuild() {
+        return staleFile.exists();
+    }
+
+    /**
+     * Searches the text of the documents. See {@link InvertedIndex#search(String, DocumentType, int)}.
+     */
+    public List<SearchHit> search(String query, DocumentType type, int limit) throws IOException {
+        return index.search(query, type, limit);
+    }
+
+    /**
+     * @return The number of indexed documents.
+     * @throws IOException Might throw an exception if unable to read the index.
+     */
+    public int size() throws IOException {
+        return index.size();
+    }
+
+    public void compact() throws IOException {
+        index.compact();
+    }
+
+    public static DocumentType typeOf(Document document) {
+        if (document instanceof Book) return DocumentType.BOOK;
+        if (document instanceof Slide) return DocumentType.SLIDE;
+        return DocumentType.CLASS_NOTE;
+    }
+
+    /**
+     * Starts the background thread if it is not running. Must be called while holding the queue.
+     */
+    private void start() {
+        if (worker != null) return;
+        worker = new Thread(this::drain, "fulltext-index");
+        // Queued documents never keep the program alive; awaitIndexed() waits for them on quit
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Indexes the queued changes, a batch at a time, until the program ends.
+     */
+    private void drain() {
+        // Failed attempts of the batch at the head of the queue
+        int failures = 0;
+        while (true) {
+            Map<String, Document> batch = new LinkedHashMap<>();
+            synchronized (queue) {
+                while (queue.isEmpty()) {
+                    try {
+                        queue.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                Iterator<Map.Entry<String, Document>> changes = queue.entrySet().iterator();
+                while (changes.hasNext() && batch.size() < BATCH_SIZE) {
+                    Map.Entry<String, Document> change = changes.next();
+                    batch.put(change.getKey(), change.getValue());
+                    changes.remove();
+                }
+                inProgress = batch.size();
+            }
+
+            boolean retry = false;
+            try {
+                List<Document> additions = new ArrayList<>();
+                for (Map.Entry<String, Document> change : batch.entrySet()) {
+                    if (change.getValue() != null) {
+                        additions.add(change.getValue());
+                    } else {
+                        int slash = change.getKey().indexOf('/');
+                        index.remove(DocumentType.valueOf(change.getKey().substring(0, slash)),
+                                change.getKey().substring(slash + 1));
+                    }
+                }
+                // Each key is in the batch once, so the removals and additions do not depend on each other
+                index(additions);
+                failures = 0;
+            } catch (IOException | RuntimeException e) {
+                failures++;
+                retry = failures < MAX_ATTEMPTS;
+                if (retry) {
+                    System.err.println("WARNING: Failed to update the full-text index, retrying: " + e.getMessage());
+                } else {
+                    System.err.println("ERROR: Failed to update the full-text index, " + batch.size()
+                            + " changes were dropped and the index must be rebuilt: " + e.getMessage());
+                    markStale();
+                    failures = 0;
+                }
+            } finally {
+                synchronized (queue) {
+                    if (retry) requeue(batch);
+                    inProgress = 0;
+                    queue.notifyAll();
+                }
+            }
+            if (retry) {
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS * failures);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts the changes of a failed batch back at the head of the queue. A document changed again since
+     * the batch was taken keeps its newer change. Must be called while holding the queue.
+     */
+    private void requeue(Map<String, Document> batch) {
+        Map<String, Document> newer = new LinkedHashMap<>(queue);
+        queue.clear();
+        queue.putAll(batch);
+        queue.putAll(newer);
+    }
+
+    private void markStale() {
+        try {
+            staleFile.createNewFile();
+        } catch (IOException e) {
+            System.err.println("WARNING: Unable to create '" + staleFile.getName() + "': " + e.getMessage());
+        }
+    }
+
+    private static String keyOf(DocumentType type, String title) {
+        return type.name() + '/' + title;
+    }
+
+    private List<InvertedIndex.Entry> analyze(List<? extends Document> documents) throws IOException {
+        List<InvertedIndex.Entry> entries = new ArrayList<>();
+        if (documents.size() == 1) {
+            InvertedIndex.Entry entry = analyze(documents.get(0));
+            if (entry != null) entries.add(entry);
+            return entries;
+        }
+
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), documents.size()));
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<InvertedIndex.Entry>> futures = new ArrayList<>();
+            for (Document document : documents) {
+                futures.add(executor.submit(() -> analyze(document)));
+            }
+            for (Future<InvertedIndex.Entry> future : futures) {
+                InvertedIndex.Entry entry = future.get();
+                if (entry != null) entries.add(entry);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing documents.", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        return entries;
+    }
+
+    /**
+     * @return The analyzed document, or <i>null</i> if its PDF could not be read.
+     */
+    private InvertedIndex.Entry analyze(Document document) {
+        File pdf = locator.apply(document);
+        if (pdf == null || !pdf.isFile()) return null;
+        try {
+            return InvertedIndex.analyze(typeOf(document), document.getTitle(), extractor.extract(pdf));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("WARNING: Could not read the text of '" + document.getTitle() + "': " + e.getMessage());
+            return null;
+        }
+    }
+}
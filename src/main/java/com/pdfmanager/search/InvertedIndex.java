@@ -0,0 +1,820 @@
+package com.pdfmanager.search;
+
+import com.pdfmanager.db.AtomicFileWriter;
+import com.pdfmanager.files.DocumentType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent inverted index of the text of the documents, ranked with BM25.
+ * <p>
+ * For each term the index keeps the documents that contain it and the positions of the term in each
+ * document, so quoted phrases can be matched. The whole index lives in memory; on disk it is a binary
+ * snapshot plus a journal of the documents added or removed since the snapshot was written, which is
+ * folded into a new snapshot once it grows (the same scheme used by the database journals). Writing a
+ * snapshot also renumbers the documents, so the ids left unused by removed documents do not make
+ * every search slower.
+ * <p>
+ * As with the database files, changes are serialized across processes by an advisory lock on a
+ * <i>.lock</i> file next to the index. Under that lock, the index is first brought up to date with
+ * what other processes wrote: records they appended to the journal are replayed, and a new snapshot
+ * is loaded again. Reads check the files too, so every process sees the changes of the others.
+ */
+public class InvertedIndex {
+    private static final int MAGIC = 0x50444649; // "PDFI"
+    private static final int VERSION = 1;
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    // Minimum number of journal records before the snapshot is rewritten
+    private static final int COMPACTION_THRESHOLD = 1000;
+    // BM25 parameters, with the usual values
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final Pattern PHRASE = Pattern.compile("\"([^\"]*)\"");
+    // File locks are held by the whole JVM, so indexes of the same file in this process take turns here first
+    private static final Map<String, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final File journalFile;
+    private final File lockFile;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // The fields below are guarded by 'lock'
+    private boolean loaded;
+    // Size and modification time of the snapshot and of the journal when they were last read or written
+    private long snapshotSize = -1;
+    private long snapshotModified = -1;
+    private long journalSize = -1;
+    private long journalModified = -1;
+    private final Map<String, Integer> idsByKey = new HashMap<>();
+    // Indexed by document id; removed documents leave a null
+    private DocInfo[] docs = new DocInfo[16];
+    private int docCount;
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private long totalLength;
+    private int nextId;
+    private int journalRecords;
+
+    /**
+     * @param file The snapshot file. The journal is kept next to it, with the <i>.journal</i> extension.
+     */
+    public InvertedIndex(File file) {
+        this.file = file;
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        this.journalFile = new File(file.getParentFile(), base + ".journal");
+        this.lockFile = new File(file.getParentFile(), base + ".lock");
+    }
+
+    /**
+     * Splits the text of a document into terms and their positions. Does not touch the index, so it
+     * can run on many documents in parallel before they are added with {@link #addAll(List)}.
+     * @param type The type of the document.
+     * @param title The title of the document.
+     * @param text The text of the document.
+     * @return The analyzed document.
+     */
+    public static Entry analyze(DocumentType type, String title, String text) {
+        List<String> tokens = Tokenizer.tokenize(text);
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            positions.computeIfAbsent(tokens.get(i), t -> new ArrayList<>()).add(i);
+        }
+        Map<String, int[]> terms = new LinkedHashMap<>();
+        positions.forEach((term, list) -> terms.put(term, list.stream().mapToInt(Integer::intValue).toArray()));
+        return new Entry(type, title, tokens.size(), terms);
+    }
+
+    /**
+     * Adds documents to the index, replacing the documents of the same type and title.
+     * @param entries The analyzed documents.
+     * @throws IOException Might throw an exception if unable to write the index.
+     */
+    public void addAll(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Entry entry : entries) {
+            writeAdd(out, entry);
+        }
+        out.flush();
+
+        mutate(true, () -> {
+            for (Entry entry : entries) {
+                apply(entry);
+            }
+            journal(bytes.toByteArray(), entries.size());
+        });
+    }
+
+    /**
+     * Removes a document from the index. Does nothing if the document is not indexed.
+     * @param type The type of the document.
+     * @param title The title of the document.
+     * @throws IOException Might throw an exception if unable to write the index.
+     */
+    public void remove(DocumentType type, String title) throws IOException {
+        mutate(true, () -> {
+            if (!unapply(keyOf(type, title))) return;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(REMOVE);
+            out.writeByte(type.ordinal());
+            writeString(out, title);
+            out.flush();
+            journal(bytes.toByteArray(), 1);
+        });
+    }
+
+    /**
+     * Replaces the whole content of the index and writes a new snapshot.
+     * @param entries The analyzed documents.
+     * @throws IOException Might throw an exception if unable to write the index.
+     */
+    public void replaceAll(List<Entry> entries) throws IOException {
+        mutate(false, () -> {
+            clear();
+            loaded = true;
+            for (Entry entry : entries) {
+                apply(entry);
+            }
+            writeSnapshot();
+        });
+    }
+
+    /**
+     * Searches the index. Every word of the query contributes to the score of the documents that
+     * contain it (BM25), and phrases between double quotes must appear in the document as written.
+     * @param query The query, e.g. <i>dijkstra "shortest path"</i>.
+     * @param type Only documents of this type are returned, or every type if <i>null</i>.
+     * @param limit The maximum number of results.
+     * @return The best results, most relevant first.
+     * @throws IOException Might throw an exception if unable to read the index.
+     */
+    public List<SearchHit> search(String query, DocumentType type, int limit) throws IOException {
+        List<List<String>> phrases = new ArrayList<>();
+        Matcher matcher = PHRASE.matcher(query);
+        while (matcher.find()) {
+            List<String> phrase = Tokenizer.tokenize(matcher.group(1));
+            if (phrase.size() > 1) {
+                phrases.add(phrase);
+            }
+        }
+        Set<String> terms = new LinkedHashSet<>(Tokenizer.tokenize(query));
+        if (terms.isEmpty() || limit <= 0) return new ArrayList<>();
+
+        readLocked();
+        try {
+            if (docCount == 0) return new ArrayList<>();
+            double averageLength = Math.max(1.0, (double) totalLength / docCount);
+            // Scores indexed by document id, plus the ids that got any score
+            double[] scores = new double[nextId];
+            int[] matched = new int[16];
+            int matchedCount = 0;
+            for (String term : terms) {
+                PostingList list = postings.get(term);
+                if (list == null) continue;
+                int df = list.live();
+                double idf = Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int id = list.ids[i];
+                    DocInfo doc = docs[id];
+                    if (doc == null || (type != null && doc.type != type)) continue;
+                    int tf = list.frequency(i);
+                    double norm = K1 * (1 - B + B * doc.length / averageLength);
+                    if (scores[id] == 0) {
+                        if (matchedCount == matched.length) {
+                            matched = Arrays.copyOf(matched, matchedCount * 2);
+                        }
+                        matched[matchedCount++] = id;
+                    }
+                    scores[id] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+
+            // Keeps the best 'limit' documents, with the worst of them at the head
+            Comparator<SearchHit> order = Comparator.comparingDouble(SearchHit::getScore)
+                    .thenComparing(SearchHit::getTitle, Comparator.reverseOrder());
+            PriorityQueue<SearchHit> best = new PriorityQueue<>(order);
+            for (int i = 0; i < matchedCount; i++) {
+                int id = matched[i];
+                if (best.size() == limit && scores[id] < best.peek().getScore()) continue;
+                if (!containsPhrases(id, phrases)) continue;
+                DocInfo doc = docs[id];
+                best.add(new SearchHit(doc.type, doc.title, scores[id]));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            List<SearchHit> hits = new ArrayList<>(best);
+            hits.sort(order.reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param type The type of the document.
+     * @param title The title of the document.
+     * @return <i>true</i> if the document is indexed.
+     * @throws IOException Might throw an exception if unable to read the index.
+     */
+    public boolean contains(DocumentType type, String title) throws IOException {
+        readLocked();
+        try {
+            return idsByKey.containsKey(keyOf(type, title));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of indexed documents.
+     * @throws IOException Might throw an exception if unable to read the index.
+     */
+    public int size() throws IOException {
+        readLocked();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes every journal record to the snapshot and empties the journal.
+     * @throws IOException Might throw an exception if unable to write the index.
+     */
+    public void compact() throws IOException {
+        mutate(true, () -> {
+            if (journalRecords == 0) return;
+            writeSnapshot();
+        });
+    }
+
+    /**
+     * Takes the read lock, loading the index first if it is not loaded or other processes changed it.
+     */
+    private void readLocked() throws IOException {
+        lock.readLock().lock();
+        if (loaded && !isStale()) return;
+        lock.readLock().unlock();
+        // Loaded under the file lock, so a record being appended by another process is never half read
+        withFileLock(() -> {
+            lock.writeLock().lock();
+            try {
+                load();
+                // Downgrades to the read lock without letting a writer in between
+                lock.readLock().lock();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Changes the index while holding the write lock and the lock of its files.
+     * @param load If <i>true</i>, what other processes wrote is loaded before the change.
+     * @param change The change, which writes the journal or the snapshot itself.
+     */
+    private void mutate(boolean load, Locked change) throws IOException {
+        withFileLock(() -> {
+            lock.writeLock().lock();
+            try {
+                if (load) {
+                    load();
+                }
+                change.run();
+            } catch (IOException | RuntimeException e) {
+                // The memory may hold changes that were not written, so the files are read again
+                loaded = false;
+                throw e;
+            } finally {
+                stamp();
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private void withFileLock(Locked action) throws IOException {
+        ReentrantLock processLock = PROCESS_LOCKS.computeIfAbsent(lockFile.getAbsolutePath(), path -> new ReentrantLock());
+        processLock.lock();
+        try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            action.run();
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    private boolean isStale() {
+        return file.length() != snapshotSize || file.lastModified() != snapshotModified
+                || journalFile.length() != journalSize || journalFile.lastModified() != journalModified;
+    }
+
+    private void stamp() {
+        snapshotSize = file.length();
+        snapshotModified = file.lastModified();
+        journalSize = journalFile.length();
+        journalModified = journalFile.lastModified();
+    }
+
+    private boolean containsPhrases(int id, List<List<String>> phrases) {
+        for (List<String> phrase : phrases) {
+            int[][] positions = new int[phrase.size()][];
+            for (int i = 0; i < phrase.size(); i++) {
+                PostingList list = postings.get(phrase.get(i));
+                positions[i] = list == null ? null : list.positionsOf(id);
+                if (positions[i] == null) return false;
+            }
+            boolean found = false;
+            for (int start : positions[0]) {
+                int i = 1;
+                while (i < positions.length && Arrays.binarySearch(positions[i], start + i) >= 0) {
+                    i++;
+                }
+                if (i == positions.length) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private void apply(Entry entry) {
+        String key = keyOf(entry.type, entry.title);
+        unapply(key);
+        int id = nextId++;
+        PostingList[] lists = new PostingList[entry.terms.size()];
+        int i = 0;
+        for (Map.Entry<String, int[]> term : entry.terms.entrySet()) {
+            PostingList list = postings.computeIfAbsent(term.getKey(), PostingList::new);
+            list.add(id, term.getValue());
+            lists[i++] = list;
+        }
+        idsByKey.put(key, id);
+        store(id, new DocInfo(entry.type, entry.title, entry.length, lists));
+    }
+
+    private void store(int id, DocInfo doc) {
+        if (id >= docs.length) {
+            docs = Arrays.copyOf(docs, Math.max(id + 1, docs.length * 2));
+        }
+        docs[id] = doc;
+        docCount++;
+        totalLength += doc.length;
+    }
+
+    private boolean unapply(String key) {
+        Integer id = idsByKey.remove(key);
+        if (id == null) return false;
+        DocInfo doc = docs[id];
+        docs[id] = null;
+        docCount--;
+        totalLength -= doc.length;
+        for (PostingList list : doc.lists) {
+            // The postings of removed documents stay in the list until it is purged
+            list.dead++;
+            if (list.live() == 0) {
+                postings.remove(list.term);
+            } else if (list.dead > list.size / 2) {
+                list.purge(docs, null);
+            }
+        }
+        return true;
+    }
+
+    private void clear() {
+        idsByKey.clear();
+        docs = new DocInfo[16];
+        docCount = 0;
+        postings.clear();
+        totalLength = 0;
+        nextId = 0;
+    }
+
+    /**
+     * Appends records to the journal, and folds the journal into a new snapshot once it is large.
+     */
+    private void journal(byte[] records, int count) throws IOException {
+        AtomicFileWriter.append(journalFile, records);
+        journalRecords += count;
+        if (journalRecords >= Math.max(COMPACTION_THRESHOLD, docCount / 2)) {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Reads the snapshot and replays the journal, if not done yet or if other processes changed them.
+     * If only the journal grew, just the new records are replayed. Must be called while holding the
+     * write lock and the lock of the files.
+     */
+    private void load() throws IOException {
+        if (loaded && !isStale()) return;
+        if (loaded && file.length() == snapshotSize && file.lastModified() == snapshotModified
+                && journalFile.length() > journalSize) {
+            replayJournal(journalSize);
+            stamp();
+            return;
+        }
+        loaded = false;
+        clear();
+        if (file.exists()) {
+            readSnapshot();
+        }
+        journalRecords = 0;
+        if (journalFile.exists()) {
+            replayJournal(0);
+        }
+        stamp();
+        loaded = true;
+    }
+
+    private void writeSnapshot() throws IOException {
+        renumber();
+        AtomicFileWriter.write(file, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeVarInt(out, nextId);
+            writeVarInt(out, docCount);
+            for (int id = 0; id < nextId; id++) {
+                DocInfo doc = docs[id];
+                if (doc == null) continue;
+                writeVarInt(out, id);
+                out.writeByte(doc.type.ordinal());
+                writeString(out, doc.title);
+                writeVarInt(out, doc.length);
+            }
+            writeVarInt(out, postings.size());
+            for (PostingList list : postings.values()) {
+                writeString(out, list.term);
+                writeVarInt(out, list.live());
+                // Ids are ascending, so they are written as small deltas
+                int previous = 0;
+                for (int i = 0; i < list.size; i++) {
+                    int id = list.ids[i];
+                    if (docs[id] == null) continue;
+                    writeVarInt(out, id - previous);
+                    previous = id;
+                    writePositions(out, list.positions, list.starts[i], list.starts[i + 1]);
+                }
+            }
+            out.flush();
+        });
+        AtomicFileWriter.truncate(journalFile);
+        journalRecords = 0;
+    }
+
+    /**
+     * Gives the documents consecutive ids from 0, in the same order, and drops the postings of removed
+     * documents, so the arrays indexed by id are only as large as the number of documents.
+     */
+    private void renumber() {
+        if (nextId == docCount) return;
+        int[] newIds = new int[nextId];
+        DocInfo[] renumbered = new DocInfo[Math.max(16, docCount)];
+        int next = 0;
+        for (int id = 0; id < nextId; id++) {
+            if (docs[id] != null) {
+                newIds[id] = next;
+                renumbered[next++] = docs[id];
+            }
+        }
+        for (PostingList list : postings.values()) {
+            list.purge(docs, newIds);
+        }
+        idsByKey.replaceAll((key, id) -> newIds[id]);
+        docs = renumbered;
+        nextId = next;
+    }
+
+    private void readSnapshot() throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("'" + file.getName() + "' is not a full-text index.");
+            }
+            nextId = readVarInt(in);
+            docs = new DocInfo[Math.max(16, nextId)];
+            int count = readVarInt(in);
+            for (int i = 0; i < count; i++) {
+                int id = readVarInt(in);
+                DocInfo doc = new DocInfo(DocumentType.values()[in.get()], readString(in), readVarInt(in), null);
+                store(id, doc);
+                idsByKey.put(keyOf(doc.type, doc.title), id);
+            }
+
+            // Number of distinct terms of each document, to size their arrays of lists
+            int[] termCounts = new int[docs.length];
+            int termCount = readVarInt(in);
+            for (int i = 0; i < termCount; i++) {
+                PostingList list = new PostingList(readString(in));
+                int df = readVarInt(in);
+                int id = 0;
+                for (int j = 0; j < df; j++) {
+                    id += readVarInt(in);
+                    list.read(id, in);
+                    termCounts[id]++;
+                }
+                postings.put(list.term, list);
+            }
+            for (int id = 0; id < docs.length; id++) {
+                if (docs[id] != null) {
+                    docs[id].lists = new PostingList[termCounts[id]];
+                    termCounts[id] = 0;
+                }
+            }
+            for (PostingList list : postings.values()) {
+                for (int i = 0; i < list.size; i++) {
+                    int id = list.ids[i];
+                    docs[id].lists[termCounts[id]++] = list;
+                }
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NullPointerException e) {
+            clear();
+            throw new IOException("'" + file.getName() + "' is damaged, rebuild the full-text index.", e);
+        }
+    }
+
+    /**
+     * Replays the records of the journal from a given offset.
+     */
+    private void replayJournal(long offset) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ)) {
+            in = ByteBuffer.allocate((int) Math.max(0, channel.size() - offset));
+            while (in.hasRemaining() && channel.read(in, offset + in.position()) >= 0) {
+                // Reads until the end of the file
+            }
+            in.flip();
+        }
+        while (in.hasRemaining()) {
+            try {
+                byte op = in.get();
+                DocumentType type = DocumentType.values()[in.get()];
+                String title = readString(in);
+                if (op == ADD) {
+                    int length = readVarInt(in);
+                    int termCount = readVarInt(in);
+                    Map<String, int[]> terms = new LinkedHashMap<>();
+                    for (int i = 0; i < termCount; i++) {
+                        terms.put(readString(in), readPositions(in));
+                    }
+                    apply(new Entry(type, title, length, terms));
+                } else {
+                    unapply(keyOf(type, title));
+                }
+                journalRecords++;
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                // Left by a crash in the middle of an append
+                System.err.println("WARNING: Ignoring damaged record in '" + journalFile.getName() + "'.");
+                break;
+            }
+        }
+    }
+
+    private static void writeAdd(DataOutputStream out, Entry entry) throws IOException {
+        out.writeByte(ADD);
+        out.writeByte(entry.type.ordinal());
+        writeString(out, entry.title);
+        writeVarInt(out, entry.length);
+        writeVarInt(out, entry.terms.size());
+        for (Map.Entry<String, int[]> term : entry.terms.entrySet()) {
+            writeString(out, term.getKey());
+            writePositions(out, term.getValue(), 0, term.getValue().length);
+        }
+    }
+
+    private static void writePositions(DataOutput out, int[] positions, int from, int to) throws IOException {
+        writeVarInt(out, to - from);
+        int previous = 0;
+        for (int i = from; i < to; i++) {
+            writeVarInt(out, positions[i] - previous);
+            previous = positions[i];
+        }
+    }
+
+    private static int[] readPositions(ByteBuffer in) throws IOException {
+        int[] positions = new int[readVarInt(in)];
+        int previous = 0;
+        for (int i = 0; i < positions.length; i++) {
+            previous += readVarInt(in);
+            positions[i] = previous;
+        }
+        return positions;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = readVarInt(in);
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Writes a non-negative int in 1 to 5 bytes, 7 bits at a time.
+     */
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed number in the full-text index.");
+    }
+
+    private static String keyOf(DocumentType type, String title) {
+        return type.name() + '/' + title;
+    }
+
+    @FunctionalInterface
+    private interface Locked {
+        void run() throws IOException;
+    }
+
+    /**
+     * A document split into terms, ready to be added to the index.
+     */
+    public static class Entry {
+        private final DocumentType type;
+        private final String title;
+        private final int length;
+        // Positions of each term in the document, in ascending order
+        private final Map<String, int[]> terms;
+
+        private Entry(DocumentType type, String title, int length, Map<String, int[]> terms) {
+            this.type = type;
+            this.title = title;
+            this.length = length;
+            this.terms = terms;
+        }
+
+        public DocumentType getType() {
+            return type;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * @return The number of terms in the document.
+         */
+        public int getLength() {
+            return length;
+        }
+    }
+
+    private static class DocInfo {
+        private final DocumentType type;
+        private final String title;
+        private final int length;
+        // The lists of the distinct terms of the document, to remove its postings
+        private PostingList[] lists;
+
+        private DocInfo(DocumentType type, String title, int length, PostingList[] lists) {
+            this.type = type;
+            this.title = title;
+            this.length = length;
+            this.lists = lists;
+        }
+    }
+
+    /**
+     * The documents that contain a term, in ascending id order, with the positions of the term in each.
+     * Stored as flat arrays: the positions of the i-th document are <i>positions[starts[i]..starts[i + 1]]</i>.
+     */
+    private static class PostingList {
+        private final String term;
+        private int[] ids = new int[4];
+        private int[] starts = new int[5];
+        private int[] positions = new int[8];
+        private int size;
+        // Postings of documents that were removed from the index
+        private int dead;
+
+        private PostingList(String term) {
+            this.term = term;
+        }
+
+        private int live() {
+            return size - dead;
+        }
+
+        private int frequency(int i) {
+            return starts[i + 1] - starts[i];
+        }
+
+        /**
+         * Appends a posting. Ids are always given in ascending order, as new documents get new ids.
+         */
+        private void add(int id, int[] termPositions) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                starts = Arrays.copyOf(starts, size * 2 + 1);
+            }
+            int end = starts[size];
+            if (end + termPositions.length > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(end + termPositions.length, positions.length * 2));
+            }
+            System.arraycopy(termPositions, 0, positions, end, termPositions.length);
+            ids[size] = id;
+            starts[++size] = end + termPositions.length;
+        }
+
+        /**
+         * Appends a posting whose positions are read from a snapshot.
+         */
+        private void read(int id, ByteBuffer in) throws IOException {
+            int count = readVarInt(in);
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                starts = Arrays.copyOf(starts, size * 2 + 1);
+            }
+            int end = starts[size];
+            if (end + count > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(end + count, positions.length * 2));
+            }
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                previous += readVarInt(in);
+                positions[end + i] = previous;
+            }
+            ids[size] = id;
+            starts[++size] = end + count;
+        }
+
+        private int[] positionsOf(int id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            return i < 0 ? null : Arrays.copyOfRange(positions, starts[i], starts[i + 1]);
+        }
+
+        /**
+         * Drops the postings of removed documents.
+         * @param newIds The new id of each document, or <i>null</i> to keep the ids. Must keep their order.
+         */
+        private void purge(DocInfo[] docs, int[] newIds) {
+            int kept = 0;
+            int end = 0;
+            for (int i = 0; i < size; i++) {
+                if (docs[ids[i]] == null) continue;
+                int from = starts[i];
+                int length = starts[i + 1] - from;
+                System.arraycopy(positions, from, positions, end, length);
+                ids[kept] = newIds == null ? ids[i] : newIds[ids[i]];
+                starts[kept] = end;
+                end += length;
+                kept++;
+            }
+            starts[kept] = end;
+            size = kept;
+            dead = 0;
+        }
+    }
+}
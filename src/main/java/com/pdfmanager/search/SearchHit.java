@@ -0,0 +1,39 @@
+package com.pdfmanager.search;
+
+import com.pdfmanager.files.DocumentType;
+
+/**
+ * A document found by a full-text search, with its BM25 relevance score.
+ */
+public class SearchHit {
+    private final DocumentType type;
+    private final String title;
+    private final double score;
+
+    public SearchHit(DocumentType type, String title, double score) {
+        this.type = type;
+        this.title = title;
+        this.score = score;
+    }
+
+    public DocumentType getType() {
+        return type;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchHit{" +
+                "type=" + type +
+                ", title='" + title + '\'' +
+                ", score=" + score +
+                '}';
+    }
+}
@@ -0,0 +1,25 @@
+package com.pdfmanager.search;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Extracts the text layer of PDF files. Scanned documents without a text layer give an empty text.
+ */
+public class TextExtractor {
+
+    /**
+     * @param pdf The PDF file.
+     * @return The text of every page, in content stream order.
+     * @throws IOException Might throw an exception if the file cannot be read or is not a valid PDF.
+     */
+    public String extract(File pdf) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            return new PDFTextStripper().getText(document);
+        }
+    }
+}
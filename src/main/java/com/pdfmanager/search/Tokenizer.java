@@ -0,0 +1,40 @@
+package com.pdfmanager.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Splits text into the terms stored in the full-text index.
+ * Terms are lowercase runs of letters and digits with the accents removed, so <i>"Árvore"</i>
+ * and <i>"arvore"</i> are the same term.
+ */
+public final class Tokenizer {
+    // Longer runs are usually garbage from the PDF text layer (e.g. encoded images)
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    // English possessives, so "Dijkstra's" is the term "dijkstra"
+    private static final Pattern POSSESSIVE = Pattern.compile("['\u2019]s\\b");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private Tokenizer() { }
+
+    /**
+     * @param text The text to be split.
+     * @return The terms of the text, in order. A term appears once for each occurrence.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) return terms;
+        String normalized = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        normalized = POSSESSIVE.matcher(normalized).replaceAll("");
+        for (String term : SEPARATORS.split(normalized.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty() && term.length() <= MAX_TERM_LENGTH) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+}
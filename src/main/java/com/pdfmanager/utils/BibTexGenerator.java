@@ -1,63 +1,226 @@
 package com.pdfmanager.utils;
 
+import com.pdfmanager.db.AtomicFileWriter;
+import com.pdfmanager.db.DatabaseManager;
 import com.pdfmanager.files.Book;
+import com.pdfmanager.files.ClassNote;
 import com.pdfmanager.files.Collection;
+import com.pdfmanager.files.Document;
 import com.pdfmanager.files.DocumentType;
+import com.pdfmanager.files.Slide;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 /**
- * Classe utilitária para gerar arquivos de referência BibTeX a partir de uma coleção de livros.
+ * Classe utilitária para gerar arquivos de referência BibTeX a partir da biblioteca ou de coleções.
+ * <p>
+ * As referências são escritas uma a uma direto no arquivo, sem montar o conteúdo inteiro em memória.
+ * Livros viram <i>@book</i>, slides viram <i>@misc</i> e notas de aula viram <i>@unpublished</i>. As chaves
+ * de citação vêm do {@link DatabaseManager}, são únicas na biblioteca inteira e ficam salvas nos
+ * documentos, então a mesma obra é citada pela mesma chave em todas as exportações.
  */
 public class BibTexGenerator {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Largura dos nomes dos campos, para alinhar os sinais de igual
+    private static final int FIELD_WIDTH = 9;
+
+    private final DatabaseManager db;
+
+    public BibTexGenerator(DatabaseManager db) {
+        this.db = db;
+    }
 
     /**
-     * Gera e salva um arquivo .bib com as referências dos livros em uma coleção.
-     * @param collection A coleção da qual extrair as referências.
-     * @param books A lista de objetos Book completos que correspondem aos títulos na coleção.
+     * Gera e salva um arquivo .bib com as referências de todos os documentos da biblioteca.
      * @param outputPath O caminho completo onde o arquivo .bib deve ser salvo.
-     * @throws IOException Se ocorrer um erro durante a escrita do arquivo.
+     * @return Um resumo da exportação.
+     * @throws IOException Se ocorrer um erro durante a leitura do banco de dados ou a escrita do arquivo.
      */
-    public static void generate(Collection collection, List<Book> books, Path outputPath) throws IOException {
-        if (collection.getType() != DocumentType.BOOK) {
-            System.err.println("Geração de BibTeX é suportada apenas para coleções do tipo 'BOOK'.");
-            return;
-        }
+    public Result exportLibrary(Path outputPath) throws IOException {
+        long start = System.nanoTime();
+        int[] entries = new int[1];
+        write(outputPath, out -> {
+            for (DocumentType type : DocumentType.values()) {
+                db.forEachCitation(type, (document, key) -> {
+                    writeEntry(out, document, key);
+                    entries[0]++;
+                });
+            }
+        });
+        return new Result(entries[0], System.nanoTime() - start);
+    }
 
-        StringBuilder bibtexContent = new StringBuilder();
-        bibtexContent.append("% Arquivo BibTeX gerado pelo PDF Manager\n\n");
+    /**
+     * Gera e salva um arquivo .bib com as referências dos documentos de várias coleções. Um documento
+     * presente em mais de uma coleção aparece uma única vez.
+     * @param collections As coleções das quais extrair as referências.
+     * @param outputPath O caminho completo onde o arquivo .bib deve ser salvo.
+     * @return Um resumo da exportação.
+     * @throws IOException Se ocorrer um erro durante a leitura do banco de dados ou a escrita do arquivo.
+     */
+    public Result exportCollections(List<Collection> collections, Path outputPath) throws IOException {
+        long start = System.nanoTime();
+        int[] entries = new int[1];
+        Set<String> written = new HashSet<>();
+        write(outputPath, out -> {
+            for (Collection collection : collections) {
+                List<Document> documents = db.getCollectionDocuments(collection.getName());
+                if (documents == null || documents.isEmpty()) continue;
+                List<String> keys = db.citationKeysOf(collection.getType(), documents);
+                for (int i = 0; i < documents.size(); i++) {
+                    if (!written.add(collection.getType() + ":" + documents.get(i).getTitle())) continue;
+                    writeEntry(out, documents.get(i), keys.get(i));
+                    entries[0]++;
+                }
+            }
+        });
+        return new Result(entries[0], System.nanoTime() - start);
+    }
 
-        for (Book book : books) {
-            // Gera uma chave de citação simples. Ex: "Machado2023"
-            String authorLastName = book.getAuthors().get(0).split(" ")[0].replaceAll("[^a-zA-Z]", "");
-            String citationKey = authorLastName + book.getPublishYear();
+    /**
+     * Escreve o arquivo de forma atômica: um erro no meio da exportação deixa o arquivo anterior intacto.
+     */
+    private static void write(Path outputPath, Export export) throws IOException {
+        AtomicFileWriter.write(outputPath.toFile(), stream -> {
+            Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+            out.write("% Arquivo BibTeX gerado pelo PDF Manager\n\n");
+            try {
+                export.writeTo(out);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        });
+    }
 
-            bibtexContent.append("@book{").append(citationKey).append(",\n");
+    private static void writeEntry(Writer out, Document document, String key) {
+        try {
+            if (document instanceof Book) {
+                Book book = (Book) document;
+                out.write("@book{");
+                out.write(key);
+                out.write(",\n");
+                writeField(out, "author", String.join(" and ", authorsOf(book)));
+                writeField(out, "title", book.getTitle());
+                writeField(out, "subtitle", book.getSubTitle());
+                writeField(out, "publisher", book.getPublisher());
+                writeField(out, "keywords", book.getFieldOfKnowledge());
+                if (book.getPublishYear() > 0) {
+                    writeField(out, "year", Integer.toString(book.getPublishYear()));
+                }
+            } else if (document instanceof Slide) {
+                Slide slide = (Slide) document;
+                out.write("@misc{");
+                out.write(key);
+                out.write(",\n");
+                writeField(out, "author", String.join(" and ", authorsOf(slide)));
+                writeField(out, "title", slide.getTitle());
+                writeField(out, "howpublished", "Lecture slides");
+                writeField(out, "note", join(slide.getLectureName(), slide.getInstitutionName()));
+            } else {
+                ClassNote classNote = (ClassNote) document;
+                out.write("@unpublished{");
+                out.write(key);
+                out.write(",\n");
+                writeField(out, "author", String.join(" and ", authorsOf(classNote)));
+                writeField(out, "title", classNote.getTitle());
+                writeField(out, "subtitle", classNote.getSubTitle());
+                // 'note' é obrigatório em @unpublished
+                writeField(out, "note", join("Class notes", join(classNote.getLectureName(), classNote.getInstitutionName())));
+            }
+            out.write("}\n\n");
+        } catch (IOException e) {
+            // As exportações passam pelos consumidores do banco de dados, que não lançam IOException
+            throw new UncheckedIOException(e);
+        }
+    }
 
-            // Junta a lista de autores com " and "
-            String authorsString = String.join(" and ", book.getAuthors());
-            bibtexContent.append(String.format("  author    = {%s},\n", authorsString));
-            bibtexContent.append(String.format("  title     = {%s},\n", book.getTitle()));
+    private static void writeField(Writer out, String name, String value) throws IOException {
+        if (value == null || value.isBlank()) return;
+        out.write("  ");
+        out.write(name);
+        for (int i = name.length(); i < FIELD_WIDTH; i++) {
+            out.write(' ');
+        }
+        out.write(" = {");
+        writeEscaped(out, value);
+        out.write("},\n");
+    }
 
-            // Adiciona campos opcionais se eles não forem nulos ou vazios
-            if (book.getSubTitle() != null && !book.getSubTitle().isEmpty()) {
-                bibtexContent.append(String.format("  subtitle  = {%s},\n", book.getSubTitle()));
-            }
-            if (book.getPublisher() != null && !book.getPublisher().isEmpty()) {
-                bibtexContent.append(String.format("  publisher = {%s},\n", book.getPublisher()));
+    /**
+     * Escapa os caracteres especiais do LaTeX. Chaves são removidas, já que uma chave sem par
+     * quebraria o arquivo inteiro. A barra invertida, o til e o circunflexo não têm escape com barra
+     * (\~ e \^ são acentos), então viram os comandos de texto correspondentes.
+     */
+    private static void writeEscaped(Writer out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&': case '%': case '$': case '#': case '_':
+                    out.write('\\');
+                    out.write(c);
+                    break;
+                case '\\':
+                    out.write("\\textbackslash{}");
+                    break;
+                case '~':
+                    out.write("\\textasciitilde{}");
+                    break;
+                case '^':
+                    out.write("\\textasciicircum{}");
+                    break;
+                case '{': case '}':
+                    break;
+                default:
+                    out.write(c);
             }
+        }
+    }
+
+    private static List<String> authorsOf(Document document) {
+        return document.getAuthors() == null ? List.of() : document.getAuthors();
+    }
+
+    private static String join(String first, String second) {
+        if (first == null || first.isBlank()) return second;
+        if (second == null || second.isBlank()) return first;
+        return first + ", " + second;
+    }
+
+    /**
+     * Escreve as referências de uma exportação.
+     */
+    private interface Export {
+        void writeTo(Writer out) throws IOException;
+    }
+
+    /**
+     * Resumo de uma exportação.
+     */
+    public static class Result {
+        private final int entries;
+        private final long elapsedNanos;
+
+        public Result(int entries, long elapsedNanos) {
+            this.entries = entries;
+            this.elapsedNanos = elapsedNanos;
+        }
 
-            bibtexContent.append(String.format("  year      = {%d}\n", book.getPublishYear()));
-            bibtexContent.append("}\n\n");
+        public int getEntries() {
+            return entries;
         }
 
-        // Usa try-with-resources para garantir que o FileWriter seja fechado automaticamente
-        try (FileWriter writer = new FileWriter(outputPath.toFile())) {
-            writer.write(bibtexContent.toString());
+        public long getElapsedNanos() {
+            return elapsedNanos;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,442 @@
+package com.pdfmanager.utils;
+
+import com.pdfmanager.db.DatabaseManager;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Imports the entries of a BibTeX file into the library.
+ * <p>
+ * The file is read as a stream by a {@link BibTexParser}, so its size is not limited by the memory.
+ * <i>@unpublished</i> entries become class notes, <i>@misc</i> entries published as slides become
+ * slides and every other entry type (<i>@book</i>, <i>@article</i>, <i>@inproceedings</i>...) becomes
+ * a book. The citation key of each entry is kept as the citation key of the document.
+ * <p>
+ * Each entry is matched to its PDF through the <i>file</i> field written by JabRef and Zotero, or else
+ * by looking for a PDF named after its citation key or title in an optional directory. Matched PDFs are
+ * copied to the library as in {@link BulkImporter}; entries without a PDF are imported with their
+ * metadata only. Entries are written to the database in large batches, and an entry that cannot be
+ * parsed or imported is reported without stopping the import. Documents are keyed by title, so an entry
+ * whose title is already in the database, or in an earlier entry of the file, is reported and skipped.
+ */
+public class BibTexImporter {
+    // Entries written to the database at once, as in DatabaseManager.importObjects
+    private static final int BATCH_SIZE = 10000;
+    // Maximum number of files being copied at the same time, to bound the open file handles
+    private static final int MAX_CONCURRENT_FILES = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern AUTHOR_SEPARATOR = Pattern.compile("\\s+and\\s+", Pattern.CASE_INSENSITIVE);
+    // ':' not escaped by a backslash, the separator of the JabRef file field
+    private static final Pattern FILE_SEPARATOR = Pattern.compile("(?<!\\\\):");
+    private static final Pattern YEAR = Pattern.compile("\\d{4}");
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern NOT_ALPHANUMERIC = Pattern.compile("[^a-z0-9]");
+
+    private final DatabaseManager db;
+    private final FileManager fileManager;
+
+    public BibTexImporter(DatabaseManager db, FileManager fileManager) {
+        this.db = db;
+        this.fileManager = fileManager;
+    }
+
+    /**
+     * Imports every entry of a BibTeX file.
+     * @param bibFile The BibTeX file.
+     * @param pdfDirectory A directory tree where to look for the PDFs of entries without a <i>file</i>
+     *                     field, or <i>null</i> to use only the <i>file</i> field.
+     * @return A summary of the import.
+     * @throws IOException Might throw an exception if unable to read the file or write the database.
+     */
+    public Result importFile(Path bibFile, Path pdfDirectory) throws IOException {
+        String libraryPath = db.getLibraryPath();
+        Path library = Path.of(libraryPath).toAbsolutePath().normalize();
+        Path base = bibFile.toAbsolutePath().getParent();
+        long start = System.nanoTime();
+        Map<String, Path> pdfs = pdfDirectory == null ? Map.of() : indexPdfs(pdfDirectory, library);
+
+        List<String> errors = new ArrayList<>();
+        List<Pending> batch = new ArrayList<>();
+        Map<String, Path> placed = new ConcurrentHashMap<>();
+        // Titles taken by this import, which are not in the database until their batch is written
+        Set<String> titles = new HashSet<>();
+        int entries = 0;
+        int imported = 0;
+        int[] withFile = new int[1];
+        long parseNanos = 0;
+        // The parser reads the whole file, so its throughput is measured in bytes of the file
+        long bytes = Files.size(bibFile);
+
+        // Malformed UTF-8 is replaced instead of aborting the whole file
+        InputStreamReader input = new InputStreamReader(Files.newInputStream(bibFile), StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE));
+        try (BibTexParser parser = new BibTexParser(new BufferedReader(input, BUFFER_SIZE))) {
+            while (true) {
+                long parseStart = System.nanoTime();
+                BibTexParser.Entry entry;
+                try {
+                    entry = parser.next();
+                } catch (BibTexParser.SyntaxException e) {
+                    errors.add(e.getMessage());
+                    continue;
+                } finally {
+                    parseNanos += System.nanoTime() - parseStart;
+                }
+                if (entry == null) break;
+                entries++;
+
+                Map<String, Object> buffer;
+                try {
+                    buffer = toBuffer(entry);
+                } catch (IllegalArgumentException e) {
+                    errors.add(describe(entry) + e.getMessage());
+                    continue;
+                }
+                Path pdf = findPdf(entry, base, pdfs);
+                if (pdf != null) {
+                    // The file is located through 'path' + 'title', so both always describe the actual file
+                    buffer.put("title", pdf.getFileName().toString());
+                    buffer.put("path", pdf.getParent().toString());
+                }
+                String title = (String) buffer.get("title");
+                if (db.containsTitle(title) || !titles.add(title)) {
+                    errors.add(describe(entry) + "'" + title + "' is already in the library");
+                    continue;
+                }
+                batch.add(new Pending(entry, buffer, pdf));
+                if (batch.size() == BATCH_SIZE) {
+                    imported += writeBatch(batch, libraryPath, library, placed, errors, withFile);
+                    batch.clear();
+                }
+            }
+        }
+        imported += writeBatch(batch, libraryPath, library, placed, errors, withFile);
+
+        return new Result(entries, imported, withFile[0], bytes, parseNanos, System.nanoTime() - start, errors);
+    }
+
+    /**
+     * Copies the PDFs of a batch to the library, one virtual thread per file, and writes the entries
+     * of the batch to the database at once.
+     * @param withFile Incremented by the number of entries written with their PDF in the library.
+     * @return The number of entries written.
+     */
+    private int writeBatch(List<Pending> batch, String libraryPath, Path library, Map<String, Path> placed,
+                           List<String> errors, int[] withFile) throws IOException {
+        if (batch.isEmpty()) return 0;
+        Queue<Pending> ready = new ConcurrentLinkedQueue<>();
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        // Files placed by this import are not in the database until their batch is written
+        FileManager.ContentLookup lookup = new FileManager.ContentLookup() {
+            @Override
+            public Path find(String hash) throws IOException {
+                Path file = placed.get(hash);
+                return file != null ? file : db.findLibraryCopy(hash);
+            }
+
+            @Override
+            public void placed(String hash, Path file) {
+                placed.putIfAbsent(hash, file);
+            }
+        };
+        Semaphore permits = new Semaphore(MAX_CONCURRENT_FILES);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Pending pending : batch) {
+                if (pending.pdf == null || pending.pdf.toAbsolutePath().normalize().startsWith(library)) {
+                    // Nothing to copy: no PDF, or a PDF that is already in the library
+                    ready.add(pending);
+                    continue;
+                }
+                permits.acquireUninterruptibly();
+                executor.submit(() -> {
+                    try {
+                        @SuppressWarnings("unchecked")
+                        String author = ((List<String>) pending.buffer.get("authors")).get(0);
+                        fileManager.createDirectory(libraryPath, author);
+                        String destination = libraryPath + File.separator + author + File.separator + pending.buffer.get("title");
+                        FileManager.Placement placement = fileManager.copyFileToLibrary(pending.pdf.toString(), destination, lookup);
+                        if (placement == null) {
+                            failures.add(describe(pending.entry) + "unable to copy '" + pending.pdf + "' to the library");
+                        } else {
+                            pending.buffer.put("contentHash", placement.getHash());
+                            pending.buffer.put("contentSize", placement.getSize());
+                            ready.add(pending);
+                        }
+                    } catch (Exception e) {
+                        failures.add(describe(pending.entry) + e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+
+        errors.addAll(failures);
+        // An entry whose PDF could not be copied is not in 'ready', so only the placed files are counted
+        List<Map<String, Object>> buffers = new ArrayList<>(ready.size());
+        for (Pending pending : ready) {
+            buffers.add(pending.buffer);
+            if (pending.pdf != null) withFile[0]++;
+        }
+        return db.writeObjects(buffers).size();
+    }
+
+    /**
+     * Builds the Map of parameters accepted by {@link DatabaseManager#writeObjects} from an entry.
+     * @throws IllegalArgumentException If the entry has no title or no authors.
+     */
+    private static Map<String, Object> toBuffer(BibTexParser.Entry entry) {
+        String title = entry.get("title");
+        if (title == null || title.isBlank()) {
+            throw new IllegalArgumentException("missing title");
+        }
+        String names = entry.get("author");
+        if (names == null || names.isBlank()) names = entry.get("editor");
+        List<String> authors = new ArrayList<>();
+        if (names != null) {
+            for (String author : AUTHOR_SEPARATOR.split(names)) {
+                // "and others" is how BibTeX writes "et al."
+                if (!author.isBlank() && !author.equalsIgnoreCase("others")) authors.add(author.trim());
+            }
+        }
+        if (authors.isEmpty()) {
+            throw new IllegalArgumentException("missing author");
+        }
+
+        Map<String, Object> buffer = new HashMap<>();
+        buffer.put("title", title);
+        buffer.put("authors", authors);
+        if (!entry.getKey().isEmpty()) buffer.put("citationKey", entry.getKey());
+
+        String note = entry.get("note");
+        String institution = first(entry, "institution", "school", "organization");
+        if (entry.getType().equals("unpublished")) {
+            buffer.put("type", "ClassNote");
+            buffer.put("subTitle", entry.get("subtitle"));
+            // Written by BibTexGenerator as "Class notes, <lecture>, <institution>"
+            if (note != null && note.regionMatches(true, 0, "Class notes", 0, "Class notes".length())) {
+                note = note.substring("Class notes".length()).replaceFirst("^\\s*,\\s*", "");
+            }
+            putLecture(buffer, note, institution);
+        } else if (entry.getType().equals("misc") && isSlide(entry)) {
+            buffer.put("type", "Slide");
+            putLecture(buffer, note, institution);
+        } else {
+            buffer.put("type", "Book");
+            buffer.put("subTitle", entry.get("subtitle"));
+            buffer.put("publisher", first(entry, "publisher", "journal", "booktitle", "institution", "school", "organization"));
+            buffer.put("fieldOfKnowledge", entry.get("keywords"));
+            String year = entry.get("year");
+            Matcher matcher = year == null ? null : YEAR.matcher(year);
+            buffer.put("publishYear", matcher != null && matcher.find() ? Integer.parseInt(matcher.group()) : 0);
+        }
+        return buffer;
+    }
+
+    private static boolean isSlide(BibTexParser.Entry entry) {
+        for (String field : new String[]{"howpublished", "type", "note"}) {
+            String value = entry.get(field);
+            if (value != null && value.toLowerCase(Locale.ROOT).contains("slide")) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Fills the lecture and the institution of a slide or class note. Without an institution field,
+     * the last part of the note is taken as the institution, as written by {@link BibTexGenerator}.
+     */
+    private static void putLecture(Map<String, Object> buffer, String note, String institution) {
+        if (note == null || note.isBlank()) {
+            buffer.put("institutionName", institution);
+            return;
+        }
+        int comma = note.lastIndexOf(',');
+        if (institution == null && comma > 0) {
+            buffer.put("lectureName", note.substring(0, comma).trim());
+            buffer.put("institutionName", note.substring(comma + 1).trim());
+        } else {
+            buffer.put("lectureName", note);
+            buffer.put("institutionName", institution);
+        }
+    }
+
+    private static String first(BibTexParser.Entry entry, String... fields) {
+        for (String field : fields) {
+            String value = entry.get(field);
+            if (value != null && !value.isBlank()) return value;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the PDF of an entry: first through its <i>file</i> field, then by its citation key or
+     * title in the directory index.
+     * @return The PDF, or <i>null</i> if none was found.
+     */
+    private static Path findPdf(BibTexParser.Entry entry, Path base, Map<String, Path> pdfs) {
+        String field = entry.get("file");
+        if (field == null) field = entry.get("pdf");
+        if (field != null) {
+            // JabRef: "Description:path:PDF;..." with ':' escaped as "\:"; Zotero: plain paths
+            for (String link : field.split(";")) {
+                String[] parts = FILE_SEPARATOR.split(link, -1);
+                String path = parts.length >= 3 ? String.join(":", List.of(parts).subList(1, parts.length - 1)) : link;
+                path = path.replace("\\:", ":").replace("\\\\", "\\").trim();
+                if (!path.toLowerCase(Locale.ROOT).endsWith(".pdf")) continue;
+                try {
+                    Path file = base.resolve(path);
+                    if (Files.isRegularFile(file)) return file;
+                } catch (InvalidPathException e) {
+                    // Not a path on this system (e.g. a Windows path on Linux), try the next one
+                }
+            }
+        }
+        if (pdfs.isEmpty()) return null;
+        Path file = pdfs.get(normalize(entry.getKey()));
+        if (file == null && entry.get("title") != null) {
+            file = pdfs.get(normalize(entry.get("title")));
+        }
+        return file;
+    }
+
+    /**
+     * Indexes the PDFs of a directory tree by their normalized name, without the extension.
+     * The library itself is skipped.
+     */
+    private static Map<String, Path> indexPdfs(Path directory, Path library) throws IOException {
+        Map<String, Path> pdfs = new HashMap<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf"))
+                    .filter(file -> !file.toAbsolutePath().normalize().startsWith(library))
+                    .forEach(file -> {
+                        String name = file.getFileName().toString();
+                        pdfs.putIfAbsent(normalize(name.substring(0, name.length() - ".pdf".length())), file);
+                    });
+        }
+        pdfs.remove("");
+        return pdfs;
+    }
+
+    /**
+     * Lowercase letters and digits only, without accents, so "Dom Casmurro" matches "dom_casmurro.pdf".
+     */
+    private static String normalize(String text) {
+        String stripped = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return NOT_ALPHANUMERIC.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll("");
+    }
+
+    private static String describe(BibTexParser.Entry entry) {
+        return "line " + entry.getLine() + " @" + entry.getType() + "{" + entry.getKey() + "}: ";
+    }
+
+    /**
+     * An entry waiting for its batch to be written.
+     */
+    private static class Pending {
+        private final BibTexParser.Entry entry;
+        private final Map<String, Object> buffer;
+        private final Path pdf;
+
+        Pending(BibTexParser.Entry entry, Map<String, Object> buffer, Path pdf) {
+            this.entry = entry;
+            this.buffer = buffer;
+            this.pdf = pdf;
+        }
+    }
+
+    /**
+     * Summary of a BibTeX import.
+     */
+    public static class Result {
+        private final int entries;
+        private final int imported;
+        private final int withFile;
+        private final long bytes;
+        private final long parseNanos;
+        private final long elapsedNanos;
+        private final List<String> errors;
+
+        public Result(int entries, int imported, int withFile, long bytes, long parseNanos, long elapsedNanos,
+                      List<String> errors) {
+            this.entries = entries;
+            this.imported = imported;
+            this.withFile = withFile;
+            this.bytes = bytes;
+            this.parseNanos = parseNanos;
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+        }
+
+        /**
+         * @return The number of entries read from the file, not counting the malformed ones.
+         */
+        public int getEntries() {
+            return entries;
+        }
+
+        public int getImported() {
+            return imported;
+        }
+
+        /**
+         * @return The number of entries imported with their PDF in the library.
+         */
+        public int getWithFile() {
+            return withFile;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getParseNanos() {
+            return parseNanos;
+        }
+
+        /**
+         * @return The malformed entries and the entries that could not be imported, with their line.
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public double getEntriesPerSecond() {
+            return parseNanos == 0 ? 0 : entries / (parseNanos / 1e9);
+        }
+
+        /**
+         * @return The parse throughput, in megabytes of the BibTeX file per second.
+         */
+        public double getMegabytesPerSecond() {
+            return parseNanos == 0 ? 0 : (bytes / (1024.0 * 1024.0)) / (parseNanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.pdfmanager.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lê as entradas de um arquivo BibTeX uma a uma, sem carregar o arquivo inteiro.
+ * <p>
+ * Entende valores entre chaves ou aspas, números, macros de <i>@string</i> (e os meses predefinidos) e
+ * concatenações com <i>#</i>; ignora <i>@comment</i> e <i>@preamble</i>. Os valores saem sem as chaves e
+ * com os acentos do LaTeX convertidos (<i>{\~a}</i> vira <i>ã</i>). Uma entrada malformada é informada
+ * por uma {@link SyntaxException} e a leitura continua na próxima linha que começa com <i>@</i>.
+ */
+public class BibTexParser implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Um valor maior que isso quase sempre é uma chave sem par engolindo o resto do arquivo
+    private static final int MAX_VALUE_LENGTH = 1024 * 1024;
+    // Caminhos e endereços não são texto LaTeX: as barras invertidas fazem parte do valor
+    private static final Set<String> VERBATIM_FIELDS = Set.of("file", "pdf", "url", "doi");
+    private static final Map<Character, Character> ACCENTS = Map.ofEntries(
+            Map.entry('\'', '\u0301'), Map.entry('`', '\u0300'), Map.entry('^', '\u0302'),
+            Map.entry('"', '\u0308'), Map.entry('~', '\u0303'), Map.entry('=', '\u0304'),
+            Map.entry('.', '\u0307'), Map.entry('c', '\u0327'), Map.entry('u', '\u0306'),
+            Map.entry('v', '\u030C'), Map.entry('H', '\u030B'), Map.entry('k', '\u0328'));
+    // Comandos que representam um caractere: os que o BibTexGenerator escreve e as letras especiais do LaTeX
+    private static final Map<String, Character> SYMBOLS = Map.ofEntries(
+            Map.entry("textbackslash", '\\'), Map.entry("textasciitilde", '~'), Map.entry("textasciicircum", '^'),
+            Map.entry("ss", '\u00DF'), Map.entry("o", '\u00F8'), Map.entry("O", '\u00D8'),
+            Map.entry("aa", '\u00E5'), Map.entry("AA", '\u00C5'), Map.entry("ae", '\u00E6'),
+            Map.entry("AE", '\u00C6'), Map.entry("oe", '\u0153'), Map.entry("OE", '\u0152'),
+            Map.entry("l", '\u0142'), Map.entry("L", '\u0141'), Map.entry("i", '\u0131'),
+            Map.entry("j", '\u0237'));
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int line = 1;
+    // Depois de um erro, só um '@' no começo de uma linha inicia uma entrada
+    private boolean resync;
+    // O erro foi detectado no '@' da entrada seguinte, que já foi lido
+    private boolean atEntry;
+    private final Map<String, String> macros = new HashMap<>();
+
+    public BibTexParser(Reader reader) {
+        this.reader = reader;
+        String[] months = {"jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"};
+        for (int i = 0; i < months.length; i++) {
+            macros.put(months[i], Integer.toString(i + 1));
+        }
+    }
+
+    /**
+     * Lê a próxima entrada.
+     * @return A entrada, ou <i>null</i> no fim do arquivo.
+     * @throws IOException Se ocorrer um erro de leitura.
+     * @throws SyntaxException Se a entrada estiver malformada. A próxima chamada continua depois dela.
+     */
+    public Entry next() throws IOException, SyntaxException {
+        while (true) {
+            if (!skipToEntry()) return null;
+            int start = line;
+            try {
+                String type = readIdentifier().toLowerCase(Locale.ROOT);
+                skipSpaces();
+                int open = read();
+                if (open != '{' && open != '(') throw error(start, "expected '{' after '@" + type + "'");
+                char close = open == '{' ? '}' : ')';
+                switch (type) {
+                    case "comment":
+                    case "preamble":
+                        skipBalanced(start, close);
+                        continue;
+                    case "string":
+                        readFields(start, close, macros);
+                        continue;
+                    default:
+                        return readEntry(start, type, close);
+                }
+            } catch (SyntaxException e) {
+                resync = true;
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Entry readEntry(int start, String type, char close) throws IOException, SyntaxException {
+        skipSpaces();
+        StringBuilder key = new StringBuilder();
+        int c;
+        while ((c = peek()) >= 0 && c != ',' && c != close && !Character.isWhitespace(c) && c != '@') {
+            key.append((char) read());
+        }
+        skipSpaces();
+        c = peek();
+        if (c < 0) throw error(start, "unexpected end of file in the key of '@" + type + "'");
+        if (c != ',' && c != close) throw error(start, "missing ',' after the key of '@" + type + "'");
+        Map<String, String> fields = new LinkedHashMap<>();
+        if (c == ',') {
+            read();
+            readFields(start, close, fields);
+        } else {
+            read();
+        }
+        return new Entry(type, key.toString(), fields, start);
+    }
+
+    private void readFields(int start, char close, Map<String, String> fields) throws IOException, SyntaxException {
+        while (true) {
+            skipSpaces();
+            int c = peek();
+            if (c == ',') {
+                read();
+                continue;
+            }
+            if (c == close) {
+                read();
+                return;
+            }
+            if (c < 0) throw error(start, "unexpected end of file");
+            if (c == '@') {
+                read();
+                atEntry = true;
+                throw error(start, "missing '" + close + "' at the end of the entry");
+            }
+            String name = readIdentifier().toLowerCase(Locale.ROOT);
+            if (name.isEmpty()) throw error(line, "unexpected '" + (char) c + "'");
+            skipSpaces();
+            if (read() != '=') throw error(line, "expected '=' after '" + name + "'");
+            fields.put(name, readValue(start, VERBATIM_FIELDS.contains(name)));
+        }
+    }
+
+    /**
+     * Lê um valor, que pode ser a concatenação de várias partes com '#'.
+     */
+    private String readValue(int start, boolean verbatim) throws IOException, SyntaxException {
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            skipSpaces();
+            int c = peek();
+            if (c == '{') {
+                read();
+                readDelimited(start, value, '}');
+            } else if (c == '"') {
+                read();
+                readDelimited(start, value, '"');
+            } else if (c >= 0 && Character.isDigit(c)) {
+                value.append(readIdentifier());
+            } else {
+                String macro = readIdentifier();
+                if (macro.isEmpty()) throw error(line, "expected a value");
+                String expansion = macros.get(macro.toLowerCase(Locale.ROOT));
+                // Uma macro desconhecida vale o próprio nome, como no BibTeX
+                value.append(expansion != null ? expansion : macro);
+            }
+            skipSpaces();
+            if (peek() != '#') break;
+            read();
+        }
+        return verbatim ? value.toString().trim() : clean(value);
+    }
+
+    /**
+     * Lê até o delimitador de fechamento, respeitando chaves internas (onde aspas não fecham o valor).
+     */
+    private void readDelimited(int start, StringBuilder value, char close) throws IOException, SyntaxException {
+        int depth = 0;
+        int first = value.length();
+        boolean lineStart = false;
+        while (true) {
+            int c = read();
+            if (c < 0) throw error(start, "unexpected end of file inside a value");
+            lineStart = startsEntry(start, c, lineStart);
+            if (c == '\\') {
+                // Um caractere escapado nunca abre nem fecha nada
+                value.append('\\');
+                int escaped = read();
+                if (escaped < 0) throw error(start, "unexpected end of file inside a value");
+                value.append((char) escaped);
+                continue;
+            }
+            if (depth == 0 && c == close) return;
+            if (c == '{') depth++;
+            else if (c == '}' && --depth < 0) throw error(line, "unbalanced '}'");
+            value.append((char) c);
+            if (value.length() - first > MAX_VALUE_LENGTH) throw error(start, "value too long, probably an unbalanced '{'");
+        }
+    }
+
+    private void skipBalanced(int start, char close) throws IOException, SyntaxException {
+        int depth = 0;
+        boolean lineStart = false;
+        while (true) {
+            int c = read();
+            if (c < 0) throw error(start, "unexpected end of file");
+            lineStart = startsEntry(start, c, lineStart);
+            if (c == '{') depth++;
+            else if (c == '}' && depth > 0) depth--;
+            else if (c == close && depth == 0) return;
+        }
+    }
+
+    /**
+     * Um '@' no começo de uma linha dentro de um valor quase sempre é a entrada seguinte a uma chave sem
+     * par. A entrada atual é abandonada ali, em vez de engolir o resto do arquivo.
+     * @return Se o próximo caractere ainda está no começo de uma linha.
+     */
+    private boolean startsEntry(int start, int c, boolean lineStart) throws SyntaxException {
+        if (c == '\n') return true;
+        if (c == '@' && lineStart) {
+            atEntry = true;
+            throw error(start, "unbalanced '{', the entry runs into the next one");
+        }
+        return lineStart && Character.isWhitespace(c);
+    }
+
+    /**
+     * Avança até o próximo '@' que inicia uma entrada. Tudo fora das entradas é comentário.
+     * @return <i>false</i> no fim do arquivo.
+     */
+    private boolean skipToEntry() throws IOException {
+        if (atEntry) {
+            atEntry = false;
+            resync = false;
+            return true;
+        }
+        boolean lineStart = false;
+        while (true) {
+            int c = read();
+            if (c < 0) return false;
+            if (c == '\n') {
+                lineStart = true;
+            } else if (c == '@' && (!resync || lineStart)) {
+                resync = false;
+                return true;
+            } else if (!Character.isWhitespace(c)) {
+                lineStart = false;
+            }
+        }
+    }
+
+    private String readIdentifier() throws IOException {
+        StringBuilder identifier = new StringBuilder();
+        int c;
+        while ((c = peek()) >= 0 && !Character.isWhitespace(c) && "{}()=,#\"@".indexOf(c) < 0) {
+            identifier.append((char) read());
+        }
+        return identifier.toString();
+    }
+
+    private void skipSpaces() throws IOException {
+        int c;
+        while ((c = peek()) >= 0 && Character.isWhitespace(c)) {
+            read();
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) return -1;
+        char c = buffer[position++];
+        if (c == '\n') line++;
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        position = 0;
+        limit = Math.max(0, reader.read(buffer));
+        return limit > 0;
+    }
+
+    private static SyntaxException error(int line, String message) {
+        return new SyntaxException(line, message);
+    }
+
+    /**
+     * Converte o texto LaTeX de um valor em texto simples: acentos, caracteres escapados, chaves e espaços.
+     */
+    static String clean(CharSequence value) {
+        StringBuilder text = new StringBuilder(value.length());
+        boolean decomposed = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '{' || c == '}') continue;
+            if (c == '~') {
+                text.append(' ');
+            } else if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                Character accent = ACCENTS.get(next);
+                boolean letterCommand = Character.isLetter(next);
+                if (accent != null && (!letterCommand || i + 1 < value.length() && !Character.isLetter(value.charAt(i + 1)))) {
+                    // \'{e}, \'e, \c{c}, \c c: o acento vai depois da próxima letra
+                    int j = i + 1;
+                    while (j < value.length() && (value.charAt(j) == '{' || value.charAt(j) == ' ')) j++;
+                    if (j < value.length()) {
+                        char letter = value.charAt(j);
+                        // \i é o i sem pingo, usado sob acentos
+                        if (letter == '\\' && j + 1 < value.length() && value.charAt(j + 1) == 'i') {
+                            letter = 'i';
+                            j++;
+                        }
+                        text.append(letter).append(accent.charValue());
+                        decomposed = true;
+                        i = j;
+                        continue;
+                    }
+                } else if (letterCommand) {
+                    // Comandos de um caractere viram o caractere; os outros (\textit, \emph...) são descartados e o argumento fica
+                    int start = i;
+                    while (i + 1 < value.length() && Character.isLetter(value.charAt(i + 1))) i++;
+                    Character symbol = SYMBOLS.get(value.subSequence(start, i + 1).toString());
+                    if (symbol != null) {
+                        text.append(symbol.charValue());
+                        // Como no LaTeX, os espaços depois do comando só o separam do texto: \o rsted é ørsted
+                        while (i + 1 < value.length() && Character.isWhitespace(value.charAt(i + 1))) i++;
+                    }
+                    continue;
+                } else {
+                    // \&, \%, \$, \#, \_
+                    text.append(next);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (text.length() > 0 && text.charAt(text.length() - 1) != ' ') text.append(' ');
+            } else {
+                text.append(c);
+            }
+        }
+        String result = text.toString().trim();
+        return decomposed ? Normalizer.normalize(result, Normalizer.Form.NFC) : result;
+    }
+
+    /**
+     * Uma entrada lida do arquivo, com os nomes dos campos em minúsculas.
+     */
+    public static class Entry {
+        private final String type;
+        private final String key;
+        private final Map<String, String> fields;
+        private final int line;
+
+        public Entry(String type, String key, Map<String, String> fields, int line) {
+            this.type = type;
+            this.key = key;
+            this.fields = fields;
+            this.line = line;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Map<String, String> getFields() {
+            return fields;
+        }
+
+        public String get(String field) {
+            return fields.get(field);
+        }
+
+        public int getLine() {
+            return line;
+        }
+    }
+
+    /**
+     * Uma entrada malformada.
+     */
+    public static class SyntaxException extends Exception {
+        private final int line;
+
+        public SyntaxException(int line, String message) {
+            super("line " + line + ": " + message);
+            this.line = line;
+        }
+
+        public int getLine() {
+            return line;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.pdfmanager.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdfmanager.db.DatabaseManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Imports every PDF of a directory tree into the library at once.
+ * <p>
+ * The metadata of each file is taken from a sidecar JSON file next to it (<i>file.pdf.json</i> or
+ * <i>file.json</i>, with the same fields asked by the add file option), or else derived from the file
+ * name: <i>"Author1, Author2 - Title.pdf"</i> gives the authors before the dash, and a name without a
+ * dash uses the name of the parent directory as the author. The title is always the file name, so a file
+ * whose name is already a title in the database, or earlier in the same import, is reported as a failure
+ * and not copied.
+ * <p>
+ * Files are copied concurrently, one virtual thread per file, and all entries are recorded in the
+ * database with a single batched write at the end. Files whose content is already in the library,
+ * or earlier in the same import, are stored only once (see {@link FileManager#copyFileToLibrary}).
+ */
+public class BulkImporter {
+    // Maximum number of files being copied at the same time, to bound the open file handles
+    private static final int MAX_CONCURRENT_FILES = 64;
+
+    private final DatabaseManager db;
+    private final FileManager fileManager;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public BulkImporter(DatabaseManager db, FileManager fileManager) {
+        this.db = db;
+        this.fileManager = fileManager;
+    }
+
+    /**
+     * Imports every PDF found under a directory.
+     * @param directory The root of the directory tree.
+     * @param defaultType The type used for files without a <i>type</i> in their sidecar
+     *                    (<i>Book</i>, <i>Slide</i> or <i>ClassNote</i>).
+     * @return A summary of the import.
+     * @throws IOException Might throw an exception if unable to walk the directory or write the database.
+     */
+    public Result importDirectory(Path directory, String defaultType) throws IOException {
+        String libraryPath = db.getLibraryPath();
+        Path library = Path.of(libraryPath).toAbsolutePath().normalize();
+        Queue<Map<String, Object>> buffers = new ConcurrentLinkedQueue<>();
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        AtomicLong bytes = new AtomicLong();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicLong bytesSaved = new AtomicLong();
+        // Files placed by this import are not in the database until the batched write at the end
+        Map<String, Path> placed = new ConcurrentHashMap<>();
+        // Titles taken by this import, which are not in the database until the batched write either
+        Set<String> titles = ConcurrentHashMap.newKeySet();
+        FileManager.ContentLookup lookup = new FileManager.ContentLookup() {
+            @Override
+            public Path find(String hash) throws IOException {
+                Path file = placed.get(hash);
+                return file != null ? file : db.findLibraryCopy(hash);
+            }
+
+            @Override
+            public void placed(String hash, Path file) {
+                placed.putIfAbsent(hash, file);
+            }
+        };
+        Semaphore permits = new Semaphore(MAX_CONCURRENT_FILES);
+        long start = System.nanoTime();
+
+        try (Stream<Path> files = Files.walk(directory);
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().toLowerCase().endsWith(".pdf"))
+                    .filter(file -> !file.toAbsolutePath().normalize().startsWith(library))
+                    .forEach(file -> {
+                        // Acquired before submitting, so the walk never gets far ahead of the copies
+                        permits.acquireUninterruptibly();
+                        executor.submit(() -> {
+                            try {
+                                FileManager.Placement placement = importFile(file, defaultType, libraryPath, titles, lookup, buffers);
+                                if (placement == null) {
+                                    failures.add(file.toString());
+                                } else {
+                                    bytes.addAndGet(placement.getSize());
+                                    if (placement.getBytesSaved() > 0) {
+                                        duplicates.incrementAndGet();
+                                        bytesSaved.addAndGet(placement.getBytesSaved());
+                                    }
+                                }
+                            } catch (Exception e) {
+                                failures.add(file + " (" + e.getMessage() + ")");
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                    });
+        }
+
+        int recorded = db.writeObjects(new ArrayList<>(buffers)).size();
+        long elapsed = System.nanoTime() - start;
+        return new Result(recorded, bytes.get(), elapsed, new ArrayList<>(failures), duplicates.get(), bytesSaved.get());
+    }
+
+    /**
+     * Builds the metadata of one file, copies the file to the author's directory in the library and
+     * adds the metadata, with the hash of the content, to the buffers to be written.
+     * @param titles The titles taken by this import so far; the title of the file is added to it.
+     * @return The result of the copy, or <i>null</i> if the file could not be copied.
+     * @throws IOException If the title is already taken, or if unable to copy the file.
+     */
+    private FileManager.Placement importFile(Path file, String defaultType, String libraryPath, Set<String> titles,
+                                             FileManager.ContentLookup lookup, Queue<Map<String, Object>> buffers) throws IOException {
+        Map<String, Object> buffer = readMetadata(file, defaultType);
+        @SuppressWarnings("unchecked")
+        List<String> authors = (List<String>) buffer.get("authors");
+        String title = (String) buffer.get("title");
+        String author = authors.get(0);
+        // Documents are keyed by title: a second one would replace the first, leaving its copy without a document
+        if (db.containsTitle(title) || !titles.add(title)) {
+            throw new IOException("'" + title + "' is already in the library");
+        }
+
+        fileManager.createDirectory(libraryPath, author);
+        String destination = libraryPath + File.separator + author + File.separator + title;
+        FileManager.Placement placement = fileManager.copyFileToLibrary(file.toString(), destination, lookup);
+        if (placement == null) {
+            return null;
+        }
+        buffer.put("contentHash", placement.getHash());
+        buffer.put("contentSize", placement.getSize());
+        buffers.add(buffer);
+        return placement;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readMetadata(Path file, String defaultType) throws IOException {
+        String fileName = file.getFileName().toString();
+        Map<String, Object> buffer = new HashMap<>();
+
+        Path sidecar = file.resolveSibling(fileName + ".json");
+        if (!Files.isRegularFile(sidecar)) {
+            sidecar = file.resolveSibling(fileName.substring(0, fileName.length() - ".pdf".length()) + ".json");
+        }
+        if (Files.isRegularFile(sidecar)) {
+            buffer.putAll(mapper.readValue(sidecar.toFile(), Map.class));
+        }
+
+        // The file is located through 'path' + 'title', so both always describe the actual file
+        buffer.put("title", fileName);
+        buffer.put("path", file.getParent().toString());
+        buffer.putIfAbsent("type", defaultType);
+
+        Object authors = buffer.get("authors");
+        if (authors instanceof String) {
+            buffer.put("authors", Arrays.asList(((String) authors).split("\\s*,\\s*")));
+        } else if (!(authors instanceof List) || ((List<String>) authors).isEmpty()) {
+            int dash = fileName.indexOf(" - ");
+            if (dash > 0) {
+                buffer.put("authors", Arrays.asList(fileName.substring(0, dash).split("\\s*,\\s*")));
+            } else {
+                buffer.put("authors", List.of(file.getParent().getFileName().toString()));
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Summary of a bulk import.
+     */
+    public static class Result {
+        private final int files;
+        private final long bytes;
+        private final long elapsedNanos;
+        private final List<String> failures;
+        private final int duplicates;
+        private final long bytesSaved;
+
+        public Result(int files, long bytes, long elapsedNanos, List<String> failures, int duplicates, long bytesSaved) {
+            this.files = files;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+            this.failures = failures;
+            this.duplicates = duplicates;
+            this.bytesSaved = bytesSaved;
+        }
+
+        public int getFiles() {
+            return files;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public List<String> getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return The number of files whose content was already in the library.
+         */
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * @return The bytes not written to the library because their content was already there.
+         */
+        public long getBytesSaved() {
+            return bytesSaved;
+        }
+
+        public double getFilesPerSecond() {
+            return elapsedNanos == 0 ? 0 : files / (elapsedNanos / 1e9);
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : (bytes / (1024.0 * 1024.0)) / (elapsedNanos / 1e9);
+        }
+    }
+}
@@ -1,61 +1,510 @@
 package com.pdfmanager.utils;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pdfmanager.files.Document;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 /**
  * Classe utilitária para empacotar os arquivos de uma coleção em um arquivo .zip.
+ * <p>
+ * Arquivos que já são comprimidos (a maioria dos PDFs) são guardados sem compressão, já que comprimi-los
+ * de novo gasta CPU sem reduzir o tamanho. Os demais são comprimidos em blocos de {@value #CHUNK_SIZE}
+ * bytes em paralelo, um por núcleo, como no <i>pigz</i>: cada bloco usa os últimos 32 KB do bloco anterior
+ * como dicionário e termina alinhado em bytes, então os blocos concatenados formam um único fluxo deflate.
+ * As threads também leem os blocos, e a thread que chama escreve os resultados em ordem, então a
+ * leitura, a compressão e a escrita acontecem ao mesmo tempo.
+ * <p>
+ * Ao lado de cada .zip fica um manifesto oculto (<i>.nome.zip.manifest.json</i>) com o arquivo de origem,
+ * tamanho, data de modificação, CRC e posição de cada entrada. Ao empacotar de novo no mesmo caminho, as
+ * entradas cujo arquivo não mudou são copiadas do .zip anterior como estão, sem ler nem comprimir o
+ * arquivo de novo, desde que o cabeçalho local da entrada ainda esteja onde o manifesto diz; só os
+ * arquivos novos ou alterados passam pela compressão. O novo .zip é escrito em um
+ * arquivo temporário e só substitui o anterior no fim.
  */
 public class CollectionPackager {
+    static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    // Fração mínima que uma amostra do arquivo precisa encolher para que ele seja comprimido
+    private static final double MIN_SAVING = 0.10;
+    // Formatos que já são comprimidos e nunca valem uma amostra
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "gz", "bz2", "xz", "7z", "rar", "jpg", "jpeg", "png", "gif", "webp",
+            "mp3", "mp4", "mkv", "epub", "docx", "xlsx", "pptx", "odt", "djvu");
+    private static final ThreadLocal<Deflater> DEFLATERS =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ObjectMapper mapper = new ObjectMapper();
 
     /**
      * Cria um arquivo .zip contendo os arquivos físicos dos documentos de uma coleção.
      * @param documents A lista de objetos Document completos a serem compactados.
      * @param zipFilePath O caminho completo onde o arquivo .zip deve ser salvo (incluindo o nome do arquivo, ex: "C:/temp/colecao.zip").
+     * @return Um resumo do empacotamento.
      * @throws IOException Se ocorrer um erro durante a leitura dos arquivos ou a escrita do .zip.
      */
-    public static void pack(List<Document> documents, Path zipFilePath) throws IOException {
-        // Usa try-with-resources para garantir que os streams sejam fechados automaticamente.
-        try (FileOutputStream fos = new FileOutputStream(zipFilePath.toFile());
-             ZipOutputStream zos = new ZipOutputStream(fos)) {
+    public static Result pack(List<Document> documents, Path zipFilePath) throws IOException {
+        System.out.println("Criando arquivo zip em: " + zipFilePath);
+        long start = System.nanoTime();
 
-            System.out.println("Criando arquivo zip em: " + zipFilePath);
+        List<Source> sources = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Document doc : documents) {
+            // ASSUNÇÃO IMPORTANTE: O nome do arquivo físico não está salvo no modelo de dados.
+            // Estamos assumindo que o nome do arquivo é igual ao seu 'título' + a extensão ".pdf".
+            // Para maior robustez, o ideal seria adicionar um campo 'fileName' na classe Document.
+            File fileToZip = new File(doc.getPath(), doc.getTitle());
+            if (!fileToZip.isFile()) {
+                System.err.println("AVISO: Arquivo não encontrado, pulando: " + fileToZip.getAbsolutePath());
+                continue; // Pula para o próximo arquivo
+            }
+            // Um .zip não pode ter duas entradas com o mesmo nome
+            if (!names.add(fileToZip.getName())) {
+                System.err.println("AVISO: Já existe um arquivo com este nome no zip, pulando: " + fileToZip.getAbsolutePath());
+                continue;
+            }
+            sources.add(new Source(fileToZip.toPath(), fileToZip.getName(), fileToZip.length(), fileToZip.lastModified()));
+        }
 
-            for (Document doc : documents) {
-                // ASSUNÇÃO IMPORTANTE: O nome do arquivo físico não está salvo no modelo de dados.
-                // Estamos assumindo que o nome do arquivo é igual ao seu 'título' + a extensão ".pdf".
-                // Para maior robustez, o ideal seria adicionar um campo 'fileName' na classe Document.
-                String fileName = doc.getTitle();
-                File fileToZip = new File(doc.getPath(), fileName);
+        Path target = zipFilePath.toAbsolutePath();
+        Path manifest = manifestOf(target);
+        Map<String, Map<String, Object>> previous = readManifest(target, manifest);
+        int reused = 0;
+        for (Source source : sources) {
+            source.previous = previousEntry(previous.get(source.name), source);
+            if (source.previous != null) reused++;
+        }
 
-                if (!fileToZip.exists()) {
-                    System.err.println("AVISO: Arquivo não encontrado, pulando: " + fileToZip.getAbsolutePath());
-                    continue; // Pula para o próximo arquivo
+        int threads = Runtime.getRuntime().availableProcessors();
+        int stored = 0;
+        long bytesRead = 0;
+        long archiveSize;
+        List<ZipArchiveWriter.Entry> entries;
+        // O .zip anterior é lido enquanto o novo é escrito, então o novo só toma o seu lugar no fim
+        Path staged = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (ExecutorService executor = Executors.newFixedThreadPool(threads);
+                 FileChannel previousArchive = reused > 0 ? FileChannel.open(target, StandardOpenOption.READ) : null) {
+                // O manifesto pode não descrever mais o .zip (por exemplo, se ele foi reescrito com o mesmo tamanho
+                // e data); uma entrada que não está onde ele diz é comprimida de novo
+                for (Source source : sources) {
+                    if (source.previous != null && !ZipArchiveWriter.isIntact(source.previous, previousArchive)) {
+                        System.err.println("AVISO: Entrada do zip anterior não confere, comprimindo de novo: " + source.name);
+                        source.previous = null;
+                        reused--;
+                    }
+                }
+                // As amostras também são comprimidas em paralelo
+                List<Callable<Integer>> samples = new ArrayList<>();
+                List<Source> sampled = new ArrayList<>();
+                for (Source source : sources) {
+                    if (source.previous != null) continue;
+                    samples.add(() -> chooseMethod(source));
+                    sampled.add(source);
+                }
+                List<Future<Integer>> methods = executor.invokeAll(samples);
+                for (int i = 0; i < sampled.size(); i++) {
+                    sampled.get(i).method = get(methods.get(i));
                 }
 
-                // Usa um try-with-resources aninhado para o stream de leitura do arquivo
-                try (FileInputStream fis = new FileInputStream(fileToZip)) {
-                    ZipEntry zipEntry = new ZipEntry(fileToZip.getName());
-                    zos.putNextEntry(zipEntry);
-
-                    byte[] bytes = new byte[1024];
-                    int length;
-                    while ((length = fis.read(bytes)) >= 0) {
-                        zos.write(bytes, 0, length);
+                try (ZipArchiveWriter zip = new ZipArchiveWriter(staged)) {
+                    write(sources, zip, previousArchive, executor, threads);
+                    entries = zip.getEntries();
+                    for (int i = 0; i < entries.size(); i++) {
+                        if (entries.get(i).getMethod() == ZipArchiveWriter.STORED) stored++;
+                        // Entradas copiadas do .zip anterior não são lidas
+                        if (sources.get(i).previous == null) bytesRead += entries.get(i).getSize();
                     }
-                    System.out.println("Adicionado ao zip: " + fileToZip.getName());
                 }
-                zos.closeEntry();
             }
-            System.out.println("Criação do arquivo zip concluída com sucesso.");
+            // Só depois de fechar o .zip anterior, que não pode ser substituído enquanto aberto em alguns sistemas
+            Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            archiveSize = Files.size(target);
+        } catch (IOException | InterruptedException e) {
+            // Um .zip pela metade não serve para nada, e o anterior continua valendo
+            Files.deleteIfExists(staged);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while packaging", e);
+            }
+            throw (IOException) e;
+        }
+        writeManifest(target, manifest, sources, entries);
+        System.out.println("Criação do arquivo zip concluída com sucesso.");
+        return new Result(sources.size(), stored, reused, bytesRead, archiveSize, System.nanoTime() - start);
+    }
+
+    /**
+     * Lê e comprime os blocos de todos os arquivos nas threads, mantendo no máximo alguns blocos em
+     * andamento, e os escreve no .zip na ordem dos arquivos.
+     */
+    private static void write(List<Source> sources, ZipArchiveWriter zip, FileChannel previousArchive,
+                              ExecutorService executor, int threads) throws IOException, InterruptedException {
+        int window = 2 * threads + 2;
+        // Buffers diretos reaproveitados entre os blocos: a leitura e a escrita dos canais não passam por cópias
+        Deque<Buffers> free = new ArrayDeque<>();
+        for (int i = 0; i < window; i++) {
+            free.add(new Buffers());
+        }
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        CRC32 crc = new CRC32();
+        int nextSource = 0;
+        long nextChunk = 0;
+
+        while (true) {
+            // Enfileira blocos até encher a janela
+            while (!free.isEmpty() && nextSource < sources.size()) {
+                Source source = sources.get(nextSource);
+                if (source.previous != null) {
+                    // Copiada inteira do .zip anterior, na sua vez
+                    inFlight.add(CompletableFuture.completedFuture(new Chunk(source, 0, null, null, null)));
+                    nextSource++;
+                    continue;
+                }
+                long index = nextChunk;
+                Buffers buffers = free.poll();
+                inFlight.add(executor.submit(() -> read(source, index, buffers)));
+                if (++nextChunk == source.chunks()) {
+                    nextSource++;
+                    nextChunk = 0;
+                }
+            }
+            Future<Chunk> next = inFlight.poll();
+            if (next == null) break;
+
+            Chunk chunk = get(next);
+            Source source = chunk.source;
+            if (source.previous != null) {
+                zip.copyEntry(source.previous, previousArchive);
+                continue;
+            }
+            if (chunk.index == 0) {
+                zip.beginEntry(source.name, source.method, source.lastModified, source.size);
+                crc.reset();
+            }
+            crc.update(chunk.data);
+            zip.write(chunk.output);
+            if (chunk.index == source.chunks() - 1) {
+                zip.endEntry(crc.getValue());
+            }
+            free.add(chunk.buffers);
+        }
+    }
+
+    /**
+     * Lê um bloco de um arquivo e, se o arquivo for comprimido, comprime o bloco.
+     */
+    private static Chunk read(Source source, long index, Buffers buffers) throws IOException {
+        long offset = index * CHUNK_SIZE;
+        int length = (int) Math.min(CHUNK_SIZE, source.size - offset);
+        boolean deflate = source.method == ZipArchiveWriter.DEFLATED;
+        int dictionary = deflate ? (int) Math.min(DICTIONARY_SIZE, offset) : 0;
+
+        ByteBuffer input = buffers.input.clear().limit(dictionary + length);
+        try (FileChannel channel = FileChannel.open(source.path, StandardOpenOption.READ)) {
+            long position = offset - dictionary;
+            while (input.hasRemaining()) {
+                if (channel.read(input, position + input.position()) < 0) {
+                    throw new IOException("File changed while packaging: " + source.path);
+                }
+            }
+        }
+        input.flip();
+        ByteBuffer data = input.slice(dictionary, length);
+        if (!deflate) {
+            return new Chunk(source, index, buffers, data, data.duplicate());
+        }
+
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        if (dictionary > 0) {
+            deflater.setDictionary(input.slice(0, dictionary));
+        }
+        deflater.setInput(data.duplicate());
+        ByteBuffer output = buffers.output.clear();
+        if (index == source.chunks() - 1) {
+            // Só o último bloco marca o fim do fluxo deflate
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (!output.hasRemaining()) output = buffers.grow();
+                deflater.deflate(output);
+            }
+        } else {
+            // SYNC_FLUSH termina o bloco alinhado em bytes, para que o próximo possa ser concatenado
+            do {
+                if (!output.hasRemaining()) output = buffers.grow();
+                deflater.deflate(output, Deflater.SYNC_FLUSH);
+            } while (!output.hasRemaining());
+        }
+        return new Chunk(source, index, buffers, data, output.flip());
+    }
+
+    /**
+     * @return O caminho do manifesto de um .zip.
+     */
+    private static Path manifestOf(Path zipFile) {
+        return zipFile.resolveSibling("." + zipFile.getFileName() + ".manifest.json");
+    }
+
+    /**
+     * Lê o manifesto do .zip anterior, se ele ainda descreve o .zip que está no disco.
+     * @return As entradas do .zip anterior pelo nome, ou um mapa vazio.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Map<String, Object>> readManifest(Path zipFile, Path manifest) {
+        Map<String, Map<String, Object>> entries = new HashMap<>();
+        if (!Files.isRegularFile(zipFile) || !Files.isRegularFile(manifest)) return entries;
+        try {
+            Map<String, Object> content = mapper.readValue(manifest.toFile(), Map.class);
+            // Um .zip alterado ou substituído depois do manifesto não tem as entradas onde ele diz
+            if (((Number) content.get("archiveSize")).longValue() != Files.size(zipFile)
+                    || ((Number) content.get("archiveModified")).longValue() != Files.getLastModifiedTime(zipFile).toMillis()) {
+                return entries;
+            }
+            for (Map<String, Object> entry : (List<Map<String, Object>>) content.get("entries")) {
+                entries.put((String) entry.get("name"), entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("AVISO: Manifesto do zip anterior ilegível, empacotando tudo de novo: " + manifest);
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * @return A entrada do .zip anterior, se ela veio do mesmo arquivo e o arquivo não mudou desde então.
+     */
+    private static ZipArchiveWriter.Entry previousEntry(Map<String, Object> entry, Source source) {
+        if (entry == null
+                || !entry.containsKey("headerOffset")
+                || !source.path.toAbsolutePath().toString().equals(entry.get("source"))
+                || ((Number) entry.get("size")).longValue() != source.size
+                || ((Number) entry.get("lastModified")).longValue() != source.lastModified) {
+            return null;
+        }
+        return new ZipArchiveWriter.Entry(source.name, ((Number) entry.get("method")).intValue(), source.lastModified,
+                source.size, ((Number) entry.get("crc")).longValue(), ((Number) entry.get("compressedSize")).longValue(),
+                ((Number) entry.get("headerOffset")).longValue(), ((Number) entry.get("dataOffset")).longValue());
+    }
+
+    /**
+     * Grava o manifesto do .zip recém-criado. Sem ele, o próximo empacotamento apenas começa do zero.
+     */
+    private static void writeManifest(Path zipFile, Path manifest, List<Source> sources, List<ZipArchiveWriter.Entry> entries) {
+        List<Map<String, Object>> described = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            ZipArchiveWriter.Entry entry = entries.get(i);
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("name", entry.getName());
+            fields.put("source", sources.get(i).path.toAbsolutePath().toString());
+            fields.put("size", entry.getSize());
+            fields.put("lastModified", entry.getLastModified());
+            fields.put("method", entry.getMethod());
+            fields.put("crc", entry.getCrc());
+            fields.put("compressedSize", entry.getCompressedSize());
+            fields.put("headerOffset", entry.getHeaderOffset());
+            fields.put("dataOffset", entry.getDataOffset());
+            described.add(fields);
+        }
+        try {
+            Map<String, Object> content = new LinkedHashMap<>();
+            content.put("archiveSize", Files.size(zipFile));
+            content.put("archiveModified", Files.getLastModifiedTime(zipFile).toMillis());
+            content.put("entries", described);
+            mapper.writeValue(manifest.toFile(), content);
+        } catch (IOException e) {
+            System.err.println("AVISO: Não foi possível gravar o manifesto do zip: " + manifest);
+        }
+    }
+
+    /**
+     * Decide se um arquivo é comprimido, comprimindo rapidamente uma amostra do meio dele (o começo de
+     * um PDF costuma ter texto sem compressão mesmo quando o resto já é comprimido).
+     */
+    private static int chooseMethod(Source source) throws IOException {
+        if (source.size == 0) return ZipArchiveWriter.STORED;
+        String name = source.name.toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1))) return ZipArchiveWriter.STORED;
+
+        ByteBuffer sample = ByteBuffer.allocate((int) Math.min(SAMPLE_SIZE, source.size));
+        try (FileChannel channel = FileChannel.open(source.path, StandardOpenOption.READ)) {
+            long position = (source.size - sample.capacity()) / 2;
+            while (sample.hasRemaining() && channel.read(sample, position + sample.position()) >= 0) {
+                // Lê a amostra inteira
+            }
+        }
+        sample.flip();
+        int sampled = sample.remaining();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(sample);
+            deflater.finish();
+            byte[] output = new byte[SAMPLE_SIZE];
+            long compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(output);
+            }
+            return compressed <= sampled * (1 - MIN_SAVING) ? ZipArchiveWriter.DEFLATED : ZipArchiveWriter.STORED;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Um arquivo a ser empacotado.
+     */
+    private static class Source {
+        private final Path path;
+        private final String name;
+        private final long size;
+        private final long lastModified;
+        private int method;
+        // A mesma entrada no .zip anterior, se o arquivo não mudou
+        private ZipArchiveWriter.Entry previous;
+
+        private Source(Path path, String name, long size, long lastModified) {
+            this.path = path;
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        private long chunks() {
+            // Um arquivo vazio ainda tem um bloco (vazio)
+            return Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        }
+    }
+
+    /**
+     * Os buffers de um bloco: a leitura (com espaço para o dicionário) e a saída do deflate.
+     */
+    private static class Buffers {
+        private final ByteBuffer input = ByteBuffer.allocateDirect(DICTIONARY_SIZE + CHUNK_SIZE);
+        // O deflate pode aumentar um pouco dados que não comprimem
+        private ByteBuffer output = ByteBuffer.allocateDirect(CHUNK_SIZE + CHUNK_SIZE / 64 + 1024);
+
+        private ByteBuffer grow() {
+            ByteBuffer bigger = ByteBuffer.allocateDirect(output.capacity() * 2);
+            bigger.put(output.flip());
+            output = bigger;
+            return output;
+        }
+    }
+
+    /**
+     * Um bloco lido (e, se for o caso, comprimido), pronto para ser escrito.
+     */
+    private static class Chunk {
+        private final Source source;
+        private final long index;
+        private final Buffers buffers;
+        // Os dados originais, para o CRC, e os dados a escrever
+        private final ByteBuffer data;
+        private final ByteBuffer output;
+
+        private Chunk(Source source, long index, Buffers buffers, ByteBuffer data, ByteBuffer output) {
+            this.source = source;
+            this.index = index;
+            this.buffers = buffers;
+            this.data = data;
+            this.output = output;
+        }
+    }
+
+    /**
+     * Resumo de um empacotamento.
+     */
+    public static class Result {
+        private final int files;
+        private final int stored;
+        private final int reused;
+        private final long bytesRead;
+        private final long archiveSize;
+        private final long elapsedNanos;
+
+        public Result(int files, int stored, int reused, long bytesRead, long archiveSize, long elapsedNanos) {
+            this.files = files;
+            this.stored = stored;
+            this.reused = reused;
+            this.bytesRead = bytesRead;
+            this.archiveSize = archiveSize;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getFiles() {
+            return files;
+        }
+
+        /**
+         * @return Quantos arquivos foram guardados sem compressão.
+         */
+        public int getStored() {
+            return stored;
+        }
+
+        /**
+         * @return Quantas entradas foram copiadas do .zip anterior.
+         */
+        public int getReused() {
+            return reused;
+        }
+
+        /**
+         * @return Os bytes lidos dos arquivos (as entradas copiadas do .zip anterior não contam).
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getArchiveSize() {
+            return archiveSize;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return Os megabytes lidos dos arquivos por segundo.
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : bytesRead / 1e6 / (elapsedNanos / 1e9);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,282 @@
+package com.pdfmanager.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Copies files to the library in the background, so adding a large PDF does not block the CLI.
+ * <p>
+ * Jobs run on a small pool of threads. At most {@value #CAPACITY} jobs wait in the queue; beyond that,
+ * {@link #submit} fails the new job at once with "queue full" rather than running the copy on the
+ * calling thread, so the CLI never blocks on a copy. {@link #submitWhenFree} waits for a free slot
+ * instead, for callers already on a background thread. A failed copy is retried up to
+ * {@value #MAX_ATTEMPTS} times, waiting twice as long before each new attempt. Every job exposes its
+ * state, progress and throughput while it runs.
+ */
+public class CopyQueue implements AutoCloseable {
+    private static final int THREADS = 2;
+    private static final int CAPACITY = 16;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 500;
+
+    private final FileManager fileManager;
+    private final ThreadPoolExecutor executor;
+    // One permit per job running or waiting, so the queue of the executor never grows past CAPACITY
+    private final Semaphore slots = new Semaphore(THREADS + CAPACITY);
+    private final List<CopyJob> jobs = new CopyOnWriteArrayList<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    public CopyQueue(FileManager fileManager) {
+        this.fileManager = fileManager;
+        AtomicInteger threads = new AtomicInteger(1);
+        // The slots bound the queue, and jobs are only handed over with a slot
+        this.executor = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                task -> {
+                    Thread thread = new Thread(task, "library-copy-" + threads.getAndIncrement());
+                    // Unfinished copies never keep the program alive; close() waits for them on quit
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queues the placement of a file in the library, without waiting. If the queue is full, the job
+     * fails at once with a "queue full" error and <i>onDone</i> is not called.
+     * @param title The title of the document, shown in the progress.
+     * @param filePath Source path.
+     * @param destination Destination path.
+     * @param lookup Finds the library file that already holds a content.
+     * @param onDone Called with the job once it is done or has failed for good. Runs on a background thread.
+     * @return The job, to follow its progress.
+     */
+    public CopyJob submit(String title, String filePath, String destination,
+                          FileManager.ContentLookup lookup, Consumer<CopyJob> onDone) {
+        CopyJob job = new CopyJob(nextId.getAndIncrement(), title, new File(filePath).length());
+        jobs.add(job);
+        if (!slots.tryAcquire()) {
+            job.fail("The copy queue is full (" + CAPACITY + " copies waiting)");
+            return job;
+        }
+        execute(job, filePath, destination, lookup, onDone);
+        return job;
+    }
+
+    /**
+     * Queues the placement of a file in the library, waiting for room in the queue if it is full.
+     * Must not be called from the CLI thread. Parameters as in {@link #submit}.
+     * @return The job, to follow its progress.
+     * @throws InterruptedException If interrupted while waiting for room in the queue.
+     */
+    public CopyJob submitWhenFree(String title, String filePath, String destination,
+                                  FileManager.ContentLookup lookup, Consumer<CopyJob> onDone) throws InterruptedException {
+        slots.acquire();
+        CopyJob job = new CopyJob(nextId.getAndIncrement(), title, new File(filePath).length());
+        jobs.add(job);
+        execute(job, filePath, destination, lookup, onDone);
+        return job;
+    }
+
+    private void execute(CopyJob job, String filePath, String destination,
+                         FileManager.ContentLookup lookup, Consumer<CopyJob> onDone) {
+        try {
+            executor.execute(() -> {
+                try {
+                    run(job, filePath, destination, lookup, onDone);
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The queue was closed
+            slots.release();
+            job.fail("The copy queue is closed");
+        }
+    }
+
+    private void run(CopyJob job, String filePath, String destination,
+                     FileManager.ContentLookup lookup, Consumer<CopyJob> onDone) {
+        long delay = RETRY_DELAY_MILLIS;
+        while (true) {
+            job.start();
+            try {
+                job.done(fileManager.placeInLibrary(filePath, destination, lookup, job::progress));
+                break;
+            } catch (IOException e) {
+                if (job.getAttempts() >= MAX_ATTEMPTS) {
+                    job.fail(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                    break;
+                }
+                job.retry();
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                job.fail("Interrupted");
+                break;
+            }
+            delay *= 2;
+        }
+        try {
+            onDone.accept(job);
+        } catch (RuntimeException e) {
+            System.err.println("ERROR: Failed to finish copy of '" + job.getTitle() + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Every job submitted since the program started, in submission order.
+     */
+    public List<CopyJob> jobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    /**
+     * @return The number of jobs not yet done or failed.
+     */
+    public int pending() {
+        int pending = 0;
+        for (CopyJob job : jobs) {
+            if (!job.isFinished()) pending++;
+        }
+        return pending;
+    }
+
+    /**
+     * Stops accepting jobs and waits for the queued ones to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Waits for as long as the copies take
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A file being copied to the library.
+     */
+    public static class CopyJob {
+        public enum State { QUEUED, RUNNING, RETRYING, DONE, FAILED }
+
+        private final int id;
+        private final String title;
+        private final long totalBytes;
+        // Written only by the thread running the job
+        private volatile State state = State.QUEUED;
+        private volatile long copiedBytes;
+        private volatile long startNanos;
+        private volatile long endNanos;
+        private volatile int attempts;
+        private volatile FileManager.Placement placement;
+        private volatile String error;
+
+        public CopyJob(int id, String title, long totalBytes) {
+            this.id = id;
+            this.title = title;
+            this.totalBytes = totalBytes;
+        }
+
+        private void start() {
+            attempts++;
+            copiedBytes = 0;
+            startNanos = System.nanoTime();
+            state = State.RUNNING;
+        }
+
+        private void progress(long bytes) {
+            copiedBytes += bytes;
+        }
+
+        private void retry() {
+            state = State.RETRYING;
+        }
+
+        private void done(FileManager.Placement placement) {
+            this.placement = placement;
+            endNanos = System.nanoTime();
+            state = State.DONE;
+        }
+
+        private void fail(String error) {
+            this.error = error;
+            endNanos = System.nanoTime();
+            state = State.FAILED;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public boolean isFinished() {
+            return state == State.DONE || state == State.FAILED;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getCopiedBytes() {
+            return copiedBytes;
+        }
+
+        /**
+         * @return The fraction of the file copied in the current attempt, from 0 to 1.
+         */
+        public double getProgress() {
+            if (state == State.DONE) return 1;
+            return totalBytes == 0 ? 0 : Math.min(1, (double) copiedBytes / totalBytes);
+        }
+
+        /**
+         * @return The bytes copied per second in the current (or last) attempt.
+         */
+        public double getThroughput() {
+            if (startNanos == 0) return 0;
+            long end = isFinished() ? endNanos : System.nanoTime();
+            double seconds = (end - startNanos) / 1e9;
+            return seconds <= 0 ? 0 : copiedBytes / seconds;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * @return The result of the placement, or <i>null</i> if the job is not done.
+         */
+        public FileManager.Placement getPlacement() {
+            return placement;
+        }
+
+        /**
+         * @return Why the last attempt failed, or <i>null</i> if the job did not fail.
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -2,12 +2,49 @@ package com.pdfmanager.utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
 
 public class FileManager {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long TRANSFER_CHUNK = 8 * 1024 * 1024;
+    // File systems that can share the blocks of a file between copies (copy on write)
+    private static final Set<String> REFLINK_FILE_SYSTEMS = Set.of("btrfs", "xfs", "apfs", "bcachefs", "zfs", "ocfs2");
+    private static final boolean MAC_OS = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("mac");
+
+    private final PlacementStrategy strategy;
+    // File systems where a reflink already failed, so it is not tried again
+    private final Set<FileStore> noReflink = ConcurrentHashMap.newKeySet();
+    // Guards the lookup of a content and the placement of the file holding it, so two copies of the same
+    // content placed at the same time are not both stored
+    private final Object placementLock = new Object();
+
+    public FileManager() {
+        this(PlacementStrategy.AUTO);
+    }
+
+    /**
+     * @param strategy How files are placed in the library.
+     */
+    public FileManager(PlacementStrategy strategy) {
+        this.strategy = strategy;
+    }
 
     /**
      * Checks if a path is valid.
@@ -23,12 +60,247 @@ public class FileManager {
      * Copies a file to the library.
      * @param filePath Source path.
      * @param destination Destination path.
+     * @return Returns <i>true</i> if the file was copied and <i>false</i> otherwise.
+     */
+    public boolean copyFileToLibrary(String filePath, String destination) {
+        return copyFileToLibrary(filePath, destination, hash -> null) != null;
+    }
+
+    /**
+     * Places a file in the library, storing each content only once.
+     * <p>
+     * The SHA-256 of the content is computed with a single read of the file: while it is copied, with the
+     * {@link PlacementStrategy#COPY} strategy, or before it is placed without passing through this
+     * process, with the others. If the library already holds the same content, the destination becomes
+     * a hard link to the existing file (or is left as it is, if it already is that file). Otherwise the
+     * file is placed next to the destination under a temporary name and then renamed to it, so the
+     * destination never holds a partial file.
+     * @param filePath Source path.
+     * @param destination Destination path.
+     * @param lookup Finds the library file that already holds a content.
+     * @return The result of the placement, or <i>null</i> if the file could not be placed.
      */
-    public void copyFileToLibrary(String filePath, String destination) {
+    public Placement copyFileToLibrary(String filePath, String destination, ContentLookup lookup) {
         try {
-            Files.copy(Path.of(filePath), Path.of(destination), StandardCopyOption.REPLACE_EXISTING);
+            return placeInLibrary(filePath, destination, lookup, bytes -> { });
         } catch (IOException e) {
             System.err.println("ERROR: Unable to copy file to library.");
+            return null;
+        }
+    }
+
+    /**
+     * Places a file in the library, storing each content only once. See
+     * {@link #copyFileToLibrary(String, String, ContentLookup)}.
+     * @param filePath Source path.
+     * @param destination Destination path.
+     * @param lookup Finds the library file that already holds a content.
+     * @param progress Receives the number of bytes placed since its last call.
+     * @return The result of the placement.
+     * @throws IOException Might throw an exception if unable to read the file or write the library.
+     */
+    public Placement placeInLibrary(String filePath, String destination, ContentLookup lookup, LongConsumer progress) throws IOException {
+        Path source = Path.of(filePath);
+        Path target = Path.of(destination).toAbsolutePath();
+        Path staged = target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            long size = Files.size(source);
+            PlacementStrategy used = strategyFor(source, target);
+            String hash;
+            if (used == PlacementStrategy.COPY) {
+                hash = copyAndHash(source, staged, progress);
+            } else {
+                hash = hash(source);
+                // Content already in the library is not placed at all
+                Placement duplicate = placeDuplicate(hash, target, size, lookup);
+                if (duplicate != null) {
+                    if (used == PlacementStrategy.MOVE) {
+                        Files.delete(source);
+                    }
+                    progress.accept(size);
+                    return duplicate;
+                }
+                used = stage(used, source, staged, progress);
+            }
+
+            synchronized (placementLock) {
+                // Another file with the same content may have been placed meanwhile. The staged file is deleted below
+                Placement duplicate = placeDuplicate(hash, target, size, lookup);
+                if (duplicate != null) return duplicate;
+                Files.move(staged, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                lookup.placed(hash, target);
+                return new Placement(hash, Placement.Kind.PLACED, size, used);
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        } finally {
+            try {
+                Files.deleteIfExists(staged);
+            } catch (IOException e) {
+                System.err.println("WARNING: Could not delete temporary file '" + staged + "'.");
+            }
+        }
+    }
+
+    /**
+     * Describes a file that is already in its place in the library as if it had just been placed there,
+     * computing its SHA-256 with a single read.
+     * @param file The file in the library.
+     * @return The placement, of kind {@link Placement.Kind#SKIPPED}.
+     * @throws IOException Might throw an exception if unable to read the file.
+     */
+    public static Placement inspect(Path file) throws IOException {
+        try {
+            long size = Files.size(file);
+            return new Placement(hash(file), Placement.Kind.SKIPPED, size, null);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Chooses how a file is placed. Links, moves and reflinks only work within a file system; across file
+     * systems the file is copied. With {@link PlacementStrategy#AUTO}, a reflink is used where the file
+     * system supports it, and a copy otherwise.
+     * <p>
+     * The copy is made through this process rather than by the kernel: the content has to be read to be
+     * hashed anyway, and hashing it while copying was as fast as hashing it and then letting the kernel
+     * copy it (see <i>PlacementBenchmark</i>, with the tests).
+     */
+    private PlacementStrategy strategyFor(Path source, Path target) throws IOException {
+        if (strategy == PlacementStrategy.COPY || strategy == PlacementStrategy.TRANSFER) return strategy;
+        FileStore store = Files.getFileStore(target.getParent());
+        if (!Files.getFileStore(source).equals(store)) return PlacementStrategy.COPY;
+        if (strategy == PlacementStrategy.AUTO) {
+            return supportsReflink(store) ? PlacementStrategy.REFLINK : PlacementStrategy.COPY;
+        }
+        return strategy;
+    }
+
+    private boolean supportsReflink(FileStore store) {
+        return REFLINK_FILE_SYSTEMS.contains(store.type().toLowerCase(Locale.ROOT)) && !noReflink.contains(store);
+    }
+
+    /**
+     * Places the content of a file at the staging path.
+     * @return The strategy actually used, as a reflink falls back to a kernel copy if it fails (the content
+     * is already hashed at this point, so it does not need to pass through this process).
+     */
+    private PlacementStrategy stage(PlacementStrategy used, Path source, Path staged, LongConsumer progress) throws IOException {
+        long size = Files.size(source);
+        switch (used) {
+            case HARD_LINK:
+                Files.createLink(staged, source);
+                progress.accept(size);
+                return used;
+            case MOVE:
+                Files.move(source, staged, StandardCopyOption.ATOMIC_MOVE);
+                progress.accept(size);
+                return used;
+            case REFLINK:
+                if (reflink(source, staged)) {
+                    progress.accept(size);
+                    return used;
+                }
+                noReflink.add(Files.getFileStore(staged.getParent()));
+                transfer(source, staged, progress);
+                return PlacementStrategy.TRANSFER;
+            default:
+                transfer(source, staged, progress);
+                return PlacementStrategy.TRANSFER;
+        }
+    }
+
+    /**
+     * Copies a file with {@link FileChannel#transferTo}, which lets the kernel copy the data
+     * (copy_file_range or sendfile on Linux) without passing it through this process.
+     */
+    private static void transfer(Path source, Path staged, LongConsumer progress) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(staged, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                // Transferred in chunks, so the progress is reported as the copy goes
+                long transferred = in.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), out);
+                position += transferred;
+                progress.accept(transferred);
+            }
+        }
+    }
+
+    /**
+     * Makes a copy that shares the blocks of the source until either is changed. Java has no API for it,
+     * so the system <i>cp</i> is used.
+     * @return <i>true</i> if the copy was made.
+     */
+    private static boolean reflink(Path source, Path staged) throws IOException {
+        ProcessBuilder builder = MAC_OS
+                ? new ProcessBuilder("cp", "-c", source.toString(), staged.toString())
+                : new ProcessBuilder("cp", "--reflink=always", "--", source.toString(), staged.toString());
+        builder.redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        try {
+            if (builder.start().waitFor() == 0) return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while copying '" + source + "'.", e);
+        } catch (IOException e) {
+            // No cp available
+        }
+        Files.deleteIfExists(staged);
+        return false;
+    }
+
+    /**
+     * Copies a file to the staging path, computing its SHA-256 in the same pass.
+     */
+    private static String copyAndHash(Path source, Path staged, LongConsumer progress) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = Files.newOutputStream(staged, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                progress.accept(read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String hash(Path source) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE * 16);
+            while (in.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Places a file whose content is already in the library, if it is.
+     * @return The result of the placement, or <i>null</i> if the content is not in the library or the
+     * file system has no hard links (then the content is stored again).
+     */
+    private Placement placeDuplicate(String hash, Path target, long size, ContentLookup lookup) throws IOException {
+        synchronized (placementLock) {
+            Path existing = lookup.find(hash);
+            if (existing == null || !Files.isRegularFile(existing)) return null;
+            if (Files.exists(target) && Files.isSameFile(existing, target)) {
+                return new Placement(hash, Placement.Kind.SKIPPED, size, null);
+            }
+            try {
+                Files.deleteIfExists(target);
+                Files.createLink(target, existing);
+                return new Placement(hash, Placement.Kind.LINKED, size, null);
+            } catch (IOException | UnsupportedOperationException e) {
+                return null;
+            }
         }
     }
 
@@ -54,4 +326,107 @@ public class FileManager {
         File directory = new File(path + File.separator + dirName);
         return directory.mkdir();
     }
+
+    /**
+     * How the content of a new file is placed in the library.
+     */
+    public enum PlacementStrategy {
+        // Reflink where supported, else a copy; chosen for each source and destination
+        AUTO,
+        // Copy through this process, computing the hash on the way
+        COPY,
+        // Copy by the kernel (FileChannel.transferTo)
+        TRANSFER,
+        // Copy on write clone that shares the blocks of the source (btrfs, XFS, APFS...)
+        REFLINK,
+        // The library file is a hard link to the source, so both are the same file
+        HARD_LINK,
+        // The source is moved into the library
+        MOVE;
+
+        /**
+         * @param name The name of a strategy, in any case, as written in config.json (e.g. "hard_link").
+         * @return The strategy, or {@link #AUTO} if the name is empty or unknown.
+         */
+        public static PlacementStrategy of(String name) {
+            if (name == null || name.isBlank()) return AUTO;
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                System.err.println("WARNING: Unknown placement strategy '" + name + "', using 'auto'.");
+                return AUTO;
+            }
+        }
+    }
+
+    /**
+     * Finds the files of the library by their content.
+     */
+    public interface ContentLookup {
+        /**
+         * @param hash The SHA-256 of a content, in hexadecimal.
+         * @return The library file that holds the content, or <i>null</i> if there is none.
+         * @throws IOException Might throw an exception if unable to read the database.
+         */
+        Path find(String hash) throws IOException;
+
+        /**
+         * Called after a file with new content is placed in the library.
+         * @param hash The SHA-256 of the content, in hexadecimal.
+         * @param file The library file.
+         */
+        default void placed(String hash, Path file) { }
+    }
+
+    /**
+     * The result of placing a file in the library.
+     */
+    public static class Placement {
+        public enum Kind {
+            // The content was new and was placed in the library
+            PLACED,
+            // The content was already in the library, and the destination was linked to it
+            LINKED,
+            // The destination already held the content
+            SKIPPED
+        }
+
+        private final String hash;
+        private final Kind kind;
+        private final long size;
+        private final PlacementStrategy strategy;
+
+        public Placement(String hash, Kind kind, long size, PlacementStrategy strategy) {
+            this.hash = hash;
+            this.kind = kind;
+            this.size = size;
+            this.strategy = strategy;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return How the content was placed, or <i>null</i> if it was already in the library.
+         */
+        public PlacementStrategy getStrategy() {
+            return strategy;
+        }
+
+        /**
+         * @return The bytes not written to the library because the content was already there.
+         */
+        public long getBytesSaved() {
+            return kind == Kind.PLACED ? 0 : size;
+        }
+    }
 }
@@ -0,0 +1,497 @@
+package com.pdfmanager.utils;
+
+import com.pdfmanager.db.DatabaseManager;
+import com.pdfmanager.files.Document;
+import com.pdfmanager.files.DocumentType;
+import com.pdfmanager.search.FullTextSearch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the catalog in sync with the files of the library while it runs: PDFs dropped into an author's
+ * directory are added, deleted PDFs are removed, and PDFs moved or renamed inside the library keep their
+ * metadata under their new title or author.
+ * <p>
+ * The library and its author directories are watched with a {@link WatchService}. Events only mark
+ * paths as dirty; once no event arrives for {@value #DEBOUNCE_MILLIS} ms (or every {@value #MAX_DELAY_MILLIS}
+ * ms while they keep coming), the dirty paths are compared with the last known state of the library and
+ * the changes are written to the catalog in one batch. A deleted file and a created file with the same
+ * identity (inode, or size and modification time) are a move. Files still being written are left for the
+ * next batch.
+ * <p>
+ * When the system drops events (OVERFLOW) the library is not scanned again in full: only the directories
+ * whose modification time changed since they were last listed are listed again. Directories that cannot
+ * be watched (e.g. past the inotify limit) are checked the same way every {@value #RESCAN_MILLIS} ms.
+ * <p>
+ * On start, every PDF without a document is added, since it may have been dropped while the sync was not
+ * running. Documents without a file on start are left alone, as their file may never have been copied.
+ */
+public class LibrarySync implements AutoCloseable {
+    private static final long DEBOUNCE_MILLIS = 500;
+    private static final long MAX_DELAY_MILLIS = 5000;
+    private static final long RESCAN_MILLIS = 30_000;
+
+    private final DatabaseManager db;
+    private final String defaultType;
+    private final Consumer<String> log;
+    private final Path library;
+    private final WatchService watcher;
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private final Map<Path, WatchKey> watched = new HashMap<>();
+    private final Set<Path> unwatched = new HashSet<>();
+    // Last known state of the PDFs of each author directory
+    private final Map<Path, Map<Path, FileState>> files = new HashMap<>();
+    // Modification time of each directory when it was last listed
+    private final Map<Path, FileTime> directories = new HashMap<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private final AtomicInteger added = new AtomicInteger();
+    private final AtomicInteger removed = new AtomicInteger();
+    private final AtomicInteger moved = new AtomicInteger();
+    private final AtomicInteger overflows = new AtomicInteger();
+
+    /**
+     * Scans the library, adds the PDFs that have no document and starts watching it.
+     * @param db The database.
+     * @param defaultType The type of the documents added for new files (<i>Book</i>, <i>Slide</i> or <i>ClassNote</i>).
+     * @param log Receives a line for each change written to the catalog. Called from a background thread.
+     * @throws IOException Might throw an exception if the library path is not set or cannot be watched.
+     */
+    public LibrarySync(DatabaseManager db, String defaultType, Consumer<String> log) throws IOException {
+        this.db = db;
+        this.defaultType = defaultType;
+        this.log = log;
+        String libraryPath = db.getLibraryPath();
+        if (libraryPath == null || libraryPath.isEmpty()) {
+            throw new IOException("The library path is not set.");
+        }
+        this.library = Path.of(libraryPath).toAbsolutePath().normalize();
+        this.watcher = library.getFileSystem().newWatchService();
+
+        Set<Path> dirty = new HashSet<>();
+        dirty.add(library);
+        Set<Path> unsettled = apply(dirty);
+
+        this.thread = new Thread(() -> run(unsettled), "library-sync");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run(Set<Path> dirty) {
+        boolean overflow = false;
+        long firstEvent = 0;
+        long lastRescan = System.currentTimeMillis();
+        while (!closed) {
+            WatchKey key;
+            try {
+                if (!dirty.isEmpty() || overflow) {
+                    key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                } else if (!unwatched.isEmpty()) {
+                    key = watcher.poll(RESCAN_MILLIS, TimeUnit.MILLISECONDS);
+                } else {
+                    key = watcher.take();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+            long now = System.currentTimeMillis();
+            if (key != null) {
+                Path directory = keys.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else if (directory != null) {
+                        dirty.add(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset() && directory != null) {
+                    // The directory itself was deleted
+                    dirty.add(directory);
+                }
+                if (firstEvent == 0) firstEvent = now;
+                // Waits for the events to settle, but not forever while they keep coming
+                if (now - firstEvent < MAX_DELAY_MILLIS) continue;
+            }
+
+            if (overflow || (!unwatched.isEmpty() && now - lastRescan >= RESCAN_MILLIS)) {
+                if (overflow) overflows.incrementAndGet();
+                deltaScan(dirty);
+                overflow = false;
+                lastRescan = now;
+            }
+            if (!dirty.isEmpty()) {
+                dirty = apply(dirty);
+            }
+            firstEvent = dirty.isEmpty() ? 0 : now;
+        }
+        // Changes seen before the sync was stopped are still written
+        if (!dirty.isEmpty()) {
+            apply(dirty);
+        }
+    }
+
+    /**
+     * Marks as dirty the directories whose modification time changed since they were last listed. Adding,
+     * removing or renaming a file changes the modification time of its directory, so nothing else is read.
+     */
+    private void deltaScan(Set<Path> dirty) {
+        for (Map.Entry<Path, FileTime> directory : directories.entrySet()) {
+            if (!Objects.equals(directory.getValue(), modifiedTime(directory.getKey()))) {
+                dirty.add(directory.getKey());
+            }
+        }
+    }
+
+    /**
+     * Compares the dirty paths with the last known state of the library and writes the differences to
+     * the catalog in one batch.
+     * @return The files still being written, to be checked again in the next batch.
+     */
+    private Set<Path> apply(Set<Path> dirty) {
+        // Dirty directories are expanded into their files, old and new
+        Set<Path> candidates = new HashSet<>();
+        Deque<Path> work = new ArrayDeque<>(dirty);
+        while (!work.isEmpty()) {
+            Path path = work.poll();
+            if (path.equals(library)) {
+                listLibrary(work);
+            } else if (library.equals(path.getParent())) {
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    listAuthor(path, candidates);
+                } else if (directories.containsKey(path)) {
+                    forget(path, candidates);
+                }
+            } else if (path.getParent() != null && library.equals(path.getParent().getParent()) && isPdf(path)) {
+                candidates.add(path);
+            }
+        }
+
+        Set<Path> unsettled = new HashSet<>();
+        Map<Path, FileState> created = new LinkedHashMap<>();
+        Map<Path, FileState> deleted = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (Path file : candidates) {
+            Map<Path, FileState> known = files.get(file.getParent());
+            FileState previous = known == null ? null : known.get(file);
+            FileState current = FileState.of(file);
+            if (current != null && now - current.modified < DEBOUNCE_MILLIS) {
+                unsettled.add(file);
+            } else if (previous == null && current != null) {
+                created.put(file, current);
+            } else if (previous != null && current == null) {
+                deleted.put(file, previous);
+            } else if (previous != null) {
+                known.put(file, current);
+            }
+        }
+
+        // A file deleted in one place and created in another is a move
+        Map<Object, Path> deletedByIdentity = new HashMap<>();
+        deleted.forEach((file, state) -> deletedByIdentity.put(state.identity(), file));
+        Map<Path, Path> moves = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<Path, FileState>> it = created.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, FileState> file = it.next();
+            Path from = deletedByIdentity.remove(file.getValue().identity());
+            if (from != null) {
+                moves.put(from, file.getKey());
+                deleted.remove(from);
+                it.remove();
+            }
+        }
+
+        try {
+            write(created, deleted.keySet(), moves);
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to update the catalog: " + e.getMessage());
+            return unsettled;
+        }
+
+        for (Path file : deleted.keySet()) {
+            remember(file, null);
+        }
+        for (Map.Entry<Path, Path> move : moves.entrySet()) {
+            FileState state = files.get(move.getKey().getParent()).get(move.getKey());
+            remember(move.getKey(), null);
+            remember(move.getValue(), state);
+        }
+        created.forEach(this::remember);
+        return unsettled;
+    }
+
+    /**
+     * Writes the changes of one batch to the catalog: one write per type for the moves and removals,
+     * and one for all the new documents.
+     */
+    private void write(Map<Path, FileState> created, Set<Path> deleted, Map<Path, Path> moves) throws IOException {
+        Map<DocumentType, Map<String, File>> relocations = new EnumMap<>(DocumentType.class);
+        Map<DocumentType, List<String>> removals = new EnumMap<>(DocumentType.class);
+        Map<Path, FileState> newFiles = new LinkedHashMap<>(created);
+
+        for (Map.Entry<Path, Path> move : moves.entrySet()) {
+            Document document = db.findByLibraryFile(move.getKey().toFile());
+            if (document == null) {
+                // A file the catalog never knew about is simply new
+                newFiles.put(move.getValue(), files.get(move.getKey().getParent()).get(move.getKey()));
+                continue;
+            }
+            relocations.computeIfAbsent(FullTextSearch.typeOf(document), type -> new LinkedHashMap<>())
+                    .put(document.getTitle(), move.getValue().toFile());
+        }
+        for (Path file : deleted) {
+            Document document = db.findByLibraryFile(file.toFile());
+            if (document != null) {
+                removals.computeIfAbsent(FullTextSearch.typeOf(document), type -> new ArrayList<>()).add(document.getTitle());
+            }
+        }
+
+        List<Map<String, Object>> buffers = new ArrayList<>();
+        Set<String> titles = new HashSet<>();
+        for (Map.Entry<Path, FileState> newFile : newFiles.entrySet()) {
+            Path file = newFile.getKey();
+            String title = file.getFileName().toString();
+            // Files placed by the program itself already have their document
+            if (db.findByLibraryFile(file.toFile()) != null) continue;
+            if (db.containsTitle(title) || !titles.add(title)) {
+                System.err.println("WARNING: '" + title + "' is already in the database under another author, '"
+                        + library.relativize(file) + "' was not added.");
+                continue;
+            }
+            Map<String, Object> buffer = new HashMap<>();
+            buffer.put("type", defaultType);
+            buffer.put("title", title);
+            buffer.put("authors", List.of(file.getParent().getFileName().toString()));
+            buffer.put("path", file.getParent().toString());
+            // Hashed like the files placed by the program, so the library can find this content again
+            try {
+                FileManager.Placement placement = FileManager.inspect(file);
+                buffer.put("contentHash", placement.getHash());
+                buffer.put("contentSize", placement.getSize());
+            } catch (IOException e) {
+                System.err.println("WARNING: Unable to hash '" + library.relativize(file) + "', it was added without its hash: "
+                        + e.getMessage());
+                buffer.put("contentSize", newFile.getValue().size);
+            }
+            // Only books have a year, which they require
+            if ("Book".equals(defaultType)) buffer.put("publishYear", 0);
+            buffers.add(buffer);
+        }
+
+        for (Map.Entry<DocumentType, Map<String, File>> relocation : relocations.entrySet()) {
+            for (Document document : db.relocateEntries(relocation.getKey(), relocation.getValue())) {
+                moved.incrementAndGet();
+                log.accept("Moved: " + document.getAuthors().get(0) + File.separator + document.getTitle());
+            }
+        }
+        for (Map.Entry<DocumentType, List<String>> removal : removals.entrySet()) {
+            for (Document document : db.removeEntries(removal.getKey(), removal.getValue())) {
+                removed.incrementAndGet();
+                log.accept("Removed: " + document.getAuthors().get(0) + File.separator + document.getTitle());
+            }
+        }
+        for (Document document : db.writeObjects(buffers)) {
+            added.incrementAndGet();
+            log.accept("Added: " + document.getAuthors().get(0) + File.separator + document.getTitle());
+        }
+    }
+
+    /**
+     * Lists the root of the library: new author directories are queued to be listed and directories
+     * that disappeared are queued to be forgotten.
+     */
+    private void listLibrary(Deque<Path> work) {
+        watch(library);
+        directories.put(library, modifiedTime(library));
+        Set<Path> present = new HashSet<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(library)) {
+            for (Path entry : entries) {
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    present.add(entry);
+                    if (!directories.containsKey(entry)) work.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to list the library: " + e.getMessage());
+            return;
+        }
+        for (Path directory : directories.keySet()) {
+            if (!directory.equals(library) && !present.contains(directory)) work.add(directory);
+        }
+    }
+
+    /**
+     * Lists an author directory, watching it if it is new. Its files, and the files known to have been
+     * in it, become candidates.
+     */
+    private void listAuthor(Path directory, Set<Path> candidates) {
+        watch(directory);
+        // Taken before listing, so a change made during the listing is still seen by the next delta scan
+        directories.put(directory, modifiedTime(directory));
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (isPdf(entry)) candidates.add(entry);
+            }
+        } catch (NoSuchFileException e) {
+            forget(directory, candidates);
+            return;
+        } catch (IOException e) {
+            System.err.println("ERROR: Unable to list '" + directory + "': " + e.getMessage());
+        }
+        Map<Path, FileState> known = files.get(directory);
+        if (known != null) candidates.addAll(known.keySet());
+    }
+
+    /**
+     * Stops watching a directory that no longer exists. The files known to have been in it become candidates.
+     */
+    private void forget(Path directory, Set<Path> candidates) {
+        directories.remove(directory);
+        unwatched.remove(directory);
+        // A renamed directory keeps its watch, which must not report events under the old name
+        WatchKey key = watched.remove(directory);
+        if (key != null) {
+            key.cancel();
+            keys.remove(key);
+        }
+        Map<Path, FileState> known = files.get(directory);
+        if (known != null) candidates.addAll(known.keySet());
+    }
+
+    private void watch(Path directory) {
+        if (watched.containsKey(directory) || closed) return;
+        try {
+            WatchKey key = directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+            keys.put(key, directory);
+            watched.put(directory, key);
+            unwatched.remove(directory);
+        } catch (IOException e) {
+            if (unwatched.add(directory)) {
+                System.err.println("WARNING: Unable to watch '" + directory + "' (" + e.getMessage()
+                        + "), it will be checked every " + RESCAN_MILLIS / 1000 + " s.");
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closing: the last batch is being written
+        }
+    }
+
+    private void remember(Path file, FileState state) {
+        if (state == null) {
+            Map<Path, FileState> known = files.get(file.getParent());
+            if (known != null) {
+                known.remove(file);
+                if (known.isEmpty()) files.remove(file.getParent());
+            }
+        } else {
+            files.computeIfAbsent(file.getParent(), directory -> new HashMap<>()).put(file, state);
+        }
+    }
+
+    private static FileTime modifiedTime(Path directory) {
+        try {
+            return Files.getLastModifiedTime(directory, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isPdf(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf");
+    }
+
+    public int getAdded() {
+        return added.get();
+    }
+
+    public int getRemoved() {
+        return removed.get();
+    }
+
+    public int getMoved() {
+        return moved.get();
+    }
+
+    /**
+     * @return How many times the system dropped events and a delta scan was needed.
+     */
+    public int getOverflows() {
+        return overflows.get();
+    }
+
+    /**
+     * Stops watching the library, after writing the changes already seen.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watcher.close();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * What is known about a file: enough to tell whether it changed and to recognize it after a move.
+     */
+    private static class FileState {
+        private final long size;
+        private final long modified;
+        private final Object fileKey;
+
+        private FileState(long size, long modified, Object fileKey) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+        }
+
+        /**
+         * @return The state of a regular file, or <i>null</i> if there is no such file.
+         */
+        static FileState of(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (!attributes.isRegularFile()) return null;
+                return new FileState(attributes.size(), attributes.lastModifiedTime().toMillis(), attributes.fileKey());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * The inode where the system has one; otherwise size and modification time, which a move keeps.
+         */
+        Object identity() {
+            return fileKey != null ? fileKey : size + ":" + modified;
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package com.pdfmanager.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdfmanager.db.AtomicFileWriter;
+import com.pdfmanager.db.DatabaseManager;
+import com.pdfmanager.files.Document;
+import com.pdfmanager.files.DocumentType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that the file of every document is in the library, at <i>libraryPath/author/title</i>, and is intact.
+ * <p>
+ * Each file must exist, have the size recorded when it was placed in the library and, for PDFs, start
+ * with a <i>%PDF-</i> header and end with a <i>%%EOF</i> trailer (within the first and last 1 KB, as PDF
+ * readers accept). A full check also reads every file and compares its SHA-256 with the stored hash; a
+ * quick check reads only the first and last kilobyte of each file. Files of the library that belong to
+ * no document are reported as orphaned.
+ * <p>
+ * A document still marked as pending is skipped only while its copy is in progress. One whose copy is
+ * no longer running (it failed, or the program stopped during it) is checked like any other, so a file
+ * that never reached the library is reported as missing.
+ * <p>
+ * Documents are checked in parallel with fork-join: the list is split in halves until each task has a
+ * few documents, so idle threads steal the work left by threads busy with large files. Files that are
+ * hard links to the same content (see {@link FileManager#copyFileToLibrary}) are hashed only once.
+ * The result is written as a JSON report.
+ */
+public class LibraryVerifier {
+    // Documents checked by a task without splitting it further
+    private static final int THRESHOLD = 4;
+    // Readers in flight: more than the cores, so the disk always has requests queued while hashes are computed
+    private static final int MIN_PARALLELISM = 4;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    // PDF readers look for the header and the trailer within the first and last kilobyte
+    private static final int MARKER_WINDOW = 1024;
+    private static final byte[] HEADER = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRAILER = "%%EOF".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final DatabaseManager db;
+
+    public LibraryVerifier(DatabaseManager db) {
+        this.db = db;
+    }
+
+    /**
+     * Checks every document of the library.
+     * @param checkHashes <i>true</i> to read every file and compare its hash, <i>false</i> for a quick check.
+     * @param copying The titles of the documents whose file is being copied to the library right now.
+     * @return The report.
+     * @throws IOException Might throw an exception if the library path is not set or the database cannot be read.
+     */
+    public Report verify(boolean checkHashes, Set<String> copying) throws IOException {
+        String libraryPath = db.getLibraryPath();
+        if (libraryPath == null || libraryPath.isEmpty()) {
+            throw new IOException("The library path is not set.");
+        }
+        Path library = Path.of(libraryPath).toAbsolutePath().normalize();
+        long start = System.nanoTime();
+
+        List<Check> checks = new ArrayList<>();
+        for (DocumentType type : DocumentType.values()) {
+            for (Document document : documentsOf(type)) {
+                checks.add(new Check(type, document));
+            }
+        }
+        // Where each document's file should be, to tell the orphans apart
+        Set<Path> expected = new HashSet<>();
+        for (Check check : checks) {
+            if (check.file(library) != null) expected.add(check.file(library));
+        }
+
+        Verification verification = new Verification(library, checkHashes, copying);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(MIN_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+        List<String> orphaned;
+        try {
+            ForkJoinTask<Void> task = pool.submit(new VerifyTask(verification, checks, 0, checks.size()));
+            // The library is listed while the documents are checked
+            orphaned = findOrphans(library, expected);
+            task.join();
+        } finally {
+            pool.shutdown();
+        }
+
+        List<Problem> missing = new ArrayList<>(verification.missing);
+        List<Problem> corrupt = new ArrayList<>(verification.corrupt);
+        missing.sort(Comparator.comparing(Problem::getFile));
+        corrupt.sort(Comparator.comparing(Problem::getFile));
+        orphaned.sort(null);
+        return new Report(library.toString(), Instant.now().toString(), checkHashes, checks.size(),
+                verification.verified.get(), verification.pending.get(), verification.unhashed.get(),
+                verification.bytesRead.get(), System.nanoTime() - start, missing, corrupt, orphaned);
+    }
+
+    /**
+     * Writes a report as JSON, atomically.
+     * @param report The report.
+     * @param file The file to write.
+     * @throws IOException Might throw an exception if unable to write the file.
+     */
+    public static void writeReport(Report report, File file) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        AtomicFileWriter.write(file, out -> mapper.writerWithDefaultPrettyPrinter().writeValue(out, report));
+    }
+
+    private List<? extends Document> documentsOf(DocumentType type) throws IOException {
+        switch (type) {
+            case BOOK:
+                return db.getBooks();
+            case SLIDE:
+                return db.getSlides();
+            default:
+                return db.getClassNotes();
+        }
+    }
+
+    /**
+     * Lists the files of the library (in the root and in the author directories) that belong to no document.
+     * Hidden files, such as the temporary files of copies in progress, are ignored.
+     */
+    private static List<String> findOrphans(Path library, Set<Path> expected) throws IOException {
+        List<String> orphans = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(library)) {
+            for (Path entry : entries) {
+                if (entry.getFileName().toString().startsWith(".")) continue;
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(entry)) {
+                        for (Path file : files) {
+                            if (!file.getFileName().toString().startsWith(".") && !expected.contains(file)
+                                    && Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+                                orphans.add(file.toString());
+                            }
+                        }
+                    }
+                } else if (!expected.contains(entry)) {
+                    orphans.add(entry.toString());
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // No library directory yet: every document is missing and nothing is orphaned
+        }
+        return orphans;
+    }
+
+    /**
+     * Checks a range of documents, splitting it in halves while it is larger than {@value #THRESHOLD}.
+     */
+    private static class VerifyTask extends RecursiveAction {
+        private final Verification verification;
+        private final List<Check> checks;
+        private final int from;
+        private final int to;
+
+        VerifyTask(Verification verification, List<Check> checks, int from, int to) {
+            this.verification = verification;
+            this.checks = checks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    verification.check(checks.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new VerifyTask(verification, checks, from, middle), new VerifyTask(verification, checks, middle, to));
+        }
+    }
+
+    /**
+     * The state shared by the tasks of one verification.
+     */
+    private static class Verification {
+        private final Path library;
+        private final boolean checkHashes;
+        private final Set<String> copying;
+        private final Queue<Problem> missing = new ConcurrentLinkedQueue<>();
+        private final Queue<Problem> corrupt = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger verified = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger unhashed = new AtomicInteger();
+        private final AtomicLong bytesRead = new AtomicLong();
+        // Hash of each file content by inode, so hard links are read once
+        private final ConcurrentHashMap<Object, CompletableFuture<String>> hashes = new ConcurrentHashMap<>();
+
+        Verification(Path library, boolean checkHashes, Set<String> copying) {
+            this.library = library;
+            this.checkHashes = checkHashes;
+            this.copying = copying;
+        }
+
+        void check(Check check) {
+            Document document = check.document;
+            if (document.isPending() && copying.contains(document.getTitle())) {
+                // Still being copied in the background
+                pending.incrementAndGet();
+                return;
+            }
+            Path file = check.file(library);
+            if (file == null) {
+                missing.add(new Problem(check, "", "no author"));
+                return;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                missing.add(new Problem(check, file.toString(), document.isPending()
+                        ? "not found, and no copy to the library is in progress" : "not found"));
+                return;
+            }
+            if (!attributes.isRegularFile()) {
+                missing.add(new Problem(check, file.toString(), "not a regular file"));
+                return;
+            }
+            String problem = inspect(document, file, attributes);
+            if (problem != null) {
+                corrupt.add(new Problem(check, file.toString(), problem));
+            } else {
+                verified.incrementAndGet();
+            }
+        }
+
+        /**
+         * @return What is wrong with the file, or <i>null</i> if it is intact.
+         */
+        private String inspect(Document document, Path file, BasicFileAttributes attributes) {
+            long size = attributes.size();
+            if (document.getContentSize() > 0 && size != document.getContentSize()) {
+                return "size is " + size + " bytes, expected " + document.getContentSize();
+            }
+            try {
+                if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf")) {
+                    String problem = inspectPdf(file, size);
+                    if (problem != null) return problem;
+                }
+                if (!checkHashes) return null;
+                if (document.getContentHash() == null) {
+                    unhashed.incrementAndGet();
+                    return null;
+                }
+                String hash = hash(file, attributes.fileKey());
+                if (!document.getContentHash().equalsIgnoreCase(hash)) {
+                    return "content hash " + hash + " does not match the stored " + document.getContentHash();
+                }
+                return null;
+            } catch (IOException e) {
+                return "unreadable: " + e.getMessage();
+            }
+        }
+
+        private String inspectPdf(Path file, long size) throws IOException {
+            if (size < HEADER.length + TRAILER.length) return "too small to be a PDF (" + size + " bytes)";
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(MARKER_WINDOW, size));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                readFully(channel, buffer, 0);
+                if (!contains(buffer, HEADER)) return "no %PDF- header";
+                buffer.clear();
+                readFully(channel, buffer, size - buffer.capacity());
+                if (!contains(buffer, TRAILER)) return "no %%EOF trailer, the file may be truncated";
+            }
+            return null;
+        }
+
+        private String hash(Path file, Object fileKey) throws IOException {
+            if (fileKey == null) return computeHash(file);
+            CompletableFuture<String> future = new CompletableFuture<>();
+            CompletableFuture<String> existing = hashes.putIfAbsent(fileKey, future);
+            if (existing != null) {
+                try {
+                    return existing.join();
+                } catch (RuntimeException e) {
+                    throw new IOException(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                }
+            }
+            try {
+                String hash = computeHash(file);
+                future.complete(hash);
+                return hash;
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        private String computeHash(Path file) throws IOException {
+            MessageDigest digest = DIGESTS.get();
+            digest.reset();
+            ByteBuffer buffer = BUFFERS.get();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer.clear();
+                int read;
+                while ((read = channel.read(buffer)) >= 0) {
+                    if (read == 0) continue;
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                    bytesRead.addAndGet(read);
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) throw new IOException("unexpected end of file");
+            }
+            buffer.flip();
+        }
+
+        private static boolean contains(ByteBuffer buffer, byte[] marker) {
+            outer:
+            for (int i = buffer.position(); i <= buffer.limit() - marker.length; i++) {
+                for (int j = 0; j < marker.length; j++) {
+                    if (buffer.get(i + j) != marker[j]) continue outer;
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A document to be checked.
+     */
+    private static class Check {
+        private final DocumentType type;
+        private final Document document;
+
+        Check(DocumentType type, Document document) {
+            this.type = type;
+            this.document = document;
+        }
+
+        /**
+         * @return Where the file of the document should be, or <i>null</i> if the document has no author.
+         */
+        Path file(Path library) {
+            List<String> authors = document.getAuthors();
+            if (authors == null || authors.isEmpty() || authors.get(0) == null || document.getTitle() == null) return null;
+            return library.resolve(authors.get(0)).resolve(document.getTitle());
+        }
+    }
+
+    /**
+     * A missing or corrupt file.
+     */
+    public static class Problem {
+        private final String type;
+        private final String title;
+        private final String file;
+        private final String reason;
+
+        Problem(Check check, String file, String reason) {
+            this(check.type.name(), check.document.getTitle(), file, reason);
+        }
+
+        public Problem(String type, String title, String file, String reason) {
+            this.type = type;
+            this.title = title;
+            this.file = file;
+            this.reason = reason;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+
+    /**
+     * Result of a verification, written as JSON by {@link #writeReport}.
+     */
+    public static class Report {
+        private final String library;
+        private final String checkedAt;
+        private final boolean hashesChecked;
+        private final int documents;
+        private final int verified;
+        private final int pending;
+        private final int unhashed;
+        private final long bytesRead;
+        private final long elapsedNanos;
+        private final List<Problem> missing;
+        private final List<Problem> corrupt;
+        private final List<String> orphaned;
+
+        public Report(String library, String checkedAt, boolean hashesChecked, int documents, int verified, int pending,
+                      int unhashed, long bytesRead, long elapsedNanos, List<Problem> missing, List<Problem> corrupt,
+                      List<String> orphaned) {
+            this.library = library;
+            this.checkedAt = checkedAt;
+            this.hashesChecked = hashesChecked;
+            this.documents = documents;
+            this.verified = verified;
+            this.pending = pending;
+            this.unhashed = unhashed;
+            this.bytesRead = bytesRead;
+            this.elapsedNanos = elapsedNanos;
+            this.missing = missing;
+            this.corrupt = corrupt;
+            this.orphaned = orphaned;
+        }
+
+        public String getLibrary() {
+            return library;
+        }
+
+        public String getCheckedAt() {
+            return checkedAt;
+        }
+
+        public boolean isHashesChecked() {
+            return hashesChecked;
+        }
+
+        public int getDocuments() {
+            return documents;
+        }
+
+        /**
+         * @return The documents whose file passed every check.
+         */
+        public int getVerified() {
+            return verified;
+        }
+
+        /**
+         * @return The documents skipped because their file was being copied to the library during the check.
+         */
+        public int getPending() {
+            return pending;
+        }
+
+        /**
+         * @return The documents without a stored hash, whose content could not be compared.
+         */
+        public int getUnhashed() {
+            return unhashed;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : (bytesRead / (1024.0 * 1024.0)) / (elapsedNanos / 1e9);
+        }
+
+        public List<Problem> getMissing() {
+            return missing;
+        }
+
+        public List<Problem> getCorrupt() {
+            return corrupt;
+        }
+
+        public List<String> getOrphaned() {
+            return orphaned;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.pdfmanager.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Escreve um arquivo .zip entrada por entrada, recebendo os dados de cada uma já no formato final
+ * (sem compressão, ou já comprimidos com deflate).
+ * <p>
+ * Ao contrário de {@link java.util.zip.ZipOutputStream}, que comprime tudo o que recebe em uma única
+ * thread, esta classe aceita dados comprimidos em outro lugar (por várias threads, ou copiados de um
+ * arquivo .zip anterior). O CRC e o tamanho comprimido de cada entrada são gravados no cabeçalho local
+ * depois dos dados, então os arquivos são lidos uma única vez. Arquivos e pacotes acima de 4 GB usam
+ * as extensões ZIP64.
+ */
+public class ZipArchiveWriter implements Closeable {
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP64_ENTRIES = 0xFFFF;
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final short ZIP64_EXTRA = 0x0001;
+    // Bit 11: nomes em UTF-8
+    private static final short UTF8_FLAG = 0x0800;
+    private static final short VERSION = 20;
+    private static final short VERSION_ZIP64 = 45;
+
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private final List<Entry> entries = new ArrayList<>();
+    // Posição no pacote do primeiro byte escrito no arquivo (sempre 0, exceto nos testes de ZIP64)
+    private final long base;
+    private long position;
+    // Entrada sendo escrita, ou null
+    private Entry current;
+    private boolean currentZip64;
+    private boolean closed;
+
+    public ZipArchiveWriter(Path file) throws IOException {
+        this(file, 0);
+    }
+
+    /**
+     * Escreve o pacote como se ele começasse depois de <i>base</i> bytes que não estão no arquivo, para
+     * testar as posições acima de 4 GB sem escrever 4 GB.
+     */
+    ZipArchiveWriter(Path file, long base) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        this.base = base;
+        this.position = base;
+    }
+
+    /**
+     * Começa uma entrada. Os dados vêm em seguida por {@link #write(ByteBuffer)}.
+     * @param name O nome da entrada.
+     * @param method {@link #STORED} ou {@link #DEFLATED}.
+     * @param lastModified A data de modificação do arquivo, em milissegundos.
+     * @param size O tamanho do arquivo sem compressão.
+     * @throws IOException Se ocorrer um erro na escrita.
+     */
+    public void beginEntry(String name, int method, long lastModified, long size) throws IOException {
+        if (current != null) throw new IllegalStateException("Entry '" + current.name + "' was not ended");
+        current = new Entry(name, method, lastModified, size);
+        current.headerOffset = position;
+        // O tamanho comprimido só é conhecido no fim; o deflate quase nunca aumenta os dados, então uma margem basta
+        currentZip64 = size + (size >>> 10) + (1 << 20) >= ZIP64_LIMIT;
+        writeLocalHeader(current, currentZip64);
+        current.dataOffset = position;
+    }
+
+    /**
+     * Escreve dados da entrada atual, no formato do seu método.
+     * @param data Os dados, do position ao limit.
+     * @throws IOException Se ocorrer um erro na escrita.
+     */
+    public void write(ByteBuffer data) throws IOException {
+        if (current == null) throw new IllegalStateException("No entry was begun");
+        writeFully(data);
+    }
+
+    /**
+     * Termina a entrada atual, gravando o seu CRC e tamanhos no cabeçalho local.
+     * @param crc O CRC-32 dos dados sem compressão.
+     * @return A entrada escrita.
+     * @throws IOException Se ocorrer um erro na escrita, ou se o tamanho comprimido não couber no cabeçalho.
+     */
+    public Entry endEntry(long crc) throws IOException {
+        if (current == null) throw new IllegalStateException("No entry was begun");
+        Entry entry = current;
+        current = null;
+        entry.crc = crc;
+        entry.compressedSize = position - entry.dataOffset;
+        if (!currentZip64 && entry.compressedSize >= ZIP64_LIMIT) {
+            throw new IOException("Entry '" + entry.name + "' is too large");
+        }
+        header.clear();
+        header.putInt((int) crc);
+        if (currentZip64) {
+            header.putInt((int) ZIP64_LIMIT).putInt((int) ZIP64_LIMIT);
+            header.flip();
+            channel.write(header, entry.headerOffset - base + 14);
+            header.clear();
+            header.putLong(entry.size).putLong(entry.compressedSize);
+            // Campo extra ZIP64: depois do cabeçalho fixo, do nome e do id/tamanho do campo
+            channel.write(header.flip(), entry.dataOffset - base - 16);
+        } else {
+            header.putInt((int) entry.compressedSize).putInt((int) entry.size);
+            channel.write(header.flip(), entry.headerOffset - base + 14);
+        }
+        entries.add(entry);
+        return entry;
+    }
+
+    /**
+     * Copia uma entrada já pronta de outro arquivo .zip, sem descomprimir os dados.
+     * @param entry A entrada no outro arquivo.
+     * @param source O outro arquivo.
+     * @return A entrada escrita neste arquivo.
+     * @throws IOException Se ocorrer um erro na leitura ou na escrita.
+     */
+    public Entry copyEntry(Entry entry, FileChannel source) throws IOException {
+        if (current != null) throw new IllegalStateException("Entry '" + current.name + "' was not ended");
+        Entry copy = new Entry(entry.name, entry.method, entry.lastModified, entry.size);
+        copy.crc = entry.crc;
+        copy.compressedSize = entry.compressedSize;
+        copy.headerOffset = position;
+        boolean zip64 = entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT;
+        writeLocalHeader(copy, zip64);
+        copy.dataOffset = position;
+        long copied = 0;
+        while (copied < entry.compressedSize) {
+            long transferred = source.transferTo(entry.dataOffset + copied, entry.compressedSize - copied, channel);
+            if (transferred <= 0) throw new IOException("Entry '" + entry.name + "' is truncated in the previous archive");
+            copied += transferred;
+        }
+        position += copied;
+        entries.add(copy);
+        return copy;
+    }
+
+    /**
+     * Confere se uma entrada ainda está onde diz em outro arquivo .zip: o cabeçalho local na sua posição tem
+     * a assinatura, o nome, o método e o CRC da entrada, os dados começam logo depois dele e cabem no arquivo.
+     * @param entry A entrada no outro arquivo.
+     * @param source O outro arquivo.
+     * @return Se a entrada pode ser copiada por {@link #copyEntry}.
+     * @throws IOException Se ocorrer um erro na leitura.
+     */
+    public static boolean isIntact(Entry entry, FileChannel source) throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer local = ByteBuffer.allocate(30 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        if (entry.headerOffset < 0 || entry.dataOffset + entry.compressedSize > source.size()) return false;
+        while (local.hasRemaining()) {
+            if (source.read(local, entry.headerOffset + local.position()) < 0) return false;
+        }
+        local.flip();
+        int extra = local.getShort(28) & 0xFFFF;
+        return local.getInt(0) == LOCAL_HEADER
+                && (local.getShort(8) & 0xFFFF) == entry.method
+                && (local.getInt(14) & ZIP64_LIMIT) == entry.crc
+                && (local.getShort(26) & 0xFFFF) == name.length
+                && local.slice(30, name.length).equals(ByteBuffer.wrap(name))
+                && entry.headerOffset + 30 + name.length + extra == entry.dataOffset;
+    }
+
+    /**
+     * @return O número de bytes escritos até agora.
+     */
+    public long size() {
+        return position;
+    }
+
+    /**
+     * @return As entradas terminadas, na ordem em que foram escritas.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Escreve o diretório central e fecha o arquivo.
+     * @throws IOException Se ocorrer um erro na escrita.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try (channel) {
+            if (current != null) throw new IOException("Entry '" + current.name + "' was not ended");
+            long centralOffset = position;
+            // O diretório central é escrito em blocos do tamanho do buffer
+            header.clear();
+            for (Entry entry : entries) {
+                writeCentralHeader(entry);
+            }
+            writeFully(header.flip());
+            long centralSize = position - centralOffset;
+            boolean zip64 = entries.size() >= ZIP64_ENTRIES || centralOffset >= ZIP64_LIMIT || centralSize >= ZIP64_LIMIT;
+            header.clear();
+            if (zip64) {
+                long zip64End = position;
+                header.putInt(ZIP64_END_OF_CENTRAL).putLong(44).putShort(VERSION_ZIP64).putShort(VERSION_ZIP64)
+                        .putInt(0).putInt(0).putLong(entries.size()).putLong(entries.size())
+                        .putLong(centralSize).putLong(centralOffset);
+                header.putInt(ZIP64_LOCATOR).putInt(0).putLong(zip64End).putInt(1);
+            }
+            header.putInt(END_OF_CENTRAL).putShort((short) 0).putShort((short) 0)
+                    .putShort((short) Math.min(entries.size(), ZIP64_ENTRIES))
+                    .putShort((short) Math.min(entries.size(), ZIP64_ENTRIES))
+                    .putInt((int) Math.min(centralSize, ZIP64_LIMIT))
+                    .putInt((int) Math.min(centralOffset, ZIP64_LIMIT))
+                    .putShort((short) 0);
+            writeFully(header.flip());
+        }
+    }
+
+    private void writeLocalHeader(Entry entry, boolean zip64) throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        header.clear();
+        header.putInt(LOCAL_HEADER)
+                .putShort(zip64 ? VERSION_ZIP64 : VERSION)
+                .putShort(UTF8_FLAG)
+                .putShort((short) entry.method)
+                .putInt(dosTime(entry.lastModified))
+                .putInt((int) entry.crc);
+        if (zip64) {
+            header.putInt((int) ZIP64_LIMIT).putInt((int) ZIP64_LIMIT);
+        } else {
+            header.putInt((int) entry.compressedSize).putInt((int) entry.size);
+        }
+        header.putShort((short) name.length).putShort((short) (zip64 ? 20 : 0)).put(name);
+        if (zip64) {
+            header.putShort(ZIP64_EXTRA).putShort((short) 16).putLong(entry.size).putLong(entry.compressedSize);
+        }
+        writeFully(header.flip());
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        // Só os valores que não cabem em 32 bits vão para o campo extra ZIP64, nesta ordem
+        boolean bigSize = entry.size >= ZIP64_LIMIT;
+        boolean bigCompressed = entry.compressedSize >= ZIP64_LIMIT;
+        boolean bigOffset = entry.headerOffset >= ZIP64_LIMIT;
+        int extra = (bigSize ? 8 : 0) + (bigCompressed ? 8 : 0) + (bigOffset ? 8 : 0);
+        boolean zip64 = extra > 0;
+        if (header.remaining() < 46 + name.length + 4 + extra) {
+            writeFully(header.flip());
+            header.clear();
+        }
+        header.putInt(CENTRAL_HEADER)
+                .putShort(VERSION_ZIP64)
+                .putShort(zip64 ? VERSION_ZIP64 : VERSION)
+                .putShort(UTF8_FLAG)
+                .putShort((short) entry.method)
+                .putInt(dosTime(entry.lastModified))
+                .putInt((int) entry.crc)
+                .putInt((int) Math.min(entry.compressedSize, ZIP64_LIMIT))
+                .putInt((int) Math.min(entry.size, ZIP64_LIMIT))
+                .putShort((short) name.length)
+                .putShort((short) (zip64 ? extra + 4 : 0))
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putInt(0)
+                .putInt((int) Math.min(entry.headerOffset, ZIP64_LIMIT))
+                .put(name);
+        if (zip64) {
+            header.putShort(ZIP64_EXTRA).putShort((short) extra);
+            if (bigSize) header.putLong(entry.size);
+            if (bigCompressed) header.putLong(entry.compressedSize);
+            if (bigOffset) header.putLong(entry.headerOffset);
+        }
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data);
+        }
+    }
+
+    /**
+     * Converte uma data para o formato do MS-DOS usado nos cabeçalhos (precisão de 2 segundos, a partir de 1980).
+     */
+    private static int dosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+                | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    /**
+     * Uma entrada escrita no arquivo .zip, com a posição dos seus dados.
+     */
+    public static class Entry {
+        private final String name;
+        private final int method;
+        private final long lastModified;
+        private final long size;
+        private long crc;
+        private long compressedSize;
+        private long headerOffset;
+        private long dataOffset;
+
+        public Entry(String name, int method, long lastModified, long size) {
+            this.name = name;
+            this.method = method;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        /**
+         * Uma entrada já escrita em um arquivo .zip anterior, para ser copiada por {@link #copyEntry}.
+         */
+        public Entry(String name, int method, long lastModified, long size, long crc, long compressedSize,
+                     long headerOffset, long dataOffset) {
+            this(name, method, lastModified, size);
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.headerOffset = headerOffset;
+            this.dataOffset = dataOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getHeaderOffset() {
+            return headerOffset;
+        }
+
+        public long getDataOffset() {
+            return dataOffset;
+        }
+    }
+}
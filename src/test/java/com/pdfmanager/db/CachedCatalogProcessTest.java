@@ -0,0 +1,234 @@
+package com.pdfmanager.db;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdfmanager.files.Book;
+import com.pdfmanager.files.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Several processes and threads write the same catalog file at once; no update may be lost.
+ */
+public class CachedCatalogProcessTest {
+    private static final int PROCESSES = 4;
+    private static final int THREADS = 2;
+    private static final int PUTS = 40;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void processesDoNotLoseUpdates() throws Exception {
+        assertNoLostUpdates(false);
+    }
+
+    @Test
+    public void journaledProcessesDoNotLoseUpdates() throws Exception {
+        assertNoLostUpdates(true);
+    }
+
+    private void assertNoLostUpdates(boolean journaled) throws Exception {
+        File file = new File(folder.getRoot(), "books.json");
+        File go = new File(folder.getRoot(), "go");
+        open(file, journaled).put(book("seed"));
+
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < PROCESSES; i++) {
+            processes.add(new ProcessBuilder(
+                    new File(System.getProperty("java.home"), "bin/java").getPath(),
+                    "-cp", System.getProperty("java.class.path"),
+                    Writer.class.getName(), file.getPath(), go.getPath(), "p" + i, Boolean.toString(journaled))
+                    .inheritIO()
+                    .start());
+        }
+        // Every process starts writing at the same time, once they are all running
+        Files.createFile(go.toPath());
+        for (Process process : processes) {
+            assertTrue("A writer did not finish", process.waitFor(2, TimeUnit.MINUTES));
+            assertEquals("A writer failed", 0, process.exitValue());
+        }
+
+        // Read back from the file by a fresh catalog, not from the memory of a writer
+        Set<String> titles = new HashSet<>();
+        for (Book book : open(file, journaled).get()) {
+            titles.add(book.getTitle());
+        }
+        assertEquals(1 + PROCESSES * THREADS * PUTS, titles.size());
+        assertTrue(titles.contains("seed"));
+        for (int p = 0; p < PROCESSES; p++) {
+            for (int t = 0; t < THREADS; t++) {
+                for (int i = 0; i < PUTS; i++) {
+                    assertTrue("Lost update p" + p + "-" + t + "-" + i, titles.contains("p" + p + "-" + t + "-" + i));
+                }
+            }
+        }
+    }
+
+    /**
+     * A reader parses the file without the file lock. Another process replaces the file while the reader
+     * is stopped in the middle of it; the reader must not take what it parsed for the new content of the
+     * file, or its next write would drop the other process's update.
+     */
+    @Test
+    public void fileReplacedWhileParsingIsReloadedBeforeWriting() throws Exception {
+        File file = new File(folder.getRoot(), "items.json");
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            items.add(new Item("item-" + i));
+        }
+        items.add(2500, new Item(Item.PAUSE));
+        openItems(file).write(items);
+
+        CountDownLatch paused = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        Item.onPause = () -> {
+            Item.onPause = null;
+            paused.countDown();
+            try {
+                resume.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        CachedCatalog<Item> reader = openItems(file);
+        List<Exception> failures = new ArrayList<>();
+        Thread reading = new Thread(() -> {
+            try {
+                reader.find("item-0");
+            } catch (Exception e) {
+                failures.add(e);
+            }
+        });
+        try {
+            reading.start();
+            assertTrue("The reader did not reach the paused entry", paused.await(1, TimeUnit.MINUTES));
+
+            Process writer = new ProcessBuilder(
+                    new File(System.getProperty("java.home"), "bin/java").getPath(),
+                    "-cp", System.getProperty("java.class.path"),
+                    ItemWriter.class.getName(), file.getPath(), "external")
+                    .inheritIO()
+                    .start();
+            assertTrue("The writer did not finish", writer.waitFor(2, TimeUnit.MINUTES));
+            assertEquals("The writer failed", 0, writer.exitValue());
+        } finally {
+            Item.onPause = null;
+            resume.countDown();
+            reading.join();
+        }
+        assertTrue(failures.toString(), failures.isEmpty());
+
+        reader.put(new Item("mine"));
+        CachedCatalog<Item> check = openItems(file);
+        assertTrue("Lost the update of the other process", check.find("external") != null);
+        assertTrue(check.find("mine") != null);
+        assertEquals(5003, check.get().size());
+    }
+
+    private static CachedCatalog<Item> openItems(File file) {
+        return new CachedCatalog<>(file, Item.class, Item::getName, new ObjectMapper(), false, null);
+    }
+
+    private static CachedCatalog<Book> open(File file, boolean journaled) {
+        return new CachedCatalog<>(file, Book.class, Document::getTitle, new ObjectMapper(), journaled, null);
+    }
+
+    private static Book book(String title) {
+        return new Book(title, "", List.of("Author"), "", "Test", 2000, "");
+    }
+
+    /**
+     * A small catalog entry whose parsing can be stopped at a given entry.
+     */
+    public static class Item {
+        static final String PAUSE = "pause";
+        // Runs when the entry named PAUSE is parsed; only set in the process of the test
+        static volatile Runnable onPause;
+
+        private String name;
+
+        public Item() {
+        }
+
+        public Item(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+            Runnable pause = onPause;
+            if (pause != null && PAUSE.equals(name)) pause.run();
+        }
+    }
+
+    /**
+     * Runs in a separate process: puts one item. Arguments: catalog file, name of the item.
+     */
+    public static class ItemWriter {
+        public static void main(String[] args) throws Exception {
+            openItems(new File(args[0])).put(new Item(args[1]));
+        }
+    }
+
+    /**
+     * Runs in a separate process: waits for the start signal, then puts books from a few threads.
+     * Arguments: catalog file, start signal file, title prefix, journaled.
+     */
+    public static class Writer {
+        public static void main(String[] args) throws Exception {
+            File file = new File(args[0]);
+            File go = new File(args[1]);
+            String prefix = args[2];
+            CachedCatalog<Book> catalog = open(file, Boolean.parseBoolean(args[3]));
+            long deadline = System.currentTimeMillis() + 60_000;
+            while (!go.exists()) {
+                if (System.currentTimeMillis() > deadline) System.exit(2);
+                Thread.sleep(5);
+            }
+            List<Thread> threads = new ArrayList<>();
+            List<IOException> failures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                String threadPrefix = prefix + "-" + t + "-";
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < PUTS; i++) {
+                            catalog.put(book(threadPrefix + i));
+                        }
+                    } catch (IOException e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (!failures.isEmpty()) {
+                failures.get(0).printStackTrace();
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.pdfmanager.db;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdfmanager.files.Book;
+import com.pdfmanager.files.Document;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Measures how {@link CachedCatalog} behaves under contention.
+ * <p>
+ * Usage: <i>CatalogContentionBenchmark &lt;scratch directory&gt; [entries] [seconds per run]</i>, with the
+ * test classes (<i>target/test-classes</i>, after <i>mvn test-compile</i>) on the classpath.
+ * Two catalogs of <i>entries</i> books are created in a new subdirectory of the scratch directory, which
+ * is deleted afterwards. Three runs are made for 1, 2, 4... threads, up to twice the number of cores:
+ * <ul>
+ *     <li><b>reads</b>: every thread looks up random titles, which only takes the read lock, so the
+ *     throughput should grow with the cores;</li>
+ *     <li><b>reads + 1 writer</b>: the same readers while one more thread keeps adding books to the same
+ *     file, to show how much the writes hold the readers back (reads skip the check of the file on disk
+ *     while this process is writing it, so they may even get faster);</li>
+ *     <li><b>writes</b>: every thread adds books, half of them to each file. Writes of a file are
+ *     serialized, and group commit lets them share a flush, so the writes per second of one file do not
+ *     grow with the threads but the two files are written in parallel.</li>
+ * </ul>
+ * Each run checks afterwards that no written book is missing from the files.
+ */
+public class CatalogContentionBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: CatalogContentionBenchmark <scratch directory> [entries] [seconds per run]");
+            System.exit(1);
+        }
+        Path scratch = Files.createDirectories(Path.of(args[0]).resolve("contention"));
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        long millis = (long) ((args.length > 2 ? Double.parseDouble(args[2]) : 2) * 1000);
+        int cores = Runtime.getRuntime().availableProcessors();
+        ObjectMapper mapper = new ObjectMapper();
+
+        try {
+            List<CachedCatalog<Book>> catalogs = new ArrayList<>();
+            for (String name : List.of("a", "b")) {
+                CachedCatalog<Book> catalog = new CachedCatalog<>(scratch.resolve(name + ".json").toFile(), Book.class,
+                        Document::getTitle, mapper, false, null);
+                List<Book> books = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    books.add(book("seed-" + i));
+                }
+                catalog.write(books);
+                catalogs.add(catalog);
+            }
+            System.out.printf("%d cores, %d books per file, %.1f s per run%n", cores, size, millis / 1000.0);
+            System.out.printf("%-8s %16s %12s %22s %14s %14s%n", "threads", "reads/s", "speedup",
+                    "reads/s (+1 writer)", "writes/s", "per file");
+
+            double single = 0;
+            for (int threads = 1; threads <= Math.max(2, 2 * cores); threads *= 2) {
+                double reads = run(catalogs, threads, 0, size, millis).reads;
+                if (threads == 1) single = reads;
+                Result mixed = run(catalogs, threads, 1, size, millis);
+                Result writes = run(catalogs, 0, threads, size, millis);
+                System.out.printf("%-8d %16.0f %11.2fx %22.0f %14.1f %14.1f%n", threads, reads, reads / single,
+                        mixed.reads, writes.writes, writes.writes / Math.min(threads, catalogs.size()));
+            }
+        } finally {
+            delete(scratch);
+        }
+    }
+
+    /**
+     * Runs readers and writers together for a while.
+     * @return The reads and writes per second.
+     */
+    private static Result run(List<CachedCatalog<Book>> catalogs, int readers, int writers, int size, long millis)
+            throws IOException, InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong reads = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        List<List<String>> written = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            CachedCatalog<Book> catalog = catalogs.get(0);
+            threads.add(new Thread(() -> {
+                long count = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (!stop.get()) {
+                        if (catalog.find("seed-" + random.nextInt(size)) == null) failures.incrementAndGet();
+                        count++;
+                    }
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                }
+                reads.addAndGet(count);
+            }));
+        }
+        for (int i = 0; i < writers; i++) {
+            // With a single writer it shares the file of the readers
+            CachedCatalog<Book> catalog = catalogs.get(i % catalogs.size());
+            List<String> titles = new ArrayList<>();
+            written.add(titles);
+            String prefix = "w" + System.nanoTime() + "-" + i + "-";
+            threads.add(new Thread(() -> {
+                try {
+                    while (!stop.get()) {
+                        String title = prefix + titles.size();
+                        catalog.put(book(title));
+                        titles.add(title);
+                    }
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                }
+            }));
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long writes = 0;
+        for (int i = 0; i < written.size(); i++) {
+            CachedCatalog<Book> catalog = catalogs.get(i % catalogs.size());
+            // Read back from the file, not from memory
+            CachedCatalog<Book> reread = new CachedCatalog<>(catalog.getFile(), Book.class, Document::getTitle,
+                    new ObjectMapper(), false, null);
+            for (String title : written.get(i)) {
+                if (reread.find(title) == null) failures.incrementAndGet();
+            }
+            writes += written.get(i).size();
+            catalog.removeAll(written.get(i));
+        }
+        if (failures.get() > 0) {
+            System.err.println("ERROR: " + failures.get() + " lookups or writes failed.");
+        }
+        return new Result(reads.get() / seconds, writes / seconds);
+    }
+
+    private static Book book(String title) {
+        return new Book(title, "", List.of("Author " + title.length()), "", "Benchmark", 2000, "");
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static final class Result {
+        private final double reads;
+        private final double writes;
+
+        private Result(double reads, double writes) {
+            this.reads = reads;
+            this.writes = writes;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.pdfmanager.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Parsing of well-formed and malformed BibTeX, and how the parser resumes after an error.
+ */
+public class BibTexParserTest {
+
+    @Test
+    public void readsValuesMacrosAndConcatenation() throws Exception {
+        List<Object> results = parse(
+                "Text outside the entries is a comment\n"
+                + "@string{pub = \"Editora\"}\n"
+                + "@STRING(city = {S{\\~a}o Paulo})\n"
+                + "@comment{ @book{ignored, title = {No}} }\n"
+                + "@preamble{\"\\newcommand{\\x}{y}\"}\n"
+                + "@Book{key1,\n"
+                + "  Title     = {The {LaTeX} Companion},\n"
+                + "  author    = \"Ana {\\'E}vora and Jo{\\~a}o\",\n"
+                + "  publisher = pub # \", \" # city,\n"
+                + "  year      = 1999,\n"
+                + "  month     = mar,\n"
+                + "  series    = unknown,\n"
+                + "  file      = {C:\\Docs\\a.pdf},\n"
+                + "}\n"
+                + "@misc(key2, note = {50\\% of \\{ and a \\} brace, mail me@example.com, \\textasciitilde{}x})\n");
+
+        assertEquals(2, results.size());
+        BibTexParser.Entry book = (BibTexParser.Entry) results.get(0);
+        assertEquals("book", book.getType());
+        assertEquals("key1", book.getKey());
+        assertEquals(6, book.getLine());
+        assertEquals("The LaTeX Companion", book.get("title"));
+        assertEquals("Ana Évora and João", book.get("author"));
+        assertEquals("Editora, São Paulo", book.get("publisher"));
+        assertEquals("1999", book.get("year"));
+        assertEquals("3", book.get("month"));
+        assertEquals("unknown", book.get("series"));
+        assertEquals("C:\\Docs\\a.pdf", book.get("file"));
+
+        BibTexParser.Entry misc = (BibTexParser.Entry) results.get(1);
+        assertEquals("misc", misc.getType());
+        assertEquals(15, misc.getLine());
+        assertEquals("50% of { and a } brace, mail me@example.com, ~x", misc.get("note"));
+    }
+
+    @Test
+    public void escapedBracesDoNotCount() throws Exception {
+        List<Object> results = parse(
+                "@book{a,\n"
+                + "  title = {Only \\} one},\n"
+                + "  note  = \"Schr\\\"{o}dinger {and \"braces\"}\",\n"
+                + "}\n"
+                + "@book{b, title = {Next}}\n");
+
+        assertEquals(2, results.size());
+        assertEquals("Only } one", ((BibTexParser.Entry) results.get(0)).get("title"));
+        assertEquals("Schrödinger and \"braces\"", ((BibTexParser.Entry) results.get(0)).get("note"));
+        assertEquals("Next", ((BibTexParser.Entry) results.get(1)).get("title"));
+    }
+
+    @Test
+    public void specialLettersBecomeTheirCharacters() throws Exception {
+        List<Object> results = parse(
+                "@book{a,\n"
+                + "  author = {Carl Friedrich Gau{\\ss} and {\\L}ukasiewicz and H.~C. \\O rsted and Ren\\'{e} Dor\\'{\\i}},\n"
+                + "  title  = {{\\AA}ngstr{\\\"o}m, {\\ae}ble, {\\AE}, {\\oe}uvre, {\\OE}, {\\aa}, {\\o}l, {\\l}{\\'o}d{\\'z}, {\\i}{\\j}},\n"
+                + "}\n");
+
+        BibTexParser.Entry entry = (BibTexParser.Entry) results.get(0);
+        assertEquals("Carl Friedrich Gauß and Łukasiewicz and H. C. Ørsted and René Dorí", entry.get("author"));
+        assertEquals("Ångström, æble, Æ, œuvre, Œ, å, øl, łódź, ıȷ", entry.get("title"));
+    }
+
+    @Test
+    public void missingCloseResumesAtTheNextEntry() throws Exception {
+        List<Object> results = parse(
+                "@book{a,\n"
+                + "  title = {One},\n"
+                + "@book{b,\n"
+                + "  title = {Two},\n"
+                + "}\n");
+
+        assertEquals(2, results.size());
+        assertError(1, results.get(0));
+        assertEntry("b", 3, results.get(1));
+    }
+
+    @Test
+    public void atSignAtLineStartInsideAValueEndsTheEntry() throws Exception {
+        List<Object> results = parse(
+                "@book{a,\n"
+                + "  title = {One {unclosed},\n"
+                + "  year  = 2000,\n"
+                + "}\n"
+                + "   @book{b, title = {Two}}\n"
+                + "@book{c, title = {Three}}\n");
+
+        assertEquals(3, results.size());
+        assertError(1, results.get(0));
+        assertEntry("b", 5, results.get(1));
+        assertEntry("c", 6, results.get(2));
+    }
+
+    @Test
+    public void atSignInsideSkippedTextResumesOnlyAtLineStart() throws Exception {
+        List<Object> results = parse(
+                "@book{a,\n"
+                + "  title  {One},\n"
+                + "  note = {write to x@y.org},\n"
+                + "}\n"
+                + "@book{b, title = {Two}}\n");
+
+        assertEquals(2, results.size());
+        assertError(2, results.get(0));
+        assertEntry("b", 5, results.get(1));
+    }
+
+    @Test
+    public void errorsInConsecutiveEntriesAreEachReported() throws Exception {
+        List<Object> results = parse(
+                "@book{a, title = {One}\n"
+                + "@book b, title = {Two}}\n"
+                + "@book{c, title = {Three},\n"
+                + "@book{d, title = {Four}}\n");
+
+        assertEquals(4, results.size());
+        assertError(1, results.get(0));
+        assertError(2, results.get(1));
+        assertError(3, results.get(2));
+        assertEntry("d", 4, results.get(3));
+    }
+
+    @Test
+    public void endOfFileInsideAValueIsAnError() throws Exception {
+        List<Object> results = parse(
+                "@book{a, title = {One}}\n"
+                + "@book{b,\n"
+                + "  title = \"Two\n");
+
+        assertEquals(2, results.size());
+        assertEntry("a", 1, results.get(0));
+        assertError(2, results.get(1));
+    }
+
+    /**
+     * @return The entries and the syntax errors, in the order they were found.
+     */
+    private static List<Object> parse(String text) throws IOException {
+        List<Object> results = new ArrayList<>();
+        try (BibTexParser parser = new BibTexParser(new StringReader(text))) {
+            while (true) {
+                try {
+                    BibTexParser.Entry entry = parser.next();
+                    if (entry == null) break;
+                    results.add(entry);
+                } catch (BibTexParser.SyntaxException e) {
+                    results.add(e);
+                }
+            }
+            assertNull(parser.next());
+        } catch (BibTexParser.SyntaxException e) {
+            throw new AssertionError(e);
+        }
+        return results;
+    }
+
+    private static void assertEntry(String key, int line, Object result) {
+        assertEquals(BibTexParser.Entry.class, result.getClass());
+        assertEquals(key, ((BibTexParser.Entry) result).getKey());
+        assertEquals(line, ((BibTexParser.Entry) result).getLine());
+    }
+
+    private static void assertError(int line, Object result) {
+        assertEquals(BibTexParser.SyntaxException.class, result.getClass());
+        assertEquals(line, ((BibTexParser.SyntaxException) result).getLine());
+    }
+}
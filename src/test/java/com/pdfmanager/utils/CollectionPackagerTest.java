@@ -0,0 +1,164 @@
+package com.pdfmanager.utils;
+
+import com.pdfmanager.files.Book;
+import com.pdfmanager.files.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Collections packaged by {@link CollectionPackager} are read back with {@link ZipFile}.
+ */
+public class CollectionPackagerTest {
+    private static final int CHUNK_SIZE = CollectionPackager.CHUNK_SIZE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void chunkBoundariesAndMixedMethodsAreReadBack() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("empty.txt", new byte[0]);
+        files.put("exact.txt", text(CHUNK_SIZE, 1));
+        files.put("plus-one.txt", text(CHUNK_SIZE + 1, 2));
+        files.put("minus-one.txt", text(CHUNK_SIZE - 1, 3));
+        files.put("several.txt", text(3 * CHUNK_SIZE + 12345, 4));
+        files.put("random.bin", random(2 * CHUNK_SIZE + 7, 5));
+        // Compressible, but the extension says it is already compressed
+        files.put("picture.png", text(1000, 6));
+
+        Path zipFile = folder.getRoot().toPath().resolve("collection.zip");
+        CollectionPackager.Result result = CollectionPackager.pack(documents(files), zipFile);
+
+        assertEquals(files.size(), result.getFiles());
+        assertEquals(3, result.getStored());
+        Map<String, Integer> methods = new LinkedHashMap<>();
+        for (String name : files.keySet()) {
+            methods.put(name, ZipEntry.DEFLATED);
+        }
+        methods.put("empty.txt", ZipEntry.STORED);
+        methods.put("random.bin", ZipEntry.STORED);
+        methods.put("picture.png", ZipEntry.STORED);
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            assertEquals(files.size(), zip.size());
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                ZipArchiveWriterTest.assertEntry(zip, file.getKey(), methods.get(file.getKey()), file.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void repackagingAfterAChangeMatchesAFullRebuild() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("first.txt", text(2 * CHUNK_SIZE + 100, 1));
+        files.put("second.txt", text(5000, 2));
+        files.put("third.bin", random(100_000, 3));
+        File directory = folder.newFolder();
+        List<Document> documents = documents(directory, files);
+        Path zipFile = folder.getRoot().toPath().resolve("collection.zip");
+        CollectionPackager.pack(documents, zipFile);
+
+        Files.write(directory.toPath().resolve("second.txt"), text(7000, 4));
+        CollectionPackager.Result result = CollectionPackager.pack(documents, zipFile);
+        assertEquals(2, result.getReused());
+
+        Path rebuilt = folder.getRoot().toPath().resolve("rebuilt.zip");
+        assertSameArchive(CollectionPackager.pack(documents, rebuilt), zipFile, rebuilt);
+    }
+
+    @Test
+    public void previousEntryThatDoesNotMatchItsHeaderIsRecompressed() throws IOException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("first.txt", text(CHUNK_SIZE + 100, 1));
+        files.put("second.txt", text(5000, 2));
+        files.put("third.bin", random(100_000, 3));
+        List<Document> documents = documents(folder.newFolder(), files);
+        Path zipFile = folder.getRoot().toPath().resolve("collection.zip");
+        CollectionPackager.pack(documents, zipFile);
+
+        // Rename the entry in its local header, leaving the size and date of the .zip as the manifest has them
+        FileTime modified = Files.getLastModifiedTime(zipFile);
+        byte[] archive = Files.readAllBytes(zipFile);
+        byte[] name = "second.txt".getBytes(StandardCharsets.UTF_8);
+        int at = indexOf(archive, name);
+        archive[at] = 'S';
+        Files.write(zipFile, archive);
+        Files.setLastModifiedTime(zipFile, modified);
+
+        CollectionPackager.Result result = CollectionPackager.pack(documents, zipFile);
+        assertEquals(2, result.getReused());
+
+        Path rebuilt = folder.getRoot().toPath().resolve("rebuilt.zip");
+        assertSameArchive(CollectionPackager.pack(documents, rebuilt), zipFile, rebuilt);
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                assertArrayEquals(file.getValue(), ZipArchiveWriterTest.read(zip, zip.getEntry(file.getKey())));
+            }
+        }
+    }
+
+    private static void assertSameArchive(CollectionPackager.Result rebuild, Path repackaged, Path rebuilt) throws IOException {
+        assertEquals(0, rebuild.getReused());
+        assertEquals("The repackaged archive differs from a full rebuild", -1, Files.mismatch(repackaged, rebuilt));
+    }
+
+    private static int indexOf(byte[] data, byte[] part) {
+        for (int i = 0; i + part.length <= data.length; i++) {
+            if (Arrays.equals(data, i, i + part.length, part, 0, part.length)) return i;
+        }
+        throw new AssertionError("Not found");
+    }
+
+    private List<Document> documents(Map<String, byte[]> files) throws IOException {
+        return documents(folder.newFolder(), files);
+    }
+
+    private static List<Document> documents(File directory, Map<String, byte[]> files) throws IOException {
+        List<Document> documents = new ArrayList<>();
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            Files.write(directory.toPath().resolve(file.getKey()), file.getValue());
+            documents.add(new Book(file.getKey(), directory.getPath(), List.of("Author"), "", "Test", 2000, ""));
+        }
+        return documents;
+    }
+
+    /**
+     * Compressible text that is not the same in every chunk, so chunks cannot be mixed up unnoticed.
+     */
+    static byte[] text(int size, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(size + 16);
+        String[] words = {"livro", "slide", "nota", "coleção", "autor", "título", "ano", "editora"};
+        while (text.length() < size) {
+            text.append(words[random.nextInt(words.length)]).append(random.nextInt(100)).append(' ');
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] exact = new byte[size];
+        System.arraycopy(bytes, 0, exact, 0, size);
+        return exact;
+    }
+
+    static byte[] random(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
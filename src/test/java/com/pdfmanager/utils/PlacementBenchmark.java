@@ -0,0 +1,95 @@
+package com.pdfmanager.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Compares the placement strategies of {@link FileManager} on a set of PDFs.
+ * <p>
+ * Usage: <i>PlacementBenchmark &lt;directory with PDFs&gt; &lt;scratch directory&gt; [strategy...]</i>, with the
+ * test classes (<i>target/test-classes</i>, after <i>mvn test-compile</i>) on the classpath.
+ * Each strategy places every PDF in a new subdirectory of the scratch directory, which is deleted
+ * afterwards; the strategy actually used is reported, as links, moves and reflinks fall back to a copy
+ * across file systems. Sources are read once before the first run, so every strategy finds them in
+ * the page cache. The MOVE strategy moves the files back after it is measured.
+ */
+public class PlacementBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PlacementBenchmark <directory with PDFs> <scratch directory> [strategy...]");
+            System.exit(1);
+        }
+        Path sources = Path.of(args[0]);
+        Path scratch = Path.of(args[1]);
+        List<FileManager.PlacementStrategy> strategies = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            strategies.add(FileManager.PlacementStrategy.of(args[i]));
+        }
+        if (strategies.isEmpty()) {
+            strategies.addAll(List.of(FileManager.PlacementStrategy.values()));
+        }
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(sources)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().toLowerCase().endsWith(".pdf"))
+                    .toList();
+        }
+        long bytes = 0;
+        for (Path file : files) {
+            bytes += Files.size(file);
+            // Warms the page cache, so the first strategy is not the only one to read from the disk
+            new FileManager(FileManager.PlacementStrategy.COPY).copyFileToLibrary(file.toString(),
+                    Files.createDirectories(scratch).resolve("warm.pdf").toString(), hash -> null);
+        }
+        Files.deleteIfExists(scratch.resolve("warm.pdf"));
+        System.out.printf("%d files, %.2f GB%n", files.size(), bytes / 1e9);
+
+        for (FileManager.PlacementStrategy strategy : strategies) {
+            Path destination = Files.createDirectories(scratch.resolve(strategy.name().toLowerCase()));
+            FileManager fileManager = new FileManager(strategy);
+            Map<FileManager.PlacementStrategy, Integer> used = new EnumMap<>(FileManager.PlacementStrategy.class);
+            int failures = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < files.size(); i++) {
+                // Distinct names, and no lookup, so every file is placed even if contents repeat
+                FileManager.Placement placement = fileManager.copyFileToLibrary(files.get(i).toString(),
+                        destination.resolve(i + ".pdf").toString(), hash -> null);
+                if (placement == null) {
+                    failures++;
+                } else {
+                    used.merge(placement.getStrategy(), 1, Integer::sum);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-10s %8.2f s %9.1f MB/s  used %s%s%n", strategy, elapsed / 1e9,
+                    bytes / 1e6 / (elapsed / 1e9), used, failures == 0 ? "" : ", " + failures + " failures");
+
+            if (strategy == FileManager.PlacementStrategy.MOVE) {
+                for (int i = 0; i < files.size(); i++) {
+                    Path moved = destination.resolve(i + ".pdf");
+                    if (Files.exists(moved) && !Files.exists(files.get(i))) {
+                        Files.move(moved, files.get(i));
+                    }
+                }
+            }
+            delete(destination);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.pdfmanager.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Archives written by {@link ZipArchiveWriter} are read back with {@link ZipFile}.
+ */
+public class ZipArchiveWriterTest {
+    private static final long MODIFIED = 1_600_000_000_000L;
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void storedDeflatedAndEmptyEntriesAreReadBack() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("mixed.zip");
+        byte[] text = "The quick brown fox jumps over the lazy dog. ".repeat(2000).getBytes(StandardCharsets.UTF_8);
+        byte[] other = "ação, coleção, informação ".repeat(50).getBytes(StandardCharsets.UTF_8);
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(file)) {
+            add(zip, "empty-stored.txt", ZipArchiveWriter.STORED, new byte[0]);
+            add(zip, "text.txt", ZipArchiveWriter.DEFLATED, text);
+            add(zip, "empty-deflated.txt", ZipArchiveWriter.DEFLATED, new byte[0]);
+            add(zip, "coleção.txt", ZipArchiveWriter.STORED, other);
+        }
+
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            assertEquals(4, zip.size());
+            assertEntry(zip, "empty-stored.txt", ZipEntry.STORED, new byte[0]);
+            assertEntry(zip, "text.txt", ZipEntry.DEFLATED, text);
+            assertEntry(zip, "empty-deflated.txt", ZipEntry.DEFLATED, new byte[0]);
+            assertEntry(zip, "coleção.txt", ZipEntry.STORED, other);
+        }
+    }
+
+    @Test
+    public void centralDirectoryLargerThanTheBufferIsFlushed() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("many.zip");
+        // About 200 bytes per central header: the directory fills the 64 KB buffer several times
+        int count = 3000;
+        String prefix = "x".repeat(150) + "/";
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(file)) {
+            for (int i = 0; i < count; i++) {
+                add(zip, prefix + i, i % 2 == 0 ? ZipArchiveWriter.STORED : ZipArchiveWriter.DEFLATED,
+                        ("entry " + i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            assertEquals(count, zip.size());
+            for (int i = 0; i < count; i++) {
+                assertEntry(zip, prefix + i, i % 2 == 0 ? ZipEntry.STORED : ZipEntry.DEFLATED,
+                        ("entry " + i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void tooManyEntriesUseZip64EndRecord() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("entries.zip");
+        int count = 0xFFFF + 10;
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(file)) {
+            for (int i = 0; i < count; i++) {
+                add(zip, Integer.toString(i), ZipArchiveWriter.STORED, new byte[0]);
+            }
+        }
+
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            assertEquals(count, zip.size());
+            int read = 0;
+            for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); entries.nextElement()) {
+                read++;
+            }
+            assertEquals(count, read);
+            assertNotNull(zip.getEntry(Integer.toString(count - 1)));
+        }
+    }
+
+    @Test
+    public void offsetsAbove4GbUseZip64Fields() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("offset.zip");
+        long base = 5L << 30;
+        byte[] data = "hello".getBytes(StandardCharsets.US_ASCII);
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(file, base)) {
+            add(zip, "a.txt", ZipArchiveWriter.STORED, data);
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        // A plain local header: the entry itself is small
+        assertEquals(0x04034b50, bytes.getInt(0));
+        assertEquals(5, bytes.getInt(18));
+        assertEquals(5, bytes.getInt(22));
+        assertEquals(crc(data), bytes.getInt(14) & ZIP64_LIMIT);
+
+        int central = 30 + "a.txt".length() + data.length;
+        assertEquals(0x02014b50, bytes.getInt(central));
+        assertEquals(45, bytes.getShort(central + 6));
+        assertEquals(12, bytes.getShort(central + 30));
+        assertEquals(ZIP64_LIMIT, bytes.getInt(central + 42) & ZIP64_LIMIT);
+        int extra = central + 46 + "a.txt".length();
+        assertEquals(0x0001, bytes.getShort(extra));
+        assertEquals(8, bytes.getShort(extra + 2));
+        assertEquals(base, bytes.getLong(extra + 4));
+
+        int zip64End = extra + 12;
+        assertEquals(0x06064b50, bytes.getInt(zip64End));
+        assertEquals(1, bytes.getLong(zip64End + 32));
+        assertEquals(zip64End - central, bytes.getLong(zip64End + 40));
+        assertEquals(base + central, bytes.getLong(zip64End + 48));
+
+        int locator = zip64End + 56;
+        assertEquals(0x07064b50, bytes.getInt(locator));
+        assertEquals(base + zip64End, bytes.getLong(locator + 8));
+
+        int end = locator + 20;
+        assertEquals(0x06054b50, bytes.getInt(end));
+        assertEquals(1, bytes.getShort(end + 10));
+        assertEquals(zip64End - central, bytes.getInt(end + 12));
+        assertEquals(ZIP64_LIMIT, bytes.getInt(end + 16) & ZIP64_LIMIT);
+        assertEquals(end + 22, bytes.limit());
+    }
+
+    private static void add(ZipArchiveWriter zip, String name, int method, byte[] data) throws IOException {
+        zip.beginEntry(name, method, MODIFIED, data.length);
+        if (method == ZipArchiveWriter.DEFLATED) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                zip.write(ByteBuffer.wrap(buffer, 0, deflater.deflate(buffer)));
+            }
+            deflater.end();
+        } else {
+            zip.write(ByteBuffer.wrap(data));
+        }
+        zip.endEntry(crc(data));
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    static void assertEntry(ZipFile zip, String name, int method, byte[] expected) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        assertNotNull("Missing entry " + name, entry);
+        assertEquals(name, method, entry.getMethod());
+        assertEquals(name, expected.length, entry.getSize());
+        assertEquals(name, crc(expected), entry.getCrc());
+        assertArrayEquals(name, expected, read(zip, entry));
+    }
+
+    static byte[] read(ZipFile zip, ZipEntry entry) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = zip.getInputStream(entry)) {
+            in.transferTo(out);
+        }
+        return out.toByteArray();
+    }
+}